@@ -2,6 +2,7 @@ plugins {
 	java
 	id("org.springframework.boot") version "3.5.6"
 	id("io.spring.dependency-management") version "1.1.7"
+	id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "effective.mobile"
@@ -28,25 +29,45 @@ dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-data-jpa")
 	implementation("org.springframework.boot:spring-boot-starter-security")
 	implementation("org.springframework.boot:spring-boot-starter-web")
+	implementation("org.springframework.boot:spring-boot-starter-validation")
+	implementation("org.springframework.boot:spring-boot-starter-actuator")
+	implementation("com.github.ben-manes.caffeine:caffeine")
+	implementation("com.github.ben-manes.caffeine:jcache")
+	implementation("org.hibernate.orm:hibernate-jcache")
+	implementation("org.hibernate.orm:hibernate-micrometer")
     implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-yaml:2.15.2")
 	implementation("org.liquibase:liquibase-core")
     implementation("io.jsonwebtoken:jjwt-api:0.12.6")
     runtimeOnly("io.jsonwebtoken:jjwt-impl:0.12.6")
     runtimeOnly("io.jsonwebtoken:jjwt-jackson:0.12.6")
-    runtimeOnly ("org.postgresql:postgresql")
+    implementation("org.postgresql:postgresql")
 	compileOnly("org.projectlombok:lombok")
 	annotationProcessor("org.projectlombok:lombok")
 	testImplementation("org.springframework.boot:spring-boot-starter-test")
 	testImplementation("org.springframework.security:spring-security-test")
+	testImplementation("io.zonky.test:embedded-database-spring-test:2.6.0")
+	testImplementation("io.zonky.test:embedded-postgres:2.1.0")
+	// EXPLAIN (GENERIC_PLAN) появился в Postgres 16
+	testImplementation(enforcedPlatform("io.zonky.test.postgres:embedded-postgres-binaries-bom:16.4.0"))
 	testRuntimeOnly("org.junit.platform:junit-platform-launcher")
     // https://mvnrepository.com/artifact/org.mockito/mockito-inline
     testImplementation("org.mockito:mockito-inline:4.11.0")
+	// HotCardLaneBenchmark: пополнения одной карты на настоящем Postgres
+	jmhImplementation("io.zonky.test:embedded-postgres:2.1.0")
+	jmhImplementation(enforcedPlatform("io.zonky.test.postgres:embedded-postgres-binaries-bom:16.4.0"))
 }
 
 tasks.withType<Test> {
 	useJUnitPlatform()
 }
 
+jmh {
+	jmhVersion = "1.37"
+	// ./gradlew jmh -Pjmh.includes=HotCardLane - только выбранные бенчмарки, результат в build/results/jmh/results.json
+	(findProperty("jmh.includes") as String?)?.let { includes.add(it) }
+	resultFormat = "JSON"
+}
+
 tasks.processResources {
     from("docs") {
         include("openapi.yaml")
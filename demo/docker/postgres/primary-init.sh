@@ -0,0 +1,4 @@
+#!/bin/bash
+# Разрешает реплике подключаться к primary по протоколу репликации
+set -e
+echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
@@ -0,0 +1,149 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.repository.CreditRequest;
+import com.example.bankcards.repository.MoneyOperationResult;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import liquibase.integration.spring.SpringLiquibase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Зачисления на одну горячую карту из 64 потоков: каждое отдельным deposit_funds / transfer_funds (как сейчас)
+ * против {@link HotCardLane} с credit_funds_batch. Переводы идут с отдельной карты каждого потока,
+ * как входящие платежи мерчанту. Пул соединений - 10, как у Hikari по умолчанию.
+ * Схема и функции - миграции приложения на встроенном Postgres.
+ * Запуск: ./gradlew jmh -Pjmh.includes=HotCardLane. Сравнивать depositFunds с depositLane
+ * и transferFunds с transferLane: первые - текущий путь, где зачисления ждут друг друга на блокировке строки карты.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(64)
+public class HotCardLaneBenchmark {
+
+    private static final String OWNER_ID = "merchant";
+    private static final String PAYER_ID = "payer";
+    private static final BigDecimal AMOUNT = BigDecimal.ONE;
+
+    private EmbeddedPostgres postgres;
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private HotCardLane lane;
+    private long cardId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        postgres = EmbeddedPostgres.start();
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(postgres.getPostgresDatabase());
+        liquibase.setChangeLog("classpath:db/migration/db.changelog-master.yaml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+
+        HikariConfig config = new HikariConfig();
+        config.setDataSource(postgres.getPostgresDatabase());
+        config.setMaximumPoolSize(10);
+        dataSource = new HikariDataSource(config);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        cardId = createCard(OWNER_ID, BigDecimal.ZERO);
+
+        lane = new HotCardLane(cardId, 10_000, 500, 0, this::creditBatch, new CustomizableThreadFactory("hot-card-"));
+        lane.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        lane.close();
+        dataSource.close();
+        postgres.close();
+    }
+
+    @Benchmark
+    public Integer depositFunds() {
+        return jdbcTemplate.queryForObject("SELECT deposit_funds(?, ?, ?)", Integer.class, cardId, OWNER_ID, AMOUNT);
+    }
+
+    @Benchmark
+    public MoneyOperationResult depositLane() {
+        return lane.submit(CreditRequest.deposit(OWNER_ID, AMOUNT, null)).join();
+    }
+
+    @Benchmark
+    public Integer transferFunds(Payer payer) {
+        return jdbcTemplate.queryForObject("SELECT transfer_funds(?, ?, ?, ?)", Integer.class,
+                payer.sourceId, cardId, PAYER_ID, AMOUNT);
+    }
+
+    @Benchmark
+    public MoneyOperationResult transferLane(Payer payer) {
+        return lane.submit(CreditRequest.transfer(payer.sourceId, PAYER_ID, AMOUNT, null)).join();
+    }
+
+    // Своя карта-отправитель у каждого потока: конкуренция только за горячую карту
+    @State(Scope.Thread)
+    public static class Payer {
+
+        private long sourceId;
+
+        @Setup(Level.Trial)
+        public void setUp(HotCardLaneBenchmark benchmark) {
+            sourceId = benchmark.createCard(PAYER_ID, BigDecimal.valueOf(1_000_000_000));
+        }
+    }
+
+    private long createCard(String ownerId, BigDecimal balance) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO card (card_number, card_holder, expiry_date, status, balance) "
+                        + "VALUES ('\\x00'::bytea, ?, DATE '2099-12-31', 0, ?) RETURNING id",
+                Long.class, ownerId, balance);
+    }
+
+    // Как CardRepositoryCustomImpl.creditBatch, без Hibernate: один вызов функции в автокоммите - одна транзакция
+    private List<MoneyOperationResult> creditBatch(List<CreditRequest> requests) {
+        Object[] codes = jdbcTemplate.query("SELECT credit_funds_batch(?, ?, ?, ?, ?)", ps -> {
+            Connection connection = ps.getConnection();
+            ps.setLong(1, cardId);
+            ps.setArray(2, connection.createArrayOf("varchar",
+                    requests.stream().map(CreditRequest::ownerId).toArray()));
+            ps.setArray(3, connection.createArrayOf("bigint",
+                    requests.stream().map(CreditRequest::fromCardId).toArray()));
+            ps.setArray(4, connection.createArrayOf("numeric",
+                    requests.stream().map(CreditRequest::amount).toArray()));
+            ps.setArray(5, connection.createArrayOf("varchar",
+                    requests.stream().map(CreditRequest::idempotencyKey).toArray()));
+        }, rs -> {
+            rs.next();
+            return (Object[]) rs.getArray(1).getArray();
+        });
+        List<MoneyOperationResult> results = new ArrayList<>(codes.length);
+        for (Object code : codes) {
+            results.add(MoneyOperationResult.of(((Number) code).intValue()));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.card-stream")
+public class CardStreamProperties {
+
+    // Потоки, которые пишут события в SSE-соединения
+    private int threads = 4;
+    // Сколько разных карт может ждать отправки одному подписчику. При переполнении поток закрывается
+    private int maxPending = 64;
+    private long timeout = 1_800_000;
+    // Пустые комментарии держат соединение через прокси и выявляют отключившихся клиентов
+    private long heartbeatInterval = 15_000;
+}
@@ -0,0 +1,138 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.dto.ErrorDTO;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import com.example.bankcards.util.AdaptiveConcurrencyLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сбрасывает нагрузку до того, как потоки Tomcat выстроятся в очередь за соединениями Hikari.
+ * Для каждой группы путей (админские и пользовательские эндпоинты) свой адаптивный лимит,
+ * поэтому перегрузка одной группы не забирает ресурсы у другой.
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final ConcurrencyLimitProperties properties;
+    private final ObjectMapper objectMapper;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final List<LimitedGroup> groups = new ArrayList<>();
+
+    public ConcurrencyLimitFilter(
+            ConcurrencyLimitProperties properties,
+            ObjectMapper objectMapper,
+            MeterRegistry registry) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        for (ConcurrencyLimitProperties.Group group : properties.getGroups()) {
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                    group.getInitialLimit(),
+                    group.getMinLimit(),
+                    group.getMaxLimit(),
+                    group.getSmoothing(),
+                    group.getTolerance());
+            Gauge.builder("concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .tag("group", group.getName())
+                    .register(registry);
+            Gauge.builder("concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInflight)
+                    .tag("group", group.getName())
+                    .register(registry);
+            Counter rejected = Counter.builder("concurrency.rejected")
+                    .tag("group", group.getName())
+                    .register(registry);
+            groups.add(new LimitedGroup(group.getPatterns(), limiter, rejected));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        String path = path(request);
+        return properties.getExcluded().stream().anyMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        String path = path(request);
+        LimitedGroup group = groups.stream()
+                .filter(g -> g.patterns().stream().anyMatch(pattern -> pathMatcher.match(pattern, path)))
+                .findFirst()
+                .orElse(null);
+        if (group == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        AdaptiveConcurrencyLimiter limiter = group.limiter();
+        int inflightAtStart = limiter.getInflight();
+        if (!limiter.tryAcquire()) {
+            group.rejected().increment();
+            reject(response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            filterChain.doFilter(request, response);
+            completed = true;
+        } finally {
+            if (request.isAsyncStarted() || completed && isShedDownstream(request)) {
+                limiter.release();
+            } else if (!completed || response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+                limiter.onDropped();
+            } else {
+                limiter.onSuccess(System.nanoTime() - start, inflightAtStart + 1);
+            }
+        }
+    }
+
+    /**
+     * 503 от {@link ServiceOverloadedException}: запрос отброшен следующим ограничителем (пул логина, очередь горячей карты),
+     * а не упал в бэкенде. Лимит такие ответы не уменьшают, иначе сброс нагрузки сам себя усиливает
+     */
+    private boolean isShedDownstream(HttpServletRequest request) {
+        return request.getAttribute(DispatcherServlet.EXCEPTION_ATTRIBUTE) instanceof ServiceOverloadedException;
+    }
+
+    private String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorDTO(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase(),
+                "Service is overloaded. Try again later"
+        ));
+    }
+
+    private record LimitedGroup(List<String> patterns, AdaptiveConcurrencyLimiter limiter, Counter rejected) {
+    }
+}
@@ -1,21 +1,32 @@
 package com.example.bankcards.config;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.example.bankcards.util.VersionedTextEncryptor;
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.encrypt.Encryptors;
-import org.springframework.security.crypto.encrypt.TextEncryptor;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
 
 @Configuration
+@RequiredArgsConstructor
 public class EncryptorConfig {
 
-    @Value("${app.encryptor.salt}")
-    private String salt;
-    @Value("${app.encryptor.password}")
-    private String password;
+    private final EncryptorProperties properties;
 
     @Bean(name = "textEncryptor")
-    public TextEncryptor getEncryptor() {
-        return Encryptors.text(password, salt);
+    public VersionedTextEncryptor getEncryptor() {
+        Map<Integer, SecretKey> keys = new HashMap<>();
+        properties.getKeys().forEach((version, key) ->
+                keys.put(version, new SecretKeySpec(Base64.getDecoder().decode(key), "AES")));
+        return new VersionedTextEncryptor(
+                keys,
+                properties.getActiveKey(),
+                Encryptors.text(properties.getPassword(), properties.getSalt())
+        );
     }
 }
@@ -0,0 +1,24 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.encryptor")
+public class EncryptorProperties {
+
+    // Пароль и соль старого формата (Encryptors.text), нужны для чтения уже сохраненных номеров
+    private String password;
+    private String salt;
+    // Версия ключа, которой шифруются новые значения
+    private int activeKey;
+    // Версия -> AES-ключ (256 бит) в base64. Старые версии не удалять, пока есть зашифрованные ими данные
+    private Map<Integer, String> keys = new HashMap<>();
+}
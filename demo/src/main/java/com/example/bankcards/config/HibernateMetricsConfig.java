@@ -0,0 +1,25 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.HibernateMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Статистика Hibernate в Micrometer, в том числе попадания и промахи L2-кэша по регионам
+ */
+@Configuration
+public class HibernateMetricsConfig {
+
+    @Bean
+    public MeterBinder hibernateMetrics(EntityManagerFactory entityManagerFactory) {
+        return new HibernateMetrics(
+                entityManagerFactory.unwrap(SessionFactory.class),
+                "entityManagerFactory",
+                Tags.empty()
+        );
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.hot-card")
+public class HotCardProperties {
+
+    private boolean enabled = false;
+    // Карты с потоком входящих переводов и пополнений (мерчанты, зарплатные): на каждую - своя очередь
+    // и поток-писатель. Списания с этих карт идут обычным путем
+    private Set<Long> cardIds = new HashSet<>();
+    // Зачислений в очереди карты сверх этого числа - отказ 503
+    private int maxPending = 10_000;
+    private int maxBatchSize = 500;
+    // Сколько писатель ждет добора пачки, мс. 0 - пачка из того, что накопилось за время прошлой записи
+    private long batchWindow = 0;
+    // Сколько запрос ждет коммита своей пачки, мс. Дольше - отказ 503, зачисление при этом может примениться
+    private long resultTimeout = 10_000;
+}
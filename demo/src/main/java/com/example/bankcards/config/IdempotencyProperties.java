@@ -0,0 +1,19 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.idempotency")
+public class IdempotencyProperties {
+
+    // Сколько ключ хранится в БД. Повтор позже этого срока выполнится как новая операция
+    private long ttl = 86_400_000;
+    private long cacheMaxSize = 100_000;
+    // Не больше ttl: иначе кэш ответит по ключу, которого в БД уже нет
+    private long cacheTtl = 600_000;
+}
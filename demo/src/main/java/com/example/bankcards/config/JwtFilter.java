@@ -7,6 +7,7 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -23,6 +24,10 @@ public class JwtFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
     private final EffectiveUserDetailsService effectiveUserDetailsService;
 
+    // Если true, principal собирается из claims токена без запроса в users
+    @Value("${app.stateless-principal}")
+    private boolean statelessPrincipal;
+
     /**
      * Same contract as for {@code doFilter}, but guaranteed to be
      * just invoked once per request within a single request thread.
@@ -49,7 +54,10 @@ public class JwtFilter extends OncePerRequestFilter {
             username = jwtService.extractSub(token);
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
 
-                UserDetails userDetails = effectiveUserDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = statelessPrincipal ? jwtService.extractPrincipal(token) : null;
+                if (userDetails == null) {
+                    userDetails = effectiveUserDetailsService.loadUserByUsername(username);
+                }
                 if (jwtService.validateToken(token, userDetails)) {
                     UsernamePasswordAuthenticationToken usrnmPswrdAuthToken =
                             new UsernamePasswordAuthenticationToken(
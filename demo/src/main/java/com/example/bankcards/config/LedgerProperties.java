@@ -0,0 +1,18 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.ledger")
+public class LedgerProperties {
+
+    // На сколько месяцев вперед создаются партиции card_transaction
+    private int monthsAhead = 2;
+    // Партиции старше стольких месяцев отсоединяются от журнала. 0 - не отсоединять
+    private int retentionMonths = 0;
+}
@@ -0,0 +1,122 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.dto.ErrorDTO;
+import com.example.bankcards.service.JwtService;
+import com.example.bankcards.util.TokenBucket;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение частоты запросов по IP и по пользователю, до проверки JWT.
+ * Бакеты живут в памяти узла: лимиты защищают CPU и БД без лишнего сетевого запроса.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String DEFAULT_ROUTE = "default";
+
+    private final RateLimitProperties properties;
+    private final JwtService jwtService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Cache<String, TokenBucket> buckets;
+
+    public RateLimitFilter(
+            RateLimitProperties properties,
+            JwtService jwtService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.jwtService = jwtService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMillis(properties.getIdleTimeout()))
+                .maximumSize(properties.getMaxBuckets())
+                .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        RateLimitProperties.Limit limit = properties.getDefaultLimit();
+        String route = DEFAULT_ROUTE;
+        for (RateLimitProperties.Route candidate : properties.getRoutes()) {
+            if (candidate.getPatterns().stream().anyMatch(pattern -> pathMatcher.match(pattern, path))) {
+                limit = candidate;
+                route = candidate.getName();
+                break;
+            }
+        }
+
+        long waitNanos = consume(route + ":ip:" + request.getRemoteAddr(), limit);
+        if (waitNanos == 0) {
+            String username = extractUsername(request);
+            if (username != null) {
+                waitNanos = consume(route + ":user:" + username, limit);
+            }
+        }
+
+        if (waitNanos > 0) {
+            reject(response, route, waitNanos);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private long consume(String key, RateLimitProperties.Limit limit) {
+        return buckets.get(key, k -> new TokenBucket(limit.getCapacity(), limit.getRefillPerSecond()))
+                .tryConsume();
+    }
+
+    // Подпись проверяется через кэш claims, поэтому для повторяющегося токена это дешево
+    private String extractUsername(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            return jwtService.extractSub(authHeader.substring(7));
+        }
+        return null;
+    }
+
+    private void reject(HttpServletResponse response, String route, long waitNanos) throws IOException {
+        Counter.builder("rate_limit.rejected")
+                .tag("route", route)
+                .register(meterRegistry)
+                .increment();
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorDTO(
+                HttpStatus.TOO_MANY_REQUESTS.value(),
+                HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase(),
+                "Too many requests. Retry after " + retryAfter + " s"
+        ));
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    // Бакет, к которому не обращались дольше этого времени (мс), удаляется
+    private long idleTimeout = 600000;
+    private long maxBuckets = 100000;
+    private Limit defaultLimit = new Limit();
+    private List<Route> routes = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Limit {
+        private double capacity = 100;
+        private double refillPerSecond = 50;
+    }
+
+    @Getter
+    @Setter
+    public static class Route extends Limit {
+        private String name;
+        private List<String> patterns = new ArrayList<>();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.util.ReadYourWritesTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Направляет соединения read-only транзакций в реплику, остальные - в primary.
+ * Работает только за {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}:
+ * признак read-only известен лишь после начала транзакции, поэтому соединение нужно брать при первом запросе
+ */
+@RequiredArgsConstructor
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !readYourWritesTracker.isPinned()) {
+            return Route.REPLICA;
+        }
+        return Route.PRIMARY;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.bankcards.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.replica")
+public class ReplicaProperties {
+
+    // false - весь трафик идет в spring.datasource, как без реплики
+    private boolean enabled = false;
+    // Сколько мс после записи чтения пользователя идут в primary, 0 - отключено
+    private long readYourWritesWindow = 0;
+    private long maxTrackedPrincipals = 100000;
+}
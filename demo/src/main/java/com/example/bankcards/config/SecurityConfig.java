@@ -1,7 +1,6 @@
 package com.example.bankcards.config;
 
-import com.example.bankcards.repository.UserRepository;
-import com.example.bankcards.service.EffectiveUserDetailsService;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -28,6 +27,8 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class SecurityConfig {
 
     private final JwtFilter jwtFilter;
+    private final RateLimitFilter rateLimitFilter;
+    private final ConcurrencyLimitFilter concurrencyLimitFilter;
 
     @Value("${app.admin.username}")
     private String adminUsername;
@@ -39,23 +40,23 @@ public class SecurityConfig {
         return http
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
+                        // Завершение SSE-потока идет async-диспатчем без JWT, запрос уже был авторизован
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(
-                                "/api/v1/user/token"
+                                "/api/v1/user/token",
+                                "/api/v1/user/token/**"
                         ).permitAll()
                         .anyRequest().authenticated())
                 .sessionManagement(session ->
                         session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
                 .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(rateLimitFilter, JwtFilter.class)
+                // Регистрируется после rateLimitFilter с тем же порядком, поэтому выполняется сразу за ним
+                .addFilterBefore(concurrencyLimitFilter, JwtFilter.class)
                 .build();
     }
 
-    @Bean
-    public UserDetailsService userDetailsService(UserRepository userRepository) {
-        return new EffectiveUserDetailsService(userRepository);
-
-    }
-
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder(12);
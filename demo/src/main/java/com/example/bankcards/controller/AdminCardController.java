@@ -1,6 +1,9 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardSearchFilter;
+import com.example.bankcards.dto.CursorPageDTO;
+import com.example.bankcards.dto.SliceDTO;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.service.CardService;
 import lombok.RequiredArgsConstructor;
@@ -11,6 +14,11 @@ import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.Set;
 
 @RestController
 @RequiredArgsConstructor
@@ -36,12 +44,66 @@ public class AdminCardController {
         return ResponseEntity.ok(cardService.getAll(pageable));
     }
 
+    @GetMapping("/slice")
+    public ResponseEntity<SliceDTO<CardDTO>> getAllCardsSlice(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection
+    ) {
+        Sort sort = sortDirection.equalsIgnoreCase("desc")
+                ? Sort.by(sortBy).descending()
+                : Sort.by(sortBy).ascending();
+
+        Pageable pageable = PageRequest.of(page, size, sort);
+
+        return ResponseEntity.ok(cardService.getAllSlice(pageable));
+    }
+
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPageDTO<CardDTO>> scrollAllCards(
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @RequestParam(required = false) String cursor
+    ) {
+        return ResponseEntity.ok(
+                cardService.scrollCards(null, null, sortBy, sortDirection, cursor, size)
+        );
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<Page<CardDTO>> searchCards(
+            @RequestParam(required = false) String ownerId,
+            @RequestParam(required = false) Set<CardStatus> status,
+            @RequestParam(required = false) YearMonth expiryFrom,
+            @RequestParam(required = false) YearMonth expiryTo,
+            @RequestParam(required = false) BigDecimal minBalance,
+            @RequestParam(required = false) BigDecimal maxBalance,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection
+    ) {
+        Sort sort = sortDirection.equalsIgnoreCase("desc")
+                ? Sort.by(sortBy).descending()
+                : Sort.by(sortBy).ascending();
+
+        Pageable pageable = PageRequest.of(page, size, sort);
+        CardSearchFilter filter = new CardSearchFilter(status, expiryFrom, expiryTo, minBalance, maxBalance);
+
+        return ResponseEntity.ok(cardService.search(ownerId, filter, pageable));
+    }
+
     @GetMapping("/{cardId}")
-    public ResponseEntity<CardDTO> getCardById(@PathVariable Long cardId) {
+    public ResponseEntity<CardDTO> getCardById(@PathVariable Long cardId, WebRequest request) {
+        if (request.checkNotModified(cardService.getCardETag(cardId))) {
+            return null;
+        }
         return ResponseEntity.ok(cardService.getById(cardId));
     }
 
-    @GetMapping("/number/{cardId}")
+    @GetMapping("/number/{cardNumber}")
     public ResponseEntity<CardDTO> getCardByNumber(@PathVariable String cardNumber) {
         return ResponseEntity.ok(cardService.getByNumber(cardNumber));
     }
@@ -59,7 +121,35 @@ public class AdminCardController {
 
         Pageable pageable = PageRequest.of(page, size, sort);
 
-        return ResponseEntity.ok(cardService.getCardsOfUser(ownerId, pageable));
+        return ResponseEntity.ok(cardService.getCardsOfOwner(ownerId, pageable));
+    }
+
+    @GetMapping("/user/slice")
+    public ResponseEntity<SliceDTO<CardDTO>> getCardsOfUserSlice(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @RequestParam String ownerId) {
+        Sort sort = sortDirection.equalsIgnoreCase("desc")
+                ? Sort.by(sortBy).descending()
+                : Sort.by(sortBy).ascending();
+
+        Pageable pageable = PageRequest.of(page, size, sort);
+
+        return ResponseEntity.ok(cardService.getCardsOfUserSlice(ownerId, null, pageable));
+    }
+
+    @GetMapping("/user/scroll")
+    public ResponseEntity<CursorPageDTO<CardDTO>> scrollCardsOfUser(
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @RequestParam(required = false) String cursor,
+            @RequestParam String ownerId) {
+        return ResponseEntity.ok(
+                cardService.scrollCards(ownerId, null, sortBy, sortDirection, cursor, size)
+        );
     }
 
     @PostMapping
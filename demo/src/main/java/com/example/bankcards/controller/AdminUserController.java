@@ -1,5 +1,6 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.CursorPageDTO;
 import com.example.bankcards.dto.UserCreationDTO;
 import com.example.bankcards.dto.UserDTO;
 import com.example.bankcards.service.UserService;
@@ -36,6 +37,16 @@ public class AdminUserController {
         return ResponseEntity.ok(userService.getAll(pageable));
     }
 
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPageDTO<UserDTO>> scroll(
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @RequestParam(required = false) String cursor
+    ) {
+        return ResponseEntity.ok(userService.scroll(sortBy, sortDirection, cursor, size));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<UserDTO> getById(@PathVariable String id) {
         return ResponseEntity.ok(userService.getByID(id));
@@ -52,4 +63,10 @@ public class AdminUserController {
     public ResponseEntity<UserDTO> deleteUser(@RequestParam String id) {
         return ResponseEntity.ok(userService.deleteUser(id));
     }
+
+    @PostMapping("/revoke-sessions")
+    public ResponseEntity<String> revokeSessions(@RequestParam String id) {
+        userService.revokeSessions(id);
+        return ResponseEntity.ok("All sessions of user-id:" + id + " have been revoked");
+    }
 }
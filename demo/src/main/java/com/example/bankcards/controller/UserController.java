@@ -1,29 +1,52 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardSearchFilter;
+import com.example.bankcards.dto.CardTransactionDTO;
+import com.example.bankcards.dto.CursorPageDTO;
+import com.example.bankcards.dto.RefreshTokenDTO;
+import com.example.bankcards.dto.SliceDTO;
+import com.example.bankcards.dto.TokenPairDTO;
 import com.example.bankcards.dto.UserCreationDTO;
-import com.example.bankcards.exception.UnauthorizedException;
+import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.service.CardService;
-import com.example.bankcards.service.JwtService;
+import com.example.bankcards.service.CardStreamService;
+import com.example.bankcards.service.CardTransactionService;
+import com.example.bankcards.service.RefreshTokenService;
 import com.example.bankcards.service.UserService;
+import com.example.bankcards.util.EffectiveUserDetails;
+import jakarta.validation.constraints.Digits;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/api/v1/user")
 public class UserController {
 
+    // Повтор запроса с тем же ключом не выполняет операцию второй раз
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final UserService userService;
     private final CardService cardService;
-    private final JwtService jwtService;
+    private final CardStreamService cardStreamService;
+    private final CardTransactionService cardTransactionService;
+    private final RefreshTokenService refreshTokenService;
 
     @GetMapping("/card")
     public ResponseEntity<Page<CardDTO>> getUsersCards(
@@ -31,21 +54,42 @@ public class UserController {
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDirection,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal EffectiveUserDetails principal,
+            WebRequest request) {
         Sort sort = sortDirection.equalsIgnoreCase("desc")
                 ? Sort.by(sortBy).descending()
                 : Sort.by(sortBy).ascending();
 
         Pageable pageable = PageRequest.of(page, size, sort);
 
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            return ResponseEntity.ok(cardService.getCardsOfUser(
-                    jwtService.extractId(authHeader.substring(7)),
-                    pageable
-            ));
-        } else {
-            throw new UnauthorizedException("Auth header is either not present or unreadable");
-        }
+        return okIfModified(request,
+                () -> cardService.getCardsETag(principal.getId()),
+                () -> cardService.getCardsOfUser(principal.getId(), pageable));
+    }
+
+    @GetMapping("/card/search")
+    public ResponseEntity<Page<CardDTO>> searchUsersCards(
+            @RequestParam(required = false) Set<CardStatus> status,
+            @RequestParam(required = false) YearMonth expiryFrom,
+            @RequestParam(required = false) YearMonth expiryTo,
+            @RequestParam(required = false) BigDecimal minBalance,
+            @RequestParam(required = false) BigDecimal maxBalance,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @AuthenticationPrincipal EffectiveUserDetails principal,
+            WebRequest request) {
+        Sort sort = sortDirection.equalsIgnoreCase("desc")
+                ? Sort.by(sortBy).descending()
+                : Sort.by(sortBy).ascending();
+
+        Pageable pageable = PageRequest.of(page, size, sort);
+        CardSearchFilter filter = new CardSearchFilter(status, expiryFrom, expiryTo, minBalance, maxBalance);
+
+        return okIfModified(request,
+                () -> cardService.getCardsETag(principal.getId()),
+                () -> cardService.search(principal.getId(), filter, pageable));
     }
 
     @GetMapping("/card/active")
@@ -54,21 +98,17 @@ public class UserController {
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDirection,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal EffectiveUserDetails principal,
+            WebRequest request) {
         Sort sort = sortDirection.equalsIgnoreCase("desc")
                 ? Sort.by(sortBy).descending()
                 : Sort.by(sortBy).ascending();
 
         Pageable pageable = PageRequest.of(page, size, sort);
 
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            return ResponseEntity.ok(cardService.getActiveCardsOfUser(
-                    jwtService.extractId(authHeader.substring(7)),
-                    pageable
-            ));
-        } else {
-            throw new UnauthorizedException("Auth header is either not present or unreadable");
-        }
+        return okIfModified(request,
+                () -> cardService.getCardsETag(principal.getId()),
+                () -> cardService.getActiveCardsOfUser(principal.getId(), pageable));
     }
 
     @GetMapping("/card/blocked")
@@ -77,21 +117,17 @@ public class UserController {
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDirection,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal EffectiveUserDetails principal,
+            WebRequest request) {
         Sort sort = sortDirection.equalsIgnoreCase("desc")
                 ? Sort.by(sortBy).descending()
                 : Sort.by(sortBy).ascending();
 
         Pageable pageable = PageRequest.of(page, size, sort);
 
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            return ResponseEntity.ok(cardService.getBlockedCardsOfUser(
-                    jwtService.extractId(authHeader.substring(7)),
-                    pageable
-            ));
-        } else {
-            throw new UnauthorizedException("Auth header is either not present or unreadable");
-        }
+        return okIfModified(request,
+                () -> cardService.getCardsETag(principal.getId()),
+                () -> cardService.getBlockedCardsOfUser(principal.getId(), pageable));
     }
 
     @GetMapping("/card/expired")
@@ -100,57 +136,163 @@ public class UserController {
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDirection,
-            @RequestHeader("Authorization") String authHeader) {
+            @AuthenticationPrincipal EffectiveUserDetails principal,
+            WebRequest request) {
         Sort sort = sortDirection.equalsIgnoreCase("desc")
                 ? Sort.by(sortBy).descending()
                 : Sort.by(sortBy).ascending();
 
         Pageable pageable = PageRequest.of(page, size, sort);
 
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            return ResponseEntity.ok(cardService.getExpiredCardsOfUser(
-                    jwtService.extractId(authHeader.substring(7)),
-                    pageable
-            ));
-        } else {
-            throw new UnauthorizedException("Auth header is either not present or unreadable");
-        }
+        return okIfModified(request,
+                () -> cardService.getCardsETag(principal.getId()),
+                () -> cardService.getExpiredCardsOfUser(principal.getId(), pageable));
+    }
+
+    @GetMapping("/card/slice")
+    public ResponseEntity<SliceDTO<CardDTO>> getUsersCardsSlice(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @AuthenticationPrincipal EffectiveUserDetails principal) {
+        Sort sort = sortDirection.equalsIgnoreCase("desc")
+                ? Sort.by(sortBy).descending()
+                : Sort.by(sortBy).ascending();
+
+        Pageable pageable = PageRequest.of(page, size, sort);
+
+        return ResponseEntity.ok(cardService.getCardsOfUserSlice(principal.getId(), null, pageable));
+    }
+
+    @GetMapping("/card/active/slice")
+    public ResponseEntity<SliceDTO<CardDTO>> getActiveUsersCardsSlice(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @AuthenticationPrincipal EffectiveUserDetails principal) {
+        Sort sort = sortDirection.equalsIgnoreCase("desc")
+                ? Sort.by(sortBy).descending()
+                : Sort.by(sortBy).ascending();
+
+        Pageable pageable = PageRequest.of(page, size, sort);
+
+        return ResponseEntity.ok(cardService.getCardsOfUserSlice(principal.getId(), CardStatus.ACTIVE, pageable));
+    }
+
+    @GetMapping("/card/blocked/slice")
+    public ResponseEntity<SliceDTO<CardDTO>> getBlockedUsersCardsSlice(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @AuthenticationPrincipal EffectiveUserDetails principal) {
+        Sort sort = sortDirection.equalsIgnoreCase("desc")
+                ? Sort.by(sortBy).descending()
+                : Sort.by(sortBy).ascending();
+
+        Pageable pageable = PageRequest.of(page, size, sort);
+
+        return ResponseEntity.ok(cardService.getCardsOfUserSlice(principal.getId(), CardStatus.BLOCKED, pageable));
+    }
+
+    @GetMapping("/card/expired/slice")
+    public ResponseEntity<SliceDTO<CardDTO>> getExpiredUsersCardsSlice(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @AuthenticationPrincipal EffectiveUserDetails principal) {
+        Sort sort = sortDirection.equalsIgnoreCase("desc")
+                ? Sort.by(sortBy).descending()
+                : Sort.by(sortBy).ascending();
+
+        Pageable pageable = PageRequest.of(page, size, sort);
+
+        return ResponseEntity.ok(cardService.getCardsOfUserSlice(principal.getId(), CardStatus.EXPIRED, pageable));
+    }
+
+    @GetMapping("/card/scroll")
+    public ResponseEntity<CursorPageDTO<CardDTO>> scrollUsersCards(
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @RequestParam(required = false) String cursor,
+            @AuthenticationPrincipal EffectiveUserDetails principal) {
+        return ResponseEntity.ok(
+                cardService.scrollCards(principal.getId(), null, sortBy, sortDirection, cursor, size)
+        );
+    }
+
+    @GetMapping("/card/active/scroll")
+    public ResponseEntity<CursorPageDTO<CardDTO>> scrollActiveUsersCards(
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @RequestParam(required = false) String cursor,
+            @AuthenticationPrincipal EffectiveUserDetails principal) {
+        return ResponseEntity.ok(
+                cardService.scrollCards(principal.getId(), CardStatus.ACTIVE, sortBy, sortDirection, cursor, size)
+        );
+    }
+
+    @GetMapping("/card/blocked/scroll")
+    public ResponseEntity<CursorPageDTO<CardDTO>> scrollBlockedUsersCards(
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @RequestParam(required = false) String cursor,
+            @AuthenticationPrincipal EffectiveUserDetails principal) {
+        return ResponseEntity.ok(
+                cardService.scrollCards(principal.getId(), CardStatus.BLOCKED, sortBy, sortDirection, cursor, size)
+        );
+    }
+
+    @GetMapping("/card/expired/scroll")
+    public ResponseEntity<CursorPageDTO<CardDTO>> scrollExpiredUsersCards(
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection,
+            @RequestParam(required = false) String cursor,
+            @AuthenticationPrincipal EffectiveUserDetails principal) {
+        return ResponseEntity.ok(
+                cardService.scrollCards(principal.getId(), CardStatus.EXPIRED, sortBy, sortDirection, cursor, size)
+        );
     }
 
     @PostMapping("/card")
     public ResponseEntity<CardDTO> createCard(
-            @RequestHeader("Authorization") String authHeader) {
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            return ResponseEntity.ok(cardService.create(
-                    jwtService.extractId(authHeader.substring(7))
-            ));
-        } else {
-            throw new UnauthorizedException("Auth header is either not present or unreadable");
-        }
+            @AuthenticationPrincipal EffectiveUserDetails principal) {
+        return ResponseEntity.ok(cardService.create(principal.getId()));
     }
 
     @PutMapping("/card/block")
     public ResponseEntity<String> blockCardRequest(
-            @RequestHeader("Authorization") String authHeader,
+            @AuthenticationPrincipal EffectiveUserDetails principal,
             @RequestParam Long cardId) {
         cardService.addToBlockQueue(cardId);
         return ResponseEntity.ok("Block request from user-id:" +
-                jwtService.extractId(authHeader.substring(7)) +
+                principal.getId() +
                 " has been sent to admin.\n Card to block: " + cardId);
     }
 
+    /**
+     * Изменения баланса и статуса карт пользователя вместо опроса /card/balance
+     */
+    @GetMapping(value = "/card/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamCards(@AuthenticationPrincipal EffectiveUserDetails principal) {
+        return cardStreamService.subscribe(principal.getId());
+    }
+
     @GetMapping("/card/balance")
     public ResponseEntity<BigDecimal> getCardBalance(
-            @RequestHeader("Authorization") String authHeader,
-            @RequestParam Long cardId) {
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            return ResponseEntity.ok(cardService.getBalance(
-                    cardId,
-                    jwtService.extractId(authHeader.substring(7))
-            ));
-        } else {
-            throw new UnauthorizedException("Auth header is either not present or unreadable");
-        }
+            @AuthenticationPrincipal EffectiveUserDetails principal,
+            @RequestParam Long cardId,
+            WebRequest request) {
+        return okIfModified(request,
+                () -> cardService.getBalanceETag(cardId, principal.getId()),
+                () -> cardService.getBalance(cardId, principal.getId()));
     }
 
     @PostMapping("/token")
@@ -158,25 +300,80 @@ public class UserController {
         return ResponseEntity.ok(userService.getToken(dto.username(), dto.password()));
     }
 
+    @PostMapping("/token/pair")
+    public ResponseEntity<TokenPairDTO> getTokenPair(@RequestBody UserCreationDTO dto) {
+        return ResponseEntity.ok(userService.getTokenPair(dto.username(), dto.password()));
+    }
+
+    @PostMapping("/token/refresh")
+    public ResponseEntity<TokenPairDTO> refreshToken(@RequestBody RefreshTokenDTO dto) {
+        return ResponseEntity.ok(refreshTokenService.refresh(dto.refreshToken()));
+    }
+
+    @PostMapping("/token/revoke")
+    public ResponseEntity<String> revokeRefreshToken(@RequestBody RefreshTokenDTO dto) {
+        refreshTokenService.revoke(dto.refreshToken());
+        return ResponseEntity.ok("Refresh token has been revoked");
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<String> logout(
+            @RequestHeader(HttpHeaders.AUTHORIZATION) String authorization,
+            @RequestBody(required = false) RefreshTokenDTO dto) {
+        // Запрос уже прошел JwtFilter, поэтому заголовок содержит валидный Bearer-токен
+        userService.logout(authorization.substring(7), dto == null ? null : dto.refreshToken());
+        return ResponseEntity.ok("Session has been closed");
+    }
+
+    @GetMapping("/card/transactions")
+    public ResponseEntity<CursorPageDTO<CardTransactionDTO>> getCardTransactions(
+            @AuthenticationPrincipal EffectiveUserDetails principal,
+            @RequestParam Long cardId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(cardTransactionService.getHistory(cardId, principal.getId(), cursor, size));
+    }
+
     @PutMapping("/card/deposit")
-    public ResponseEntity<String> deposit(@RequestParam BigDecimal amount, @RequestParam Long cardId) {
-        cardService.deposit(cardId, amount);
+    public ResponseEntity<String> deposit(
+            @AuthenticationPrincipal EffectiveUserDetails principal,
+            @RequestParam @Digits(integer = 15, fraction = 4) BigDecimal amount,
+            @RequestParam Long cardId,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        cardService.deposit(cardId, principal.getId(), amount, idempotencyKey);
         return ResponseEntity.ok("Funds have been deposited: +" + amount.toString());
     }
 
     @PutMapping("/card/withdraw")
-    public ResponseEntity<String> withdraw(@RequestParam BigDecimal amount, @RequestParam Long cardId) {
-        cardService.withdraw(cardId, amount);
+    public ResponseEntity<String> withdraw(
+            @AuthenticationPrincipal EffectiveUserDetails principal,
+            @RequestParam @Digits(integer = 15, fraction = 4) BigDecimal amount,
+            @RequestParam Long cardId,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        cardService.withdraw(cardId, principal.getId(), amount, idempotencyKey);
         return ResponseEntity.ok("Funds have been withdrawn: -" + amount.toString());
     }
 
     @PutMapping("/card/transfer")
     public ResponseEntity<String> transfer(
+            @AuthenticationPrincipal EffectiveUserDetails principal,
             @RequestParam Long fromId,
             @RequestParam Long toId,
-            @RequestParam BigDecimal amount
+            @RequestParam @Digits(integer = 15, fraction = 4) BigDecimal amount,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey
     ) {
-        cardService.transfer(fromId, toId, amount);
+        cardService.transfer(fromId, toId, principal.getId(), amount, idempotencyKey);
         return ResponseEntity.ok("Funds have been transferred\nCard-id:" + fromId + " -" + amount + "\nCard-id:" + toId + " +" + amount);
     }
+
+    /**
+     * Условный GET: при совпадении If-None-Match с текущим ETag - 304 без чтения данных.
+     * Версия берется до чтения данных: при гонке клиент получит ETag старше тела и просто перезапросит
+     */
+    private static <T> ResponseEntity<T> okIfModified(WebRequest request, Supplier<String> etag, Supplier<T> body) {
+        if (request.checkNotModified(etag.get())) {
+            return null;
+        }
+        return ResponseEntity.ok(body.get());
+    }
 }
@@ -0,0 +1,12 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.CardStatus;
+
+import java.math.BigDecimal;
+
+public record CardBalanceEvent(
+        Long cardId,
+        CardStatus status,
+        BigDecimal balance
+) {
+}
@@ -0,0 +1,27 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.CardStatus;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.Set;
+
+/**
+ * Условия поиска карт. Пустое/null условие не ограничивает выборку, границы диапазонов включительные
+ */
+public record CardSearchFilter(
+        Set<CardStatus> statuses,
+        YearMonth expiryFrom,
+        YearMonth expiryTo,
+        BigDecimal minBalance,
+        BigDecimal maxBalance
+) {
+
+    public static CardSearchFilter all() {
+        return new CardSearchFilter(null, null, null, null, null);
+    }
+
+    public static CardSearchFilter withStatus(CardStatus status) {
+        return new CardSearchFilter(Set.of(status), null, null, null, null);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.TransactionKind;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+public record CardTransactionDTO(
+        Long id,
+        Long cardId,
+        TransactionKind kind,
+        BigDecimal amount,
+        BigDecimal balanceAfter,
+        Long counterpartCardId,
+        Instant createdAt
+) {
+}
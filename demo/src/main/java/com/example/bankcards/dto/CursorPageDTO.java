@@ -0,0 +1,25 @@
+package com.example.bankcards.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница keyset-пагинации. {@code next} - непрозрачный курсор следующей страницы, null если она последняя
+ */
+public record CursorPageDTO<T>(
+        List<T> content,
+        String next
+) {
+
+    /**
+     * @param rows     результат запроса с лимитом {@code size + 1}: лишняя строка означает, что есть следующая страница
+     * @param cursorOf курсор по последнему элементу страницы
+     */
+    public static <T> CursorPageDTO<T> of(List<T> rows, int size, Function<T, String> cursorOf) {
+        if (rows.size() <= size) {
+            return new CursorPageDTO<>(rows, null);
+        }
+        List<T> page = List.copyOf(rows.subList(0, size));
+        return new CursorPageDTO<>(page, cursorOf.apply(page.get(size - 1)));
+    }
+}
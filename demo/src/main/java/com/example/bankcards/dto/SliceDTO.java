@@ -0,0 +1,27 @@
+package com.example.bankcards.dto;
+
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+/**
+ * Страница без точного COUNT(*): только признак следующей страницы и приблизительное общее количество
+ */
+public record SliceDTO<T>(
+        List<T> content,
+        int number,
+        int size,
+        boolean hasNext,
+        long approximateTotal
+) {
+
+    public static <T> SliceDTO<T> of(Slice<T> slice, long approximateTotal) {
+        return new SliceDTO<>(
+                slice.getContent(),
+                slice.getNumber(),
+                slice.getSize(),
+                slice.hasNext(),
+                approximateTotal
+        );
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.dto;
+
+public record TokenPairDTO(
+        String accessToken,
+        String refreshToken
+) {
+}
@@ -2,20 +2,30 @@ package com.example.bankcards.entity;
 
 import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.util.CardExpiryDateConverter;
+import com.example.bankcards.util.CardIndexListener;
 import com.example.bankcards.util.CardNumberEncryptor;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
 import java.time.YearMonth;
 
 @Entity
+@Cacheable
+// Нативные UPDATE обходят Hibernate: затронутые id блокируются в кэше через CardCacheInvalidator
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Card.CACHE_REGION)
+@EntityListeners(CardIndexListener.class)
 @NoArgsConstructor
 @Setter
 @Getter
 public class Card {
+    public static final String MASK_PREFIX = "**** **** **** ";
+    public static final String CACHE_REGION = "card";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -25,6 +35,7 @@ public class Card {
             String ownerId
     ) {
         this.cardNumber = cardNumber;
+        this.cardNumberLast4 = lastFour(cardNumber);
         this.ownerId = ownerId;
         this.expiryDate = YearMonth.now().plusYears(5);
         this.status = CardStatus.ACTIVE;
@@ -43,9 +54,18 @@ public class Card {
 //    }
 
     @Convert(converter = CardNumberEncryptor.class)
-    @Column(name = "card_number", nullable = false, unique = true)
+    // Уникальность обеспечивается индексом на card_number_hash: шифротекст всегда разный
+    @Column(name = "card_number", nullable = false)
     private String cardNumber;
 
+    // HMAC номера карты, заполняется в CardIndexListener
+    @Column(name = "card_number_hash", unique = true, length = 64)
+    private String cardNumberHash;
+
+    // Последние 4 цифры в открытом виде: списки карт отдаются без расшифровки номера
+    @Column(name = "card_number_last4", length = 4)
+    private String cardNumberLast4;
+
     @Column(name = "card_holder", nullable = false)
     private String ownerId;
 
@@ -59,8 +79,17 @@ public class Card {
     @Column(name = "balance", nullable = false)
     private BigDecimal balance;
 
+    // Нативные изменения баланса и статуса увеличивают версию сами: version = version + 1
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    public static String lastFour(String cardNumber) {
+        return cardNumber.substring(cardNumber.length() - 4);
+    }
+
     public String getCardNumberEncrypted() {
-        return "**** **** **** " + cardNumber.substring(12);
+        return MASK_PREFIX + lastFour(cardNumber);
     }
 
     public CardDTO toDTO() {
@@ -0,0 +1,43 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Запись журнала операций. Пишется только SQL-функциями deposit_funds, withdraw_funds и transfer_funds
+ * в одной транзакции с изменением баланса, из приложения только читается.
+ * Первичный ключ таблицы - (id, created_at) из-за партиционирования, но id уникален сам по себе
+ */
+@Entity
+@Immutable
+@NoArgsConstructor
+@Table(name = "card_transaction")
+@Getter
+public class CardTransaction {
+    @Id
+    private Long id;
+
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @Column(name = "kind", nullable = false)
+    private TransactionKind kind;
+
+    @Column(name = "amount", nullable = false)
+    private BigDecimal amount;
+
+    @Column(name = "balance_after", nullable = false)
+    private BigDecimal balanceAfter;
+
+    // Для переводов - карта с другой стороны
+    @Column(name = "counterpart_card_id")
+    private Long counterpartCardId;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
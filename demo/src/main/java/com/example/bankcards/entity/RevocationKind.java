@@ -0,0 +1,8 @@
+package com.example.bankcards.entity;
+
+public enum RevocationKind {
+    // Отозван один токен по jti
+    TOKEN,
+    // Отозваны все токены пользователя, выпущенные до момента отзыва
+    USER
+}
@@ -0,0 +1,41 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@NoArgsConstructor
+@Table(name = "revoked_token")
+@Getter
+@Setter
+public class RevokedToken {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false)
+    private RevocationKind kind;
+
+    // jti для TOKEN, id пользователя для USER
+    @Column(name = "value", nullable = false)
+    private String value;
+
+    @Column(name = "revoked_at", nullable = false)
+    private Instant revokedAt;
+
+    // После этого момента все затронутые токены истекли сами, запись можно удалять
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    public RevokedToken(RevocationKind kind, String value, Instant revokedAt, Instant expiresAt) {
+        this.kind = kind;
+        this.value = value;
+        this.revokedAt = revokedAt;
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.bankcards.entity;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Тип записи журнала card_transaction. SQL-функции пишут порядковый номер, порядок менять нельзя
+ */
+@Getter
+@RequiredArgsConstructor
+public enum TransactionKind {
+    DEPOSIT("Пополнение"),
+    WITHDRAWAL("Снятие"),
+    TRANSFER_OUT("Перевод с карты"),
+    TRANSFER_IN("Перевод на карту");
+
+    private final String description;
+}
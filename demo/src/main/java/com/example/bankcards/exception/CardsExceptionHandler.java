@@ -2,12 +2,18 @@ package com.example.bankcards.exception;
 
 import com.example.bankcards.dto.ErrorDTO;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.context.MessageSourceResolvable;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
+
+import java.util.stream.Collectors;
 
 @RestControllerAdvice
 public class CardsExceptionHandler {
@@ -16,7 +22,10 @@ public class CardsExceptionHandler {
             IllegalStateException.class,
             CardPropertyNotAccessibleException.class,
             InvalidCardException.class,
-            BalanceException.class
+            BalanceException.class,
+            InvalidCursorException.class,
+            InvalidSortException.class,
+            IdempotencyKeyException.class
     })
     public ResponseEntity<ErrorDTO> handleBadRequestExceptions(
             RuntimeException ex) {
@@ -29,6 +38,22 @@ public class CardsExceptionHandler {
                 ));
     }
 
+    // Ограничения на параметрах контроллера, например @Digits у суммы
+    @ExceptionHandler(HandlerMethodValidationException.class)
+    public ResponseEntity<ErrorDTO> handleHandlerMethodValidationException(
+            HandlerMethodValidationException ex
+    ) {
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(new ErrorDTO(
+                        HttpStatus.BAD_REQUEST.value(),
+                        ex.getClass().getName(),
+                        ex.getAllErrors().stream()
+                                .map(MessageSourceResolvable::getDefaultMessage)
+                                .collect(Collectors.joining("; "))
+                ));
+    }
+
     @ExceptionHandler({UsernameNotFoundException.class, EntityNotFoundException.class})
     public ResponseEntity<ErrorDTO> handleNotFoundException(
             RuntimeException ex
@@ -54,4 +79,32 @@ public class CardsExceptionHandler {
                         ex.getMessage()
                 ));
     }
+
+    // Карту изменили между чтением и записью (@Version), клиент должен перечитать ее
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorDTO> handleOptimisticLockingFailureException(
+            OptimisticLockingFailureException ex
+    ) {
+        return ResponseEntity
+                .status(HttpStatus.CONFLICT)
+                .body(new ErrorDTO(
+                        HttpStatus.CONFLICT.value(),
+                        ex.getClass().getName(),
+                        "Card was modified concurrently, re-read it and retry"
+                ));
+    }
+
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ErrorDTO> handleServiceOverloadedException(
+            ServiceOverloadedException ex
+    ) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorDTO(
+                        HttpStatus.SERVICE_UNAVAILABLE.value(),
+                        ex.getClass().getName(),
+                        ex.getMessage()
+                ));
+    }
 }
@@ -0,0 +1,8 @@
+package com.example.bankcards.exception;
+
+// Непредвиденный сбой проверки пароля. Не обрабатывается CardsExceptionHandler: это 500, а не ошибка запроса
+public class LoginExecutionException extends RuntimeException {
+    public LoginExecutionException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
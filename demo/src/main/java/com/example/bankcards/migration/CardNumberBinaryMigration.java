@@ -0,0 +1,72 @@
+package com.example.bankcards.migration;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import lombok.Setter;
+
+import java.sql.PreparedStatement;
+
+/**
+ * Переносит зашифрованные номера карт из текстовой колонки card_number в bytea card_number_bin.
+ * Работает пачками с коммитом после каждой, чтобы не держать блокировку на всей таблице
+ * и не раздувать одну транзакцию. Повторный запуск продолжает с незаполненных строк.
+ * <p>
+ * Формат bytea: [версия ключа][payload]. Hex старого формата -> версия 0 + сырые байты,
+ * {@code v<N>:<base64>} -> версия N + декодированный base64. Расшифровка не нужна.
+ */
+@Setter
+public class CardNumberBinaryMigration implements CustomTaskChange {
+
+    private static final String CONVERT_CHUNK = """
+            UPDATE card SET card_number_bin = CASE
+                WHEN card_number LIKE 'v%:%' THEN
+                    set_byte('\\x00'::bytea, 0, split_part(substr(card_number, 2), ':', 1)::int)
+                        || decode(split_part(card_number, ':', 2), 'base64')
+                ELSE '\\x00'::bytea || decode(card_number, 'hex')
+            END
+            WHERE id IN (SELECT id FROM card WHERE card_number_bin IS NULL ORDER BY id LIMIT ?)
+            """;
+
+    private Integer chunkSize = 5000;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        JdbcConnection connection = (JdbcConnection) database.getConnection();
+        try (PreparedStatement statement = connection.prepareStatement(CONVERT_CHUNK)) {
+            statement.setInt(1, chunkSize);
+            int updated;
+            do {
+                updated = statement.executeUpdate();
+                connection.commit();
+            } while (updated > 0);
+        } catch (Exception e) {
+            throw new CustomChangeException("Could not convert card numbers to bytea", e);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Card numbers converted to bytea";
+    }
+
+    @Override
+    public void setUp() {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        if (chunkSize == null || chunkSize <= 0) {
+            errors.addError("chunkSize must be positive");
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * Инвалидация L2-кэша карт для изменений, сделанных в обход Hibernate (нативный SQL через JDBC).
+ * Работает так же, как обновление сущности в Hibernate: до UPDATE запись в кэше блокируется,
+ * пока блокировка стоит, чтения идут в БД и не кладут в кэш старое состояние.
+ * После завершения транзакции блокировка снимается с отметкой времени, и загрузки,
+ * начатые до коммита, тоже не попадают в кэш. Остальные карты из кэша не вытесняются.
+ */
+@Component
+public class CardCacheInvalidator {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Вызывается внутри транзакции до изменения карт
+     */
+    public void lock(Collection<Long> cardIds) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        SessionFactoryImplementor factory = session.getFactory();
+        EntityPersister persister = factory.getMappingMetamodel().getEntityDescriptor(Card.class);
+        if (!persister.canWriteToCache()) {
+            return;
+        }
+        EntityDataAccess access = persister.getCacheAccessStrategy();
+        for (Long cardId : cardIds) {
+            Object key = access.generateCacheKey(cardId, persister, factory, session.getTenantIdentifier());
+            SoftLock lock = access.lockItem(session, key, null);
+            session.getActionQueue().registerProcess((success, s) -> access.unlockItem(s, key, lock));
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.repository;
+
+/**
+ * Производные от номера колонки одной карты для {@link CardRepositoryCustom#fillNumberIndex}
+ */
+public record CardNumberIndex(Long cardId, String hash, String lastFour) {
+}
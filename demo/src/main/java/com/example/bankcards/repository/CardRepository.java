@@ -1,57 +1,89 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.CardDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
-import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
-import java.util.Queue;
 
 @Repository
-public interface CardRepository extends JpaRepository<Card, Long> {
+public interface CardRepository extends JpaRepository<Card, Long>, CardRepositoryCustom {
 
-    Page<Card> findAll(Pageable pageable);
+    // Маскированный номер собирается из card_number_last4, шифротекст не читается и не расшифровывается
+    String MASKED_CARD_DTO = "SELECT new com.example.bankcards.dto.CardDTO("
+            + "c.id, concat('" + Card.MASK_PREFIX + "', c.cardNumberLast4), c.ownerId, c.expiryDate, c.status, c.balance) "
+            + "FROM Card c";
 
-    Page<Card> findByOwnerId(String ownerId, Pageable pageable);
+    // Полный DTO без загрузки сущности: конвертеры применяются к выбранным колонкам, снимок в контексте не создается
+    String CARD_DTO = "SELECT new com.example.bankcards.dto.CardDTO("
+            + "c.id, c.cardNumber, c.ownerId, c.expiryDate, c.status, c.balance) "
+            + "FROM Card c";
 
-    Page<Card> findByOwnerIdAndStatus(String ownerId, CardStatus status, Pageable pageable);
+    @Query(value = MASKED_CARD_DTO,
+            countQuery = "SELECT count(c) FROM Card c")
+    Page<CardDTO> findAllMasked(Pageable pageable);
 
-    Optional<Card> findByCardNumber(String cardNumber);
+    // Slice: запрашивается size + 1 строк, отдельного COUNT нет
+    @Query(MASKED_CARD_DTO)
+    Slice<CardDTO> findSliceMasked(Pageable pageable);
 
-    Optional<Card> findByIdAndOwnerId(Long id, String ownerId);
+    @Query(MASKED_CARD_DTO + " WHERE c.ownerId = :ownerId")
+    Slice<CardDTO> findSliceMaskedByOwnerId(@Param("ownerId") String ownerId, Pageable pageable);
 
-    @Modifying
-    @Transactional
-    @Query(value = "UPDATE card SET status = 2 WHERE expiry_date < CURRENT_DATE",
-            nativeQuery = true)
-    void expireCards();
+    @Query(MASKED_CARD_DTO + " WHERE c.ownerId = :ownerId AND c.status = :status")
+    Slice<CardDTO> findSliceMaskedByOwnerIdAndStatus(
+            @Param("ownerId") String ownerId,
+            @Param("status") CardStatus status,
+            Pageable pageable);
 
-    @Modifying
-    @Transactional
-    @Query(value = "UPDATE card SET status = 1 WHERE id IN :cardIds",
+    @Query(value = "SELECT CAST(reltuples AS BIGINT) FROM pg_class WHERE oid = to_regclass('card')",
             nativeQuery = true)
-    void blockCards(Queue<Long> cardIds);
+    long estimateCount();
 
-    @Modifying
-    @Transactional
-    @Query(value = "UPDATE card SET balance = balance + :amount WHERE id = :cardId",
+    @Query(value = "SELECT COALESCE(SUM(cnt), 0) FROM card_count WHERE owner_id = :ownerId",
             nativeQuery = true)
-    int deposit(Long cardId, BigDecimal amount);
+    long countFromCounter(@Param("ownerId") String ownerId);
 
-    @Modifying
-    @Transactional
-    @Query(value = "UPDATE card SET balance = balance - :amount WHERE id = :cardId AND balance >= :amount",
+    @Query(value = "SELECT COALESCE(SUM(cnt), 0) FROM card_count WHERE owner_id = :ownerId AND status = :status",
             nativeQuery = true)
-    int withdraw(@Param("cardId") Long cardId, @Param("amount") BigDecimal amount);
+    long countFromCounter(@Param("ownerId") String ownerId, @Param("status") int status);
+
+    @Query(CARD_DTO
+            + " WHERE (c.cardNumberHash IS NULL OR c.cardNumberLast4 IS NULL) AND c.id > :afterId ORDER BY c.id")
+    List<CardDTO> findBackfillCandidates(@Param("afterId") Long afterId, Limit limit);
+
+    @Query(CARD_DTO + " WHERE c.cardNumberHash = :cardNumberHash")
+    Optional<CardDTO> findDTOByCardNumberHash(@Param("cardNumberHash") String cardNumberHash);
+
+    @Query("SELECT c.balance FROM Card c WHERE c.id = :id AND c.ownerId = :ownerId")
+    Optional<BigDecimal> findBalance(@Param("id") Long id, @Param("ownerId") String ownerId);
+
+    // Версии для ETag: по индексу, без чтения и сериализации самих данных
+
+    @Query("SELECT c.version FROM Card c WHERE c.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("SELECT c.version FROM Card c WHERE c.id = :id AND c.ownerId = :ownerId")
+    Optional<Long> findVersion(@Param("id") Long id, @Param("ownerId") String ownerId);
 
-    @Query(value = "SELECT transfer_funds(:fromId, :toId, :amount)", nativeQuery = true)
-    boolean transfer(Long fromId, Long toId, BigDecimal amount);
+    /**
+     * Сводная версия карт владельца в виде {@code count-sum(id)-sum(version)}.
+     * Любое изменение баланса или статуса увеличивает sum(version), а id растут монотонно,
+     * поэтому выпуск и удаление карт меняют count или sum(id)
+     */
+    @Query("SELECT concat(cast(count(c) as String), '-', "
+            + "cast(coalesce(sum(c.id), 0) as String), '-', "
+            + "cast(coalesce(sum(c.version), 0) as String)) "
+            + "FROM Card c WHERE c.ownerId = :ownerId")
+    String findOwnerVersion(@Param("ownerId") String ownerId);
 }
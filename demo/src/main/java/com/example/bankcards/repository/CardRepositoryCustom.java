@@ -0,0 +1,102 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardSearchFilter;
+import com.example.bankcards.entity.CardStatus;
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface CardRepositoryCustom {
+
+    /**
+     * Keyset-выборка маскированных карт: строки строго после {@code (keyValue, afterId)} в порядке сортировки.
+     * Без OFFSET и без COUNT.
+     *
+     * @param ownerId  владелец, null - все карты
+     * @param status   статус, null - любой
+     * @param keyValue значение ключа сортировки последней строки предыдущей страницы, null - первая страница
+     */
+    List<CardDTO> findMaskedAfter(
+            String ownerId,
+            CardStatus status,
+            CardSortKey sortKey,
+            boolean descending,
+            Object keyValue,
+            Long afterId,
+            int limit);
+
+    /**
+     * Поиск маскированных карт одним SQL-запросом: общее количество считается оконной
+     * функцией {@code count(*) over()} в той же выборке, отдельного COUNT нет.
+     * Сортировка допускается только по полям из {@link CardSortKey}, id добавляется последним ключом.
+     *
+     * @param ownerId владелец, null - все карты
+     */
+    Page<CardDTO> search(String ownerId, CardSearchFilter filter, Pageable pageable);
+
+    // Изменения ниже выполняются нативным SQL в обход Hibernate, записи затронутых карт в L2-кэше блокируются
+
+    // Статус, владелец и баланс проверяются в той же функции, что меняет баланс: один запрос без гонки проверки и записи
+
+    // idempotencyKey может быть null. С ключом повтор возвращает результат первой операции и не меняет карты
+
+    @Transactional
+    MoneyOperationResult deposit(Long cardId, String ownerId, BigDecimal amount, String idempotencyKey);
+
+    @Transactional
+    MoneyOperationResult withdraw(Long cardId, String ownerId, BigDecimal amount, String idempotencyKey);
+
+    /**
+     * @param ownerId владелец карты-источника, карта получателя может принадлежать кому угодно
+     */
+    @Transactional
+    MoneyOperationResult transfer(Long fromId, Long toId, String ownerId, BigDecimal amount, String idempotencyKey);
+
+    /**
+     * Зачисления на одну карту пачкой: пополнения и входящие переводы. Строки карты и отправителей
+     * блокируются один раз, баланс карты меняется одним UPDATE. Каждое зачисление проверяется
+     * и пишется в журнал отдельно, как в {@link #deposit} и {@link #transfer}
+     *
+     * @return коды результата в порядке requests
+     */
+    @Transactional
+    List<MoneyOperationResult> creditBatch(Long cardId, List<CreditRequest> requests);
+
+    @Transactional
+    int deleteIdempotencyKeysCreatedBefore(Instant before);
+
+    /**
+     * @return false, если карты нет
+     */
+    @Transactional
+    boolean updateStatus(Long cardId, CardStatus status);
+
+    @Transactional
+    void blockCards(Collection<Long> cardIds);
+
+    @Transactional
+    void expireCards();
+
+    /**
+     * Advisory-блокировка заполнения производных колонок до конца транзакции, без ожидания
+     *
+     * @return false, если заполнение уже идет на другом узле
+     */
+    @Transactional
+    boolean tryLockNumberIndexBackfill();
+
+    /**
+     * Заполняет card_number_hash и card_number_last4 одним UPDATE без увеличения version.
+     * Строки, чей хэш уже есть у другой карты, пропускаются
+     *
+     * @return id обновленных карт
+     */
+    @Transactional
+    List<Long> fillNumberIndex(List<CardNumberIndex> indexes);
+}
@@ -0,0 +1,313 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardSearchFilter;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+@RequiredArgsConstructor
+public class CardRepositoryCustomImpl implements CardRepositoryCustom {
+
+    static final String DEPOSIT_SQL = "SELECT deposit_funds(?, ?, ?)";
+    static final String WITHDRAW_SQL = "SELECT withdraw_funds(?, ?, ?)";
+    static final String TRANSFER_SQL = "SELECT transfer_funds(?, ?, ?, ?)";
+    // Перегрузки с ключом идемпотентности последним аргументом
+    static final String DEPOSIT_ONCE_SQL = "SELECT deposit_funds(?, ?, ?, ?)";
+    static final String WITHDRAW_ONCE_SQL = "SELECT withdraw_funds(?, ?, ?, ?)";
+    static final String TRANSFER_ONCE_SQL = "SELECT transfer_funds(?, ?, ?, ?, ?)";
+    static final String CREDIT_BATCH_SQL = "SELECT credit_funds_batch(?, ?, ?, ?, ?)";
+    static final String DELETE_IDEMPOTENCY_KEYS_SQL = "DELETE FROM idempotency_key WHERE created_at < ?";
+    static final String UPDATE_STATUS_SQL = "UPDATE card SET status = ?, version = version + 1 WHERE id = ?";
+    static final String BLOCK_SQL = "UPDATE card SET status = 1, version = version + 1 WHERE id = ANY(?)";
+    // FOR UPDATE: набор карт не меняется между выборкой id и UPDATE
+    static final String EXPIRE_CANDIDATES_SQL =
+            "SELECT id FROM card WHERE expiry_date < CURRENT_DATE AND status <> 2 FOR UPDATE";
+    static final String EXPIRE_SQL = "UPDATE card SET status = 2, version = version + 1 WHERE id = ANY(?)";
+    static final String BACKFILL_LOCK_SQL = "SELECT pg_try_advisory_xact_lock(hashtext('card_number_index_backfill'))";
+    // version не меняется: колонки производные, параллельные изменения карты не должны получать конфликт версий
+    static final String FILL_NUMBER_INDEX_SQL = "UPDATE card c "
+            + "SET card_number_hash = v.hash, card_number_last4 = v.last4 "
+            + "FROM unnest(?::bigint[], ?::varchar[], ?::varchar[]) AS v(id, hash, last4) "
+            + "WHERE c.id = v.id "
+            + "AND (c.card_number_hash IS NULL OR c.card_number_last4 IS NULL) "
+            + "AND NOT EXISTS (SELECT 1 FROM card d WHERE d.card_number_hash = v.hash AND d.id <> v.id) "
+            + "RETURNING c.id";
+
+    // Те же поля, что в CardRepository.MASKED_CARD_DTO, плюс общее количество строк выборки
+    private static final String SEARCH_SELECT = "SELECT c.id, concat('" + Card.MASK_PREFIX + "', c.cardNumberLast4), "
+            + "c.ownerId, c.expiryDate, c.status, c.balance, count(*) over () FROM Card c";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CardCacheInvalidator cardCacheInvalidator;
+
+    @Override
+    public List<CardDTO> findMaskedAfter(
+            String ownerId,
+            CardStatus status,
+            CardSortKey sortKey,
+            boolean descending,
+            Object keyValue,
+            Long afterId,
+            int limit) {
+        String key = "c." + sortKey.getProperty();
+        String direction = descending ? " DESC" : " ASC";
+        String comparison = descending ? " < " : " > ";
+
+        List<String> conditions = new ArrayList<>();
+        if (ownerId != null) {
+            conditions.add("c.ownerId = :ownerId");
+        }
+        if (status != null) {
+            conditions.add("c.status = :status");
+        }
+        if (afterId != null) {
+            conditions.add(sortKey == CardSortKey.ID
+                    ? "c.id" + comparison + ":afterId"
+                    : "(" + key + ", c.id)" + comparison + "(:keyValue, :afterId)");
+        }
+
+        StringBuilder jpql = new StringBuilder(CardRepository.MASKED_CARD_DTO);
+        if (!conditions.isEmpty()) {
+            jpql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        jpql.append(" ORDER BY ").append(key).append(direction);
+        if (sortKey != CardSortKey.ID) {
+            jpql.append(", c.id").append(direction);
+        }
+
+        TypedQuery<CardDTO> query = entityManager.createQuery(jpql.toString(), CardDTO.class)
+                .setMaxResults(limit);
+        if (ownerId != null) {
+            query.setParameter("ownerId", ownerId);
+        }
+        if (status != null) {
+            query.setParameter("status", status);
+        }
+        if (afterId != null) {
+            query.setParameter("afterId", afterId);
+            if (sortKey != CardSortKey.ID) {
+                query.setParameter("keyValue", keyValue);
+            }
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    public Page<CardDTO> search(String ownerId, CardSearchFilter filter, Pageable pageable) {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        List<String> conditions = new ArrayList<>();
+        if (ownerId != null) {
+            conditions.add("c.ownerId = :ownerId");
+            parameters.put("ownerId", ownerId);
+        }
+        if (filter.statuses() != null && !filter.statuses().isEmpty()) {
+            conditions.add("c.status IN :statuses");
+            parameters.put("statuses", filter.statuses());
+        }
+        if (filter.expiryFrom() != null) {
+            conditions.add("c.expiryDate >= :expiryFrom");
+            parameters.put("expiryFrom", filter.expiryFrom());
+        }
+        if (filter.expiryTo() != null) {
+            conditions.add("c.expiryDate <= :expiryTo");
+            parameters.put("expiryTo", filter.expiryTo());
+        }
+        if (filter.minBalance() != null) {
+            conditions.add("c.balance >= :minBalance");
+            parameters.put("minBalance", filter.minBalance());
+        }
+        if (filter.maxBalance() != null) {
+            conditions.add("c.balance <= :maxBalance");
+            parameters.put("maxBalance", filter.maxBalance());
+        }
+        String where = conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+
+        TypedQuery<Object[]> query = entityManager.createQuery(
+                SEARCH_SELECT + where + orderBy(pageable.getSort()), Object[].class);
+        parameters.forEach(query::setParameter);
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset())
+                    .setMaxResults(pageable.getPageSize());
+        }
+        List<Object[]> rows = query.getResultList();
+
+        List<CardDTO> content = rows.stream()
+                .map(row -> new CardDTO(
+                        (Long) row[0],
+                        (String) row[1],
+                        (String) row[2],
+                        (YearMonth) row[3],
+                        (CardStatus) row[4],
+                        (BigDecimal) row[5]))
+                .toList();
+        long total;
+        if (!rows.isEmpty()) {
+            total = ((Number) rows.get(0)[6]).longValue();
+        } else if (pageable.isUnpaged() || pageable.getOffset() == 0) {
+            total = 0;
+        } else {
+            // Страница за пределами выборки: оконной функции не досталось ни одной строки
+            TypedQuery<Long> count = entityManager.createQuery("SELECT count(c) FROM Card c" + where, Long.class);
+            parameters.forEach(count::setParameter);
+            total = count.getSingleResult();
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    private static String orderBy(Sort sort) {
+        List<String> orders = new ArrayList<>();
+        boolean byId = false;
+        for (Sort.Order order : sort) {
+            CardSortKey sortKey = CardSortKey.of(order.getProperty());
+            orders.add("c." + sortKey.getProperty() + (order.isDescending() ? " DESC" : " ASC"));
+            byId |= sortKey == CardSortKey.ID;
+        }
+        // id последним ключом: порядок страниц детерминирован при одинаковых значениях сортировки
+        if (!byId) {
+            orders.add("c.id ASC");
+        }
+        return " ORDER BY " + String.join(", ", orders);
+    }
+
+    @Override
+    public MoneyOperationResult deposit(Long cardId, String ownerId, BigDecimal amount, String idempotencyKey) {
+        cardCacheInvalidator.lock(List.of(cardId));
+        return idempotencyKey == null
+                ? call(DEPOSIT_SQL, cardId, ownerId, amount)
+                : call(DEPOSIT_ONCE_SQL, cardId, ownerId, amount, idempotencyKey);
+    }
+
+    @Override
+    public MoneyOperationResult withdraw(Long cardId, String ownerId, BigDecimal amount, String idempotencyKey) {
+        cardCacheInvalidator.lock(List.of(cardId));
+        return idempotencyKey == null
+                ? call(WITHDRAW_SQL, cardId, ownerId, amount)
+                : call(WITHDRAW_ONCE_SQL, cardId, ownerId, amount, idempotencyKey);
+    }
+
+    @Override
+    public MoneyOperationResult transfer(Long fromId, Long toId, String ownerId, BigDecimal amount, String idempotencyKey) {
+        cardCacheInvalidator.lock(List.of(fromId, toId));
+        return idempotencyKey == null
+                ? call(TRANSFER_SQL, fromId, toId, ownerId, amount)
+                : call(TRANSFER_ONCE_SQL, fromId, toId, ownerId, amount, idempotencyKey);
+    }
+
+    @Override
+    public List<MoneyOperationResult> creditBatch(Long cardId, List<CreditRequest> requests) {
+        Set<Long> lockedIds = new LinkedHashSet<>();
+        lockedIds.add(cardId);
+        requests.stream()
+                .map(CreditRequest::fromCardId)
+                .filter(Objects::nonNull)
+                .forEach(lockedIds::add);
+        cardCacheInvalidator.lock(lockedIds);
+        Object[] codes = jdbcTemplate.query(CREDIT_BATCH_SQL, ps -> {
+            Connection connection = ps.getConnection();
+            ps.setLong(1, cardId);
+            ps.setArray(2, connection.createArrayOf("varchar",
+                    requests.stream().map(CreditRequest::ownerId).toArray()));
+            ps.setArray(3, connection.createArrayOf("bigint",
+                    requests.stream().map(CreditRequest::fromCardId).toArray()));
+            ps.setArray(4, connection.createArrayOf("numeric",
+                    requests.stream().map(CreditRequest::amount).toArray()));
+            ps.setArray(5, connection.createArrayOf("varchar",
+                    requests.stream().map(CreditRequest::idempotencyKey).toArray()));
+        }, rs -> {
+            rs.next();
+            return (Object[]) rs.getArray(1).getArray();
+        });
+        List<MoneyOperationResult> results = new ArrayList<>(codes.length);
+        for (Object code : codes) {
+            results.add(MoneyOperationResult.of(((Number) code).intValue()));
+        }
+        return results;
+    }
+
+    @Override
+    public int deleteIdempotencyKeysCreatedBefore(Instant before) {
+        return jdbcTemplate.update(DELETE_IDEMPOTENCY_KEYS_SQL, Timestamp.from(before));
+    }
+
+    private MoneyOperationResult call(String sql, Object... args) {
+        Integer code = jdbcTemplate.queryForObject(sql, Integer.class, args);
+        return MoneyOperationResult.of(code);
+    }
+
+    @Override
+    public boolean updateStatus(Long cardId, CardStatus status) {
+        cardCacheInvalidator.lock(List.of(cardId));
+        return jdbcTemplate.update(UPDATE_STATUS_SQL, status.ordinal(), cardId) > 0;
+    }
+
+    @Override
+    public void blockCards(Collection<Long> cardIds) {
+        if (cardIds.isEmpty()) {
+            return;
+        }
+        cardCacheInvalidator.lock(cardIds);
+        updateByIds(BLOCK_SQL, cardIds);
+    }
+
+    @Override
+    public void expireCards() {
+        List<Long> cardIds = jdbcTemplate.queryForList(EXPIRE_CANDIDATES_SQL, Long.class);
+        if (cardIds.isEmpty()) {
+            return;
+        }
+        cardCacheInvalidator.lock(cardIds);
+        updateByIds(EXPIRE_SQL, cardIds);
+    }
+
+    @Override
+    public boolean tryLockNumberIndexBackfill() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(BACKFILL_LOCK_SQL, Boolean.class));
+    }
+
+    @Override
+    public List<Long> fillNumberIndex(List<CardNumberIndex> indexes) {
+        if (indexes.isEmpty()) {
+            return List.of();
+        }
+        List<Long> cardIds = indexes.stream().map(CardNumberIndex::cardId).toList();
+        cardCacheInvalidator.lock(cardIds);
+        return jdbcTemplate.query(FILL_NUMBER_INDEX_SQL, ps -> {
+            Connection connection = ps.getConnection();
+            ps.setArray(1, connection.createArrayOf("bigint", cardIds.toArray()));
+            ps.setArray(2, connection.createArrayOf("varchar",
+                    indexes.stream().map(CardNumberIndex::hash).toArray()));
+            ps.setArray(3, connection.createArrayOf("varchar",
+                    indexes.stream().map(CardNumberIndex::lastFour).toArray()));
+        }, (rs, rowNum) -> rs.getLong(1));
+    }
+
+    private void updateByIds(String sql, Collection<Long> cardIds) {
+        jdbcTemplate.update(sql, ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", cardIds.toArray())));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.exception.InvalidCursorException;
+import com.example.bankcards.exception.InvalidSortException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Поля карты, по которым разрешены сортировка и keyset-пагинация. Имя поля подставляется в JPQL только отсюда.
+ * Страничные списки на search (карты пользователя, поиск, карты владельца у администратора) принимают
+ * те же ключи: для каждого есть индекс, остальные поля отклоняются с 400
+ */
+@Getter
+@RequiredArgsConstructor
+public enum CardSortKey {
+    ID("id", CardDTO::id, Long::valueOf),
+    BALANCE("balance", CardDTO::balance, BigDecimal::new),
+    EXPIRY_DATE("expiryDate", CardDTO::expiryDate, YearMonth::parse),
+    STATUS("status", CardDTO::status, CardStatus::valueOf);
+
+    private final String property;
+    private final Function<CardDTO, Object> extractor;
+    private final Function<String, Object> parser;
+
+    public static CardSortKey of(String property) {
+        return Arrays.stream(values())
+                .filter(key -> key.property.equals(property))
+                .findFirst()
+                .orElseThrow(() -> new InvalidSortException("Sorting is not supported for key '" + property + "'. Supported keys: "
+                        + Arrays.stream(values()).map(CardSortKey::getProperty).collect(Collectors.joining(", "))));
+    }
+
+    public Object parse(String value) {
+        try {
+            return parser.apply(value);
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Malformed cursor");
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.CardTransactionDTO;
+import com.example.bankcards.entity.CardTransaction;
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface CardTransactionRepository extends JpaRepository<CardTransaction, Long> {
+
+    String CARD_TRANSACTION_DTO = "SELECT new com.example.bankcards.dto.CardTransactionDTO("
+            + "t.id, t.cardId, t.kind, t.amount, t.balanceAfter, t.counterpartCardId, t.createdAt) "
+            + "FROM CardTransaction t ";
+
+    // Проверка владельца в том же запросе: пустой результат - либо нет истории, либо карта чужая
+    String OWNED_CARD = "t.cardId = :cardId "
+            + "AND EXISTS (SELECT 1 FROM Card c WHERE c.id = :cardId AND c.ownerId = :ownerId) ";
+
+    String NEWEST_FIRST = "ORDER BY t.createdAt DESC, t.id DESC";
+
+    /**
+     * Первая страница истории карты, от новых операций к старым.
+     * Лимит берется из {@code pageable}, COUNT не выполняется
+     */
+    @Query(CARD_TRANSACTION_DTO + "WHERE " + OWNED_CARD + NEWEST_FIRST)
+    List<CardTransactionDTO> findHistory(
+            @Param("cardId") Long cardId,
+            @Param("ownerId") String ownerId,
+            Pageable pageable);
+
+    /**
+     * Следующая страница: операции строго старше ({@code createdAt}, {@code afterId}) последней строки предыдущей.
+     * Сравнение кортежей идет по индексу (card_id, created_at DESC, id DESC)
+     */
+    @Query(CARD_TRANSACTION_DTO + "WHERE " + OWNED_CARD
+            + "AND (t.createdAt, t.id) < (:createdAt, :afterId) " + NEWEST_FIRST)
+    List<CardTransactionDTO> findHistoryAfter(
+            @Param("cardId") Long cardId,
+            @Param("ownerId") String ownerId,
+            @Param("createdAt") Instant createdAt,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    // DDL партиций выполняется на primary, поэтому транзакция не read-only
+    @Transactional
+    @Query(value = "SELECT create_card_transaction_partitions(:monthsAhead)", nativeQuery = true)
+    int createPartitions(@Param("monthsAhead") int monthsAhead);
+
+    @Transactional
+    @Query(value = "SELECT detach_card_transaction_partitions(:retentionMonths)", nativeQuery = true)
+    int detachPartitions(@Param("retentionMonths") int retentionMonths);
+}
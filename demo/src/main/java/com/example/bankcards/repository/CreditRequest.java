@@ -0,0 +1,21 @@
+package com.example.bankcards.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Одно зачисление в пачке {@link CardRepositoryCustom#creditBatch}
+ *
+ * @param ownerId        владелец карты-отправителя, для пополнения - владелец зачисляемой карты
+ * @param fromCardId     карта-отправитель перевода, null - пополнение
+ * @param idempotencyKey может быть null
+ */
+public record CreditRequest(String ownerId, Long fromCardId, BigDecimal amount, String idempotencyKey) {
+
+    public static CreditRequest deposit(String ownerId, BigDecimal amount, String idempotencyKey) {
+        return new CreditRequest(ownerId, null, amount, idempotencyKey);
+    }
+
+    public static CreditRequest transfer(Long fromCardId, String ownerId, BigDecimal amount, String idempotencyKey) {
+        return new CreditRequest(ownerId, fromCardId, amount, idempotencyKey);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.bankcards.repository;
+
+/**
+ * Результат deposit_funds, withdraw_funds и transfer_funds.
+ * Функция возвращает порядковый номер константы, порядок менять нельзя
+ */
+public enum MoneyOperationResult {
+    SUCCESS,
+    CARD_NOT_FOUND,
+    NOT_OWNER,
+    CARD_INACTIVE,
+    INSUFFICIENT_FUNDS,
+    TARGET_NOT_FOUND,
+    TARGET_INACTIVE,
+    SAME_CARD,
+    // Ключ идемпотентности уже использован для операции с другими параметрами
+    IDEMPOTENCY_KEY_REUSED,
+    // Сумма не больше нуля (отрицательный перевод списывал бы деньги с карты получателя)
+    // или точнее 4 знаков: balance DECIMAL(19, 4) молча округлил бы ее
+    INVALID_AMOUNT;
+
+    public static MoneyOperationResult of(int code) {
+        return values()[code];
+    }
+}
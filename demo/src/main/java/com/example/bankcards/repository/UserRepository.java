@@ -10,7 +10,7 @@ import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<CardUser, String> {
+public interface UserRepository extends JpaRepository<CardUser, String>, UserRepositoryCustom {
 
     @NonNull
     Page<CardUser> findAll(@NonNull Pageable pageable);
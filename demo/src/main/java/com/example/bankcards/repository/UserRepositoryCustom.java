@@ -0,0 +1,20 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardUser;
+
+import java.util.List;
+
+public interface UserRepositoryCustom {
+
+    /**
+     * Keyset-выборка пользователей: строки строго после {@code (keyValue, afterId)} в порядке сортировки.
+     *
+     * @param keyValue значение ключа сортировки последней строки предыдущей страницы, null - первая страница
+     */
+    List<CardUser> findAfter(
+            UserSortKey sortKey,
+            boolean descending,
+            String keyValue,
+            String afterId,
+            int limit);
+}
@@ -0,0 +1,47 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardUser;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.List;
+
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<CardUser> findAfter(
+            UserSortKey sortKey,
+            boolean descending,
+            String keyValue,
+            String afterId,
+            int limit) {
+        String key = "u." + sortKey.getProperty();
+        String direction = descending ? " DESC" : " ASC";
+        String comparison = descending ? " < " : " > ";
+
+        StringBuilder jpql = new StringBuilder("SELECT u FROM CardUser u");
+        if (afterId != null) {
+            jpql.append(sortKey == UserSortKey.ID
+                    ? " WHERE u.id" + comparison + ":afterId"
+                    : " WHERE (" + key + ", u.id)" + comparison + "(:keyValue, :afterId)");
+        }
+        jpql.append(" ORDER BY ").append(key).append(direction);
+        if (sortKey != UserSortKey.ID) {
+            jpql.append(", u.id").append(direction);
+        }
+
+        TypedQuery<CardUser> query = entityManager.createQuery(jpql.toString(), CardUser.class)
+                .setMaxResults(limit);
+        if (afterId != null) {
+            query.setParameter("afterId", afterId);
+            if (sortKey != UserSortKey.ID) {
+                query.setParameter("keyValue", keyValue);
+            }
+        }
+        return query.getResultList();
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.UserDTO;
+import com.example.bankcards.exception.InvalidSortException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Поля пользователя, по которым разрешена keyset-пагинация. Имя поля подставляется в JPQL только отсюда
+ */
+@Getter
+@RequiredArgsConstructor
+public enum UserSortKey {
+    ID("id", UserDTO::id),
+    USERNAME("username", UserDTO::username);
+
+    private final String property;
+    private final Function<UserDTO, Object> extractor;
+
+    public static UserSortKey of(String property) {
+        return Arrays.stream(values())
+                .filter(key -> key.property.equals(property))
+                .findFirst()
+                .orElseThrow(() -> new InvalidSortException("Cursor pagination is not supported for sort key '" + property + "'. Supported keys: "
+                        + Arrays.stream(values()).map(UserSortKey::getProperty).collect(Collectors.joining(", "))));
+    }
+}
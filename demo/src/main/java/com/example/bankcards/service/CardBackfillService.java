@@ -0,0 +1,108 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.repository.CardNumberIndex;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.CardNumberHasher;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Заполняет производные колонки карт, созданных до их появления.
+ * Миграция сама этого сделать не может: нужны расшифровка номера и ключ HMAC.
+ * Каждая пачка - отдельная транзакция, чтобы не держать блокировки на всей таблице.
+ * Запускается на всех узлах, но пачку обрабатывает только узел, взявший advisory-блокировку:
+ * остальные видят, что заполнение уже идет, и выходят.
+ * Карты с повторяющимся номером не обновляются, а попадают в лог - уникальный индекс по хэшу не даст их заполнить.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CardBackfillService {
+
+    private final CardRepository cardRepository;
+    private final CardNumberHasher cardNumberHasher;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.backfill.batch-size}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        long afterId = 0;
+        int total = 0;
+        try {
+            while (true) {
+                long from = afterId;
+                BatchResult batch = transactionTemplate.execute(status -> fillBatch(from));
+                if (batch == null) {
+                    log.info("Card backfill is running on another node");
+                    break;
+                }
+                if (batch.lastId() == null) {
+                    break;
+                }
+                total += batch.filled();
+                afterId = batch.lastId();
+            }
+        } catch (DataIntegrityViolationException e) {
+            // Карта с тем же номером вставлена параллельно: оставшиеся строки заполнятся при следующем запуске
+            log.warn("Card backfill stopped after {} cards: {}", total, e.getMostSpecificCause().getMessage());
+            return;
+        }
+        if (total > 0) {
+            log.info("Backfilled derived columns for {} cards", total);
+        }
+    }
+
+    /**
+     * @return null, если блокировку держит другой узел
+     */
+    private BatchResult fillBatch(long afterId) {
+        if (!cardRepository.tryLockNumberIndexBackfill()) {
+            return null;
+        }
+        List<CardDTO> cards = cardRepository.findBackfillCandidates(afterId, Limit.of(batchSize));
+        if (cards.isEmpty()) {
+            return new BatchResult(null, 0);
+        }
+        Map<String, CardNumberIndex> byHash = new LinkedHashMap<>();
+        for (CardDTO card : cards) {
+            CardNumberIndex index = new CardNumberIndex(
+                    card.id(),
+                    cardNumberHasher.hash(card.cardNumber()),
+                    Card.lastFour(card.cardNumber())
+            );
+            CardNumberIndex first = byHash.putIfAbsent(index.hash(), index);
+            if (first != null) {
+                log.error("Card-id:{} is not backfilled: card number duplicates Card-id:{}", card.id(), first.cardId());
+            }
+        }
+        Set<Long> filled = new HashSet<>(cardRepository.fillNumberIndex(List.copyOf(byHash.values())));
+        byHash.values().stream()
+                .filter(index -> !filled.contains(index.cardId()))
+                .forEach(index -> log.error(
+                        "Card-id:{} is not backfilled: card number duplicates another card", index.cardId()));
+        return new BatchResult(cards.get(cards.size() - 1).id(), filled.size());
+    }
+
+    /**
+     * @param lastId id последней просмотренной карты, null - кандидатов больше нет
+     */
+    private record BatchResult(Long lastId, int filled) {
+    }
+}
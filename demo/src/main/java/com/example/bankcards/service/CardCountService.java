@@ -0,0 +1,44 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Количество карт без COUNT(*) по таблице.
+ * Для всех карт - оценка планировщика (pg_class.reltuples), кэшируется на app.card-count.estimate-ttl.
+ * Для владельца - счетчик card_count, который поддерживается триггером на card.
+ */
+@Service
+@RequiredArgsConstructor
+public class CardCountService {
+
+    private final CardRepository cardRepository;
+
+    @Value("${app.card-count.estimate-ttl}")
+    private long estimateTtl;
+
+    private volatile long estimate;
+    private volatile long estimatedAt;
+
+    public long estimateAll() {
+        long now = System.currentTimeMillis();
+        if (estimatedAt == 0 || now - estimatedAt > estimateTtl) {
+            long reltuples = cardRepository.estimateCount();
+            // -1: таблица еще ни разу не анализировалась
+            estimate = reltuples >= 0 ? reltuples : cardRepository.count();
+            estimatedAt = now;
+        }
+        return estimate;
+    }
+
+    public long countOfOwner(String ownerId) {
+        return cardRepository.countFromCounter(ownerId);
+    }
+
+    public long countOfOwner(String ownerId, CardStatus status) {
+        return cardRepository.countFromCounter(ownerId, status.ordinal());
+    }
+}
@@ -1,77 +1,213 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.IdempotencyProperties;
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardSearchFilter;
 import com.example.bankcards.dto.CardType;
+import com.example.bankcards.dto.CursorPageDTO;
+import com.example.bankcards.dto.SliceDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
 import com.example.bankcards.exception.BalanceException;
 import com.example.bankcards.exception.CardPropertyNotAccessibleException;
+import com.example.bankcards.exception.IdempotencyKeyException;
 import com.example.bankcards.exception.InvalidCardException;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardSortKey;
+import com.example.bankcards.repository.MoneyOperationResult;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.util.CardNumberGenerator;
+import com.example.bankcards.util.CardNumberHasher;
+import com.example.bankcards.util.CursorCodec;
+import com.example.bankcards.util.IdempotencyCache;
+import com.example.bankcards.util.ReadYourWritesTracker;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.function.Supplier;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class CardService {
+
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private static final int MONEY_SCALE = 4;
+
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
     private final CardNumberGenerator cardNumberGenerator;
+    private final CardNumberHasher cardNumberHasher;
+    private final CardCountService cardCountService;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final IdempotencyCache idempotencyCache;
+    private final IdempotencyProperties idempotencyProperties;
+    private final HotCardCreditService hotCardCreditService;
 
     private final Queue<Long> cardIdsToBlock = new PriorityQueue<>();
 
+    @Transactional(readOnly = true)
     public Page<CardDTO> getAll(Pageable pageable) {
-        return cardRepository.findAll(pageable)
-                .map(Card::toDTOEncrypted);
+        return cardRepository.findAllMasked(pageable);
     }
 
+    // Через L2-кэш. Не read-only: промахи кэша читаются из primary, отставание реплики в кэш не попадает
+    @Transactional
     public CardDTO getById(Long cardId) {
         return cardRepository.findById(cardId)
                 .orElseThrow(() -> new EntityNotFoundException("Could not fetch card by id. Card is not in database"))
                 .toDTO();
     }
 
+    /**
+     * ETag карты для условного GET: один индексный запрос версии вместо чтения карты
+     *
+     * @return null, если карты нет
+     */
+    @Transactional(readOnly = true)
+    public String getCardETag(Long cardId) {
+        return cardRepository.findVersionById(cardId)
+                .map(version -> cardId + "-" + version)
+                .orElse(null);
+    }
+
+    /**
+     * @return null, если карта не принадлежит пользователю или не существует
+     */
+    @Transactional(readOnly = true)
+    public String getBalanceETag(Long cardId, String ownerId) {
+        return cardRepository.findVersion(cardId, ownerId)
+                .map(version -> cardId + "-" + version)
+                .orElse(null);
+    }
+
+    /**
+     * ETag списков карт владельца: меняется при любом изменении, выпуске или удалении его карт
+     */
+    @Transactional(readOnly = true)
+    public String getCardsETag(String ownerId) {
+        return cardRepository.findOwnerVersion(ownerId);
+    }
+
+    @Transactional(readOnly = true)
     public CardDTO getByNumber(String cardNumber) {
-        return cardRepository.findByCardNumber(cardNumber)
-                .orElseThrow(() -> new EntityNotFoundException("Could not fetch card by card number. Card is not in database"))
-                .toDTO();
+        return cardRepository.findDTOByCardNumberHash(cardNumberHasher.hash(cardNumber))
+                .orElseThrow(() -> new EntityNotFoundException("Could not fetch card by card number. Card is not in database"));
+    }
+
+    /**
+     * Поиск карт по набору статусов, диапазонам срока действия и баланса одним запросом.
+     * Владелец не проверяется: ownerId берется из аутентифицированного пользователя
+     */
+    @Transactional(readOnly = true)
+    public Page<CardDTO> search(String ownerId, CardSearchFilter filter, Pageable pageable) {
+        return cardRepository.search(ownerId, filter, pageable);
     }
 
+    /**
+     * Карты аутентифицированного пользователя. Существование не проверяется: userId берется из principal
+     */
+    @Transactional(readOnly = true)
     public Page<CardDTO> getCardsOfUser(String userId, Pageable pageable) {
-        if (userRepository.findById(userId).isEmpty())
-            throw new EntityNotFoundException("Could not fetch cards of user. User is not in database");
-        return cardRepository.findByOwnerId(userId, pageable)
-                .map(Card::toDTOEncrypted);
+        return cardRepository.search(userId, CardSearchFilter.all(), pageable);
     }
 
+    @Transactional(readOnly = true)
     public Page<CardDTO> getActiveCardsOfUser(String userId, Pageable pageable) {
-        if (userRepository.findById(userId).isEmpty())
-            throw new EntityNotFoundException("Could not fetch cards of user. User is not in database");
-        return cardRepository.findByOwnerIdAndStatus(userId, CardStatus.ACTIVE,pageable)
-                .map(Card::toDTOEncrypted);
+        return cardRepository.search(userId, CardSearchFilter.withStatus(CardStatus.ACTIVE), pageable);
     }
 
+    @Transactional(readOnly = true)
     public Page<CardDTO> getBlockedCardsOfUser(String userId, Pageable pageable) {
-        if (userRepository.findById(userId).isEmpty())
-            throw new EntityNotFoundException("Could not fetch cards of user. User is not in database");
-        return cardRepository.findByOwnerIdAndStatus(userId, CardStatus.BLOCKED,pageable)
-                .map(Card::toDTOEncrypted);
+        return cardRepository.search(userId, CardSearchFilter.withStatus(CardStatus.BLOCKED), pageable);
     }
 
+    @Transactional(readOnly = true)
     public Page<CardDTO> getExpiredCardsOfUser(String userId, Pageable pageable) {
-        if (userRepository.findById(userId).isEmpty())
+        return cardRepository.search(userId, CardSearchFilter.withStatus(CardStatus.EXPIRED), pageable);
+    }
+
+    /**
+     * Карты пользователя по id из запроса администратора.
+     * Существование проверяется только для пустой страницы: непустая выборка его уже доказывает
+     */
+    @Transactional(readOnly = true)
+    public Page<CardDTO> getCardsOfOwner(String ownerId, Pageable pageable) {
+        Page<CardDTO> page = cardRepository.search(ownerId, CardSearchFilter.all(), pageable);
+        if (page.isEmpty() && !userRepository.existsById(ownerId))
             throw new EntityNotFoundException("Could not fetch cards of user. User is not in database");
-        return cardRepository.findByOwnerIdAndStatus(userId, CardStatus.EXPIRED,pageable)
-                .map(Card::toDTOEncrypted);
+        return page;
+    }
+
+    @Transactional(readOnly = true)
+    public SliceDTO<CardDTO> getAllSlice(Pageable pageable) {
+        return SliceDTO.of(
+                cardRepository.findSliceMasked(pageable),
+                cardCountService.estimateAll()
+        );
+    }
+
+    /**
+     * Карты владельца без COUNT(*): общее количество берется из счетчика card_count
+     *
+     * @param status статус, null - любой
+     */
+    @Transactional(readOnly = true)
+    public SliceDTO<CardDTO> getCardsOfUserSlice(String userId, CardStatus status, Pageable pageable) {
+        if (status == null) {
+            return SliceDTO.of(
+                    cardRepository.findSliceMaskedByOwnerId(userId, pageable),
+                    cardCountService.countOfOwner(userId)
+            );
+        }
+        return SliceDTO.of(
+                cardRepository.findSliceMaskedByOwnerIdAndStatus(userId, status, pageable),
+                cardCountService.countOfOwner(userId, status)
+        );
+    }
+
+    /**
+     * Keyset-пагинация маскированных карт: без OFFSET и без COUNT.
+     *
+     * @param ownerId владелец, null - все карты
+     * @param status  статус, null - любой
+     * @param cursor  {@code next} предыдущей страницы, null - первая страница
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<CardDTO> scrollCards(
+            String ownerId,
+            CardStatus status,
+            String sortBy,
+            String sortDirection,
+            String cursor,
+            int size) {
+        CardSortKey sortKey = CardSortKey.of(sortBy);
+        boolean descending = sortDirection.equalsIgnoreCase("desc");
+        int limit = Math.max(size, 1);
+
+        Object keyValue = null;
+        Long afterId = null;
+        if (cursor != null) {
+            String[] position = CursorCodec.decode(cursor, sortKey.getProperty(), descending);
+            keyValue = sortKey.parse(position[0]);
+            afterId = (Long) CardSortKey.ID.parse(position[1]);
+        }
+
+        List<CardDTO> rows = cardRepository.findMaskedAfter(
+                ownerId, status, sortKey, descending, keyValue, afterId, limit + 1);
+        return CursorPageDTO.of(rows, limit, last -> CursorCodec.encode(
+                sortKey.getProperty(), descending, sortKey.getExtractor().apply(last), last.id()));
     }
 
     public CardDTO create(String ownerId) {
@@ -93,13 +229,18 @@ public class CardService {
 //        return card.toDTO();
 //    }
 
+    // Одним UPDATE с увеличением версии, как blockCards: сущность не читается до записи,
+    // поэтому параллельная денежная операция не приводит к конфликту @Version
+    @Transactional
     public CardDTO setCardStatus(Long cardId, CardStatus status) {
-        Card card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new EntityNotFoundException("Could not update card status. Card is not in database"));
-        card.setStatus(status);
-        return card.toDTOEncrypted();
+        if (!cardRepository.updateStatus(cardId, status))
+            throw new EntityNotFoundException("Could not update card status. Card is not in database");
+        return cardRepository.findById(cardId)
+                .orElseThrow(() -> new EntityNotFoundException("Could not update card status. Card is not in database"))
+                .toDTOEncrypted();
     }
 
+    @Transactional
     public void addToBlockQueue(Long cardId) {
         Card card = cardRepository.findById(cardId)
                 .orElseThrow(() -> new EntityNotFoundException("Could not add card to block queue. Card does not exist"));
@@ -118,43 +259,116 @@ public class CardService {
         cardRepository.expireCards();
     }
 
+    @Transactional(readOnly = true)
     public BigDecimal getBalance(Long cardId, String ownerId) {
-        return cardRepository.findByIdAndOwnerId(cardId, ownerId)
-                .orElseThrow(() -> new CardPropertyNotAccessibleException("Could not retrieve balance. Card does not belong to user or does not exist"))
-                .getBalance();
+        return cardRepository.findBalance(cardId, ownerId)
+                .orElseThrow(() -> new CardPropertyNotAccessibleException("Could not retrieve balance. Card does not belong to user or does not exist"));
     }
 
-    public void deposit(Long cardId, BigDecimal amount) {
-        if (invalid(cardId))
-            throw new InvalidCardException("Invalid card. Could not deposit funds. Card-id:" + cardId + " is blocked or expired.");
-        int res = cardRepository.deposit(cardId, amount);
-        if (res == 0)
-            throw new CardPropertyNotAccessibleException("Could not deposit funds. Card does not exist");
+    /**
+     * Пополнение своей карты. Проверки и изменение баланса - один вызов deposit_funds,
+     * для горячей карты - пачкой вместе с другими зачислениями на нее (см. {@link HotCardCreditService})
+     *
+     * @param idempotencyKey может быть null. Повтор с тем же ключом возвращает результат первой операции
+     */
+    public void deposit(Long cardId, String ownerId, BigDecimal amount, String idempotencyKey) {
+        BigDecimal money = toMoneyScale(amount, "Could not deposit funds");
+        MoneyOperationResult result = once(ownerId, idempotencyKey, "deposit:" + cardId + ":" + money.toPlainString(),
+                () -> hotCardCreditService.isHot(cardId)
+                        ? hotCardCreditService.deposit(cardId, ownerId, money, idempotencyKey)
+                        : cardRepository.deposit(cardId, ownerId, money, idempotencyKey));
+        requireSuccess(result, "Could not deposit funds", cardId, null);
+        readYourWritesTracker.recordWrite();
     }
 
-    public void withdraw(Long cardId, BigDecimal amount) {
-        if (invalid(cardId))
-            throw new InvalidCardException("Invalid card. Card-id:" + cardId + " is blocked or expired");
-        int res = cardRepository.withdraw(cardId, amount);
-        if (res == 0)
-            throw new BalanceException("Could not withdraw funds. Balance is less than withdraw amount or card does not exist");
+    public void withdraw(Long cardId, String ownerId, BigDecimal amount, String idempotencyKey) {
+        BigDecimal money = toMoneyScale(amount, "Could not withdraw funds");
+        MoneyOperationResult result = once(ownerId, idempotencyKey, "withdraw:" + cardId + ":" + money.toPlainString(),
+                () -> cardRepository.withdraw(cardId, ownerId, money, idempotencyKey));
+        requireSuccess(result, "Could not withdraw funds", cardId, null);
+        readYourWritesTracker.recordWrite();
     }
 
-    public void transfer(Long fromId, Long toId, BigDecimal amount) {
-        if (invalid(fromId) || invalid(toId))
-            throw new InvalidCardException("Invalid card. Card-id:" + (invalid(fromId) ? fromId : toId) + " is blocked or expired");
-        boolean res = cardRepository.transfer(fromId, toId, amount);
-        if (!res)
-            throw new BalanceException("Could not transfer funds. Balance of Card-id:" + fromId + " is less than withdraw amount or one of cards does not exist");
+    /**
+     * Перевод со своей карты на любую активную карту. Перевод на горячую карту зачисляется пачкой
+     */
+    public void transfer(Long fromId, Long toId, String ownerId, BigDecimal amount, String idempotencyKey) {
+        BigDecimal money = toMoneyScale(amount, "Could not transfer funds");
+        MoneyOperationResult result = once(ownerId, idempotencyKey, "transfer:" + fromId + ":" + toId + ":" + money.toPlainString(),
+                () -> hotCardCreditService.isHot(toId)
+                        ? hotCardCreditService.transfer(fromId, toId, ownerId, money, idempotencyKey)
+                        : cardRepository.transfer(fromId, toId, ownerId, money, idempotencyKey));
+        requireSuccess(result, "Could not transfer funds", fromId, toId);
+        readYourWritesTracker.recordWrite();
     }
 
-    protected boolean invalid(Long cardId) {
-        CardStatus status = cardRepository.findById(cardId)
-                .orElseThrow(() -> new EntityNotFoundException("Invalid card. Card does not exist"))
-                .getStatus();
-        return !status.equals(CardStatus.ACTIVE);
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval}")
+    public void purgeIdempotencyKeys() {
+        int deleted = cardRepository.deleteIdempotencyKeysCreatedBefore(
+                Instant.now().minusMillis(idempotencyProperties.getTtl()));
+        if (deleted > 0) {
+            log.info("Expired idempotency keys deleted: {}", deleted);
+        }
+    }
+
+    // Локальный кэш отвечает на повтор без БД, при промахе ключ проверяет SQL-функция в той же транзакции
+    private MoneyOperationResult once(
+            String ownerId,
+            String idempotencyKey,
+            String request,
+            Supplier<MoneyOperationResult> operation) {
+        if (idempotencyKey == null) {
+            return operation.get();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)
+            throw new IdempotencyKeyException("Idempotency-Key must be from 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters long");
+
+        MoneyOperationResult cached = idempotencyCache.get(ownerId, idempotencyKey, request);
+        if (cached != null) {
+            return cached;
+        }
+        MoneyOperationResult result = operation.get();
+        // Эти отказы ключ в БД не занимают, кэш не должен отвечать по нему раньше БД
+        if (result != MoneyOperationResult.IDEMPOTENCY_KEY_REUSED && result != MoneyOperationResult.INVALID_AMOUNT) {
+            idempotencyCache.put(ownerId, idempotencyKey, request, result);
+        }
+        return result;
+    }
+
+    // Сумма приводится к точности balance DECIMAL(19, 4) один раз: ключ кэша идемпотентности и отпечаток
+    // в idempotency_key (amount::DECIMAL(19, 4)) строятся из одного значения и не расходятся на округлении
+    private static BigDecimal toMoneyScale(BigDecimal amount, String operation) {
+        if (amount.stripTrailingZeros().scale() > MONEY_SCALE)
+            throw new BalanceException(operation + ". Amount must be greater than zero and have at most 4 decimal places");
+        return amount.setScale(MONEY_SCALE);
+    }
+
+    private void requireSuccess(MoneyOperationResult result, String operation, Long cardId, Long targetId) {
+        switch (result) {
+            case SUCCESS -> {
+            }
+            case CARD_NOT_FOUND -> throw new EntityNotFoundException(
+                    operation + ". Card-id:" + cardId + " does not exist");
+            case NOT_OWNER -> throw new CardPropertyNotAccessibleException(
+                    operation + ". Card-id:" + cardId + " does not belong to user");
+            case CARD_INACTIVE -> throw new InvalidCardException(
+                    operation + ". Card-id:" + cardId + " is blocked or expired");
+            case INSUFFICIENT_FUNDS -> throw new BalanceException(
+                    operation + ". Balance of Card-id:" + cardId + " is less than withdraw amount");
+            case TARGET_NOT_FOUND -> throw new EntityNotFoundException(
+                    operation + ". Card-id:" + targetId + " does not exist");
+            case TARGET_INACTIVE -> throw new InvalidCardException(
+                    operation + ". Card-id:" + targetId + " is blocked or expired");
+            case SAME_CARD -> throw new InvalidCardException(
+                    operation + ". Source and target cards are the same");
+            case IDEMPOTENCY_KEY_REUSED -> throw new IdempotencyKeyException(
+                    operation + ". Idempotency-Key was already used with different parameters");
+            case INVALID_AMOUNT -> throw new BalanceException(
+                    operation + ". Amount must be greater than zero and have at most 4 decimal places");
+        }
     }
 
+    @Transactional
     public CardDTO delete(Long id){
         CardDTO card = cardRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Invalid card. Card does not exist"))
@@ -0,0 +1,250 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.CardStreamProperties;
+import com.example.bankcards.dto.CardBalanceEvent;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.util.PgNotificationBus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поток изменений баланса и статуса карт пользователя (SSE).
+ * Источник событий - NOTIFY card_changed из триггера на card: одно LISTEN-соединение на узел
+ * ({@link PgNotificationBus}), дальше события раздаются подписчикам в памяти.
+ * Буфер подписчика ограничен: события одной карты схлопываются до последнего состояния,
+ * а клиент, у которого копится больше {@code max-pending} карт, отключается.
+ * Отправка идет в отдельном пуле, поток слушателя уведомлений на медленных клиентах не блокируется.
+ */
+@Slf4j
+@Service
+public class CardStreamService {
+
+    static final String CHANGE_CHANNEL = "card_changed";
+    static final String CHANGE_EVENT = "card";
+    // Клиент должен перечитать балансы обычным GET: события до этого момента могли быть пропущены
+    static final String RESYNC_EVENT = "resync";
+
+    private final ObjectMapper objectMapper;
+    private final CardStreamProperties properties;
+    private final ThreadPoolExecutor executor;
+    private final Counter overflowCounter;
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    public CardStreamService(
+            PgNotificationBus notificationBus,
+            ObjectMapper objectMapper,
+            CardStreamProperties properties,
+            MeterRegistry registry) {
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        // Очередь не ограничиваем: у каждого подписчика в ней не больше одной задачи
+        this.executor = new ThreadPoolExecutor(
+                properties.getThreads(), properties.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("card-stream-"));
+        new ExecutorServiceMetrics(executor, "card-stream", Tags.empty()).bindTo(registry);
+        Gauge.builder("card.stream.subscribers", subscribers,
+                        map -> map.values().stream().mapToInt(Set::size).sum())
+                .description("Open card change streams on this node")
+                .register(registry);
+        this.overflowCounter = Counter.builder("card.stream.overflow")
+                .description("Streams closed because the client did not keep up with card changes")
+                .register(registry);
+        notificationBus.subscribe(CHANGE_CHANNEL, this::applyNotification);
+        notificationBus.onReconnect(this::resyncAll);
+    }
+
+    /**
+     * Открывает поток изменений карт владельца.
+     * Первым событием приходит resync: подписка уже активна, и перечитанные после него балансы ничего не пропустят
+     */
+    public SseEmitter subscribe(String ownerId) {
+        return register(ownerId, new SseEmitter(properties.getTimeout()));
+    }
+
+    SseEmitter register(String ownerId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(ownerId, emitter);
+        subscribers.computeIfAbsent(ownerId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        emitter.onCompletion(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        emitter.onTimeout(emitter::complete);
+        subscriber.requestResync();
+        return emitter;
+    }
+
+    void applyNotification(String payload) {
+        CardChange change;
+        try {
+            change = objectMapper.readValue(payload, CardChange.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Malformed card change notification: {}", e.getMessage());
+            return;
+        }
+        Set<Subscriber> owned = subscribers.get(change.ownerId());
+        if (owned == null) {
+            return;
+        }
+        CardBalanceEvent event = new CardBalanceEvent(
+                change.cardId(),
+                CardStatus.values()[change.status()],
+                change.balance());
+        owned.forEach(subscriber -> subscriber.offer(event));
+    }
+
+    @Scheduled(fixedDelayString = "${app.card-stream.heartbeat-interval}")
+    public void heartbeat() {
+        subscribers.values().forEach(owned -> owned.forEach(Subscriber::requestHeartbeat));
+    }
+
+    private void resyncAll() {
+        subscribers.values().forEach(owned -> owned.forEach(Subscriber::requestResync));
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.ownerId, (id, owned) -> {
+            owned.remove(subscriber);
+            return owned.isEmpty() ? null : owned;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Тело NOTIFY из notify_card_changed(), status - порядковый номер CardStatus
+    private record CardChange(Long cardId, String ownerId, int status, BigDecimal balance) {
+    }
+
+    private final class Subscriber {
+
+        private final String ownerId;
+        private final SseEmitter emitter;
+        // Последнее неотправленное состояние каждой карты
+        private final Map<Long, CardBalanceEvent> pending = new LinkedHashMap<>();
+        private boolean resync;
+        private boolean heartbeat;
+        private boolean scheduled;
+        private boolean closed;
+
+        private Subscriber(String ownerId, SseEmitter emitter) {
+            this.ownerId = ownerId;
+            this.emitter = emitter;
+        }
+
+        synchronized void offer(CardBalanceEvent event) {
+            if (closed) {
+                return;
+            }
+            if (!pending.containsKey(event.cardId()) && pending.size() >= properties.getMaxPending()) {
+                // Клиент не успевает читать. Переподключившись, он получит resync
+                overflowCounter.increment();
+                closed = true;
+                pending.clear();
+                remove(this);
+                // complete() ждет текущую отправку, поэтому не на потоке слушателя
+                executor.execute(emitter::complete);
+                return;
+            }
+            pending.put(event.cardId(), event);
+            schedule();
+        }
+
+        synchronized void requestResync() {
+            if (closed) {
+                return;
+            }
+            // Клиент перечитает все балансы, накопленные изменения уже не нужны
+            pending.clear();
+            resync = true;
+            schedule();
+        }
+
+        synchronized void requestHeartbeat() {
+            if (closed) {
+                return;
+            }
+            heartbeat = true;
+            schedule();
+        }
+
+        synchronized void close() {
+            closed = true;
+            pending.clear();
+            remove(this);
+        }
+
+        private void schedule() {
+            if (!scheduled) {
+                scheduled = true;
+                executor.execute(this::drain);
+            }
+        }
+
+        // Пока идет отправка, новые события схлопываются в pending и уходят следующей порцией
+        private void drain() {
+            while (true) {
+                List<CardBalanceEvent> events;
+                boolean sendResync;
+                boolean sendHeartbeat;
+                synchronized (this) {
+                    if (closed || (pending.isEmpty() && !resync && !heartbeat)) {
+                        scheduled = false;
+                        return;
+                    }
+                    events = List.copyOf(pending.values());
+                    pending.clear();
+                    sendResync = resync;
+                    sendHeartbeat = heartbeat;
+                    resync = false;
+                    heartbeat = false;
+                }
+                try {
+                    if (sendResync) {
+                        emitter.send(SseEmitter.event().name(RESYNC_EVENT).data(""));
+                    }
+                    for (CardBalanceEvent event : events) {
+                        emitter.send(SseEmitter.event()
+                                .name(CHANGE_EVENT)
+                                .data(event, MediaType.APPLICATION_JSON));
+                    }
+                    if (sendHeartbeat && !sendResync && events.isEmpty()) {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // Клиент отключился или поток уже завершен
+                    close();
+                    synchronized (this) {
+                        scheduled = false;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
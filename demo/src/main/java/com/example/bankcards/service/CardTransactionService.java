@@ -0,0 +1,84 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.LedgerProperties;
+import com.example.bankcards.dto.CardTransactionDTO;
+import com.example.bankcards.dto.CursorPageDTO;
+import com.example.bankcards.exception.CardPropertyNotAccessibleException;
+import com.example.bankcards.exception.InvalidCursorException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardTransactionRepository;
+import com.example.bankcards.util.CursorCodec;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * История операций по карте из журнала card_transaction и обслуживание его месячных партиций
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CardTransactionService {
+
+    static final String CURSOR_KEY = "createdAt";
+
+    private final CardTransactionRepository cardTransactionRepository;
+    private final CardRepository cardRepository;
+    private final LedgerProperties ledgerProperties;
+
+    /**
+     * Keyset-пагинация истории карты от новых операций к старым: без OFFSET и без COUNT.
+     *
+     * @param cursor {@code next} предыдущей страницы, null - первая страница
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<CardTransactionDTO> getHistory(Long cardId, String ownerId, String cursor, int size) {
+        int limit = Math.max(size, 1);
+        Pageable pageable = PageRequest.of(0, limit + 1);
+
+        List<CardTransactionDTO> rows;
+        if (cursor == null) {
+            rows = cardTransactionRepository.findHistory(cardId, ownerId, pageable);
+        } else {
+            String[] position = CursorCodec.decode(cursor, CURSOR_KEY, true);
+            try {
+                rows = cardTransactionRepository.findHistoryAfter(
+                        cardId, ownerId, Instant.parse(position[0]), Long.valueOf(position[1]), pageable);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new InvalidCursorException("Malformed cursor");
+            }
+        }
+
+        // Владелец проверяется отдельным запросом только для пустой страницы: непустая выборка его уже доказывает
+        if (rows.isEmpty() && cardRepository.findVersion(cardId, ownerId).isEmpty())
+            throw new CardPropertyNotAccessibleException("Could not retrieve transactions. Card does not belong to user or does not exist");
+        return CursorPageDTO.of(rows, limit, last -> CursorCodec.encode(
+                CURSOR_KEY, true, last.createdAt(), last.id()));
+    }
+
+    /**
+     * Партиции создаются заранее, чтобы записи не попадали в card_transaction_default.
+     * Запускается на всех узлах, функции сериализуются advisory-блокировкой
+     */
+    @Scheduled(fixedDelayString = "${app.ledger.maintenance-interval}")
+    public void maintainPartitions() {
+        int created = cardTransactionRepository.createPartitions(ledgerProperties.getMonthsAhead());
+        if (created > 0) {
+            log.info("Card transaction partitions created: {}", created);
+        }
+        if (ledgerProperties.getRetentionMonths() > 0) {
+            int detached = cardTransactionRepository.detachPartitions(ledgerProperties.getRetentionMonths());
+            if (detached > 0) {
+                log.info("Card transaction partitions detached: {}", detached);
+            }
+        }
+    }
+}
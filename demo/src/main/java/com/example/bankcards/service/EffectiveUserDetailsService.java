@@ -5,6 +5,7 @@ import com.example.bankcards.entity.Role;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.util.EffectiveUserDetails;
 import com.example.bankcards.util.IdGenerator;
+import com.example.bankcards.util.UserDetailsCache;
 import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -22,6 +23,7 @@ import java.util.Set;
 public class EffectiveUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final UserDetailsCache userDetailsCache;
     private final BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(12);
 
     @Value("${app.admin.username}")
@@ -44,6 +46,10 @@ public class EffectiveUserDetailsService implements UserDetailsService {
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        return userDetailsCache.get(username, this::loadFromDatabase);
+    }
+
+    private EffectiveUserDetails loadFromDatabase(String username) {
         CardUser cardUser = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("There is no user with username '" + username + "'"));
         return new EffectiveUserDetails(cardUser);
@@ -0,0 +1,115 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.HotCardProperties;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CreditRequest;
+import com.example.bankcards.repository.MoneyOperationResult;
+import com.example.bankcards.util.HotCardLane;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Зачисления на горячие карты (app.hot-card.card-ids) через {@link HotCardLane}: на карту один писатель,
+ * пополнения и входящие переводы с любых карт применяются пачками через credit_funds_batch.
+ * Списания с горячей карты (снятие, исходящий перевод) и операции с остальными картами идут обычным путем.
+ */
+@Service
+public class HotCardCreditService {
+
+    private final Map<Long, HotCardLane> lanes = new HashMap<>();
+    private final long resultTimeout;
+
+    public HotCardCreditService(
+            CardRepository cardRepository,
+            HotCardProperties properties,
+            MeterRegistry registry) {
+        this.resultTimeout = properties.getResultTimeout();
+        if (!properties.isEnabled()) {
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("hot-card-");
+        DistributionSummary batchSizes = DistributionSummary.builder("card.hot.batch.size")
+                .description("Credits applied to a hot card in one transaction")
+                .register(registry);
+        for (Long cardId : properties.getCardIds()) {
+            HotCardLane lane = new HotCardLane(
+                    cardId,
+                    properties.getMaxPending(),
+                    properties.getMaxBatchSize(),
+                    properties.getBatchWindow(),
+                    requests -> {
+                        batchSizes.record(requests.size());
+                        return cardRepository.creditBatch(cardId, requests);
+                    },
+                    threadFactory);
+            Gauge.builder("card.hot.pending", lane, HotCardLane::getPending)
+                    .description("Credits waiting for the hot card writer")
+                    .tag("card", cardId.toString())
+                    .register(registry);
+            lanes.put(cardId, lane);
+            lane.start();
+        }
+    }
+
+    public boolean isHot(Long cardId) {
+        return lanes.containsKey(cardId);
+    }
+
+    /**
+     * Пополнение горячей карты ее владельцем, ждет коммита пачки
+     */
+    public MoneyOperationResult deposit(Long cardId, String ownerId, BigDecimal amount, String idempotencyKey) {
+        return credit(cardId, CreditRequest.deposit(ownerId, amount, idempotencyKey));
+    }
+
+    /**
+     * Перевод на горячую карту, ждет коммита пачки
+     *
+     * @param ownerId владелец карты-источника
+     */
+    public MoneyOperationResult transfer(Long fromId, Long toId, String ownerId, BigDecimal amount, String idempotencyKey) {
+        return credit(toId, CreditRequest.transfer(fromId, ownerId, amount, idempotencyKey));
+    }
+
+    // Исключение записи пачки пробрасывается как есть, переполнение очереди и таймаут - ServiceOverloadedException
+    private MoneyOperationResult credit(Long cardId, CreditRequest request) {
+        HotCardLane lane = lanes.get(cardId);
+        if (lane == null) {
+            throw new IllegalStateException("Card-id:" + cardId + " is not a hot card");
+        }
+        CompletableFuture<MoneyOperationResult> result = lane.submit(request);
+        try {
+            return result.get(resultTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Заявка остается в очереди и может примениться позже, повтор безопасен с Idempotency-Key
+            throw new ServiceOverloadedException("Credit to Card-id:" + cardId + " is taking too long. Try again later");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Hot card credit failed", e.getCause());
+        } catch (InterruptedException e) {
+            // Из очереди заявку уже не убрать: она может примениться, повтор безопасен с Idempotency-Key
+            Thread.currentThread().interrupt();
+            throw new ServiceOverloadedException("Operation has been interrupted. Try again later");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.values().forEach(HotCardLane::close);
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.bankcards.service;
 
 import com.example.bankcards.entity.CardUser;
+import com.example.bankcards.entity.Role;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.EffectiveUserDetails;
+import com.example.bankcards.util.JwtClaimsCache;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -13,25 +16,48 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class JwtService {
 
+    private static final String ROLES_CLAIM = "roles";
+    private static final String USER_ID_CLAIM = "uid";
+
     private final UserRepository userRepository;
+    private final JwtClaimsCache claimsCache;
+    private final TokenRevocationService tokenRevocationService;
     @Value("${app.secret-key}")
     private String secretKey;
     @Value("${app.token-expiration}")
     private Integer tokenExpiration;
 
+    // Ключ и парсер не меняются за время жизни сервиса, создаем их один раз
+    private volatile SecretKey key;
+    private volatile JwtParser parser;
+
     public String generateToken(String username) {
         CardUser user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new EntityNotFoundException("Could not generate token. User is not in database"));
+        return generateToken(user);
+    }
+
+    /**
+     * Выпускает токен для уже загруженного пользователя.
+     * Кроме username в токен кладутся id и роли, чтобы фильтр мог собрать principal без обращения к БД
+     */
+    public String generateToken(CardUser user) {
         return Jwts.builder()
-                .subject(username)
-                .claims().add("roles", user.getRoles())
+                .subject(user.getUsername())
+                .claims().add(ROLES_CLAIM, user.getRoles())
+                .add(USER_ID_CLAIM, user.getId())
+                .id(UUID.randomUUID().toString())
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + tokenExpiration))
                 .and()
@@ -48,10 +74,41 @@ public class JwtService {
         }
     }
 
-    public String extractId(String token) {
-        return userRepository.findByUsername(extractSub(token))
-                .orElseThrow(() -> new EntityNotFoundException("Could not retrieve token owner's ID. Owner of the token is not in database"))
-                .getId();
+    /**
+     * Собирает principal из claims токена.
+     * Возвращает null, если токен невалиден или выпущен без id пользователя
+     */
+    public EffectiveUserDetails extractPrincipal(String token) {
+        try {
+            Claims claims = extractAllClaims(token);
+            String id = claims.get(USER_ID_CLAIM, String.class);
+            if (id == null) {
+                return null;
+            }
+            Set<Role> roles = new HashSet<>();
+            if (claims.get(ROLES_CLAIM) instanceof Collection<?> claimRoles) {
+                claimRoles.forEach(role -> roles.add(Role.valueOf(role.toString())));
+            }
+            CardUser user = new CardUser();
+            user.setId(id);
+            user.setUsername(claims.getSubject());
+            user.setRoles(roles);
+            return new EffectiveUserDetails(user);
+        } catch (Exception e) {
+            log.error("Error extracting principal from token: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Отзывает один access-токен по jti до истечения его срока.
+     * Токены без jti отозвать точечно нельзя, для них остается отзыв всех сессий пользователя
+     */
+    public void revokeToken(String token) {
+        Claims claims = extractAllClaims(token);
+        if (claims.getId() != null) {
+            tokenRevocationService.revokeToken(claims.getId(), claims.getExpiration().toInstant());
+        }
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
@@ -60,7 +117,8 @@ public class JwtService {
             Claims claims = extractAllClaims(token);
 
             return (username.equals(userDetails.getUsername()) &&
-                    !isTokenExpired(claims));
+                    !isTokenExpired(claims) &&
+                    !tokenRevocationService.isRevoked(claims));
         } catch (SecurityException e) {
             log.error("Invalid JWT signature: {}", e.getMessage());
         } catch (MalformedJwtException e) {
@@ -78,11 +136,9 @@ public class JwtService {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getKey())
-                .build()
+        return claimsCache.get(token, () -> getParser()
                 .parseSignedClaims(token)
-                .getPayload();
+                .getPayload());
     }
 
     private Boolean isTokenExpired(Claims claims) {
@@ -90,7 +146,23 @@ public class JwtService {
     }
 
     private SecretKey getKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+        SecretKey k = key;
+        if (k == null) {
+            byte[] keyBytes = Decoders.BASE64.decode(secretKey);
+            k = Keys.hmacShaKeyFor(keyBytes);
+            key = k;
+        }
+        return k;
+    }
+
+    private JwtParser getParser() {
+        JwtParser p = parser;
+        if (p == null) {
+            p = Jwts.parser()
+                    .verifyWith(getKey())
+                    .build();
+            parser = p;
+        }
+        return p;
     }
 }
@@ -0,0 +1,102 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TokenPairDTO;
+import com.example.bankcards.entity.CardUser;
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.exception.UnauthorizedException;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import com.example.bankcards.repository.UserRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Refresh-токены: непрозрачная случайная строка, в БД хранится только ее SHA-256.
+ * Обмен на новый access-токен не требует BCrypt, а сам refresh-токен при этом ротируется.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+    private final JwtService jwtService;
+    private final SecureRandom random = new SecureRandom();
+
+    @Value("${app.refresh-token.expiration}")
+    private Long refreshTokenExpiration;
+
+    public String issue(String userId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokenRepository.save(new RefreshToken(
+                hash(token),
+                userId,
+                Instant.now().plusMillis(refreshTokenExpiration)
+        ));
+        return token;
+    }
+
+    /**
+     * Обменивает refresh-токен на новую пару токенов. Старый refresh-токен удаляется
+     */
+    @Transactional
+    public TokenPairDTO refresh(String refreshToken) {
+        if (refreshToken == null || refreshToken.isBlank()) {
+            throw new UnauthorizedException("Refresh token is not present");
+        }
+        RefreshToken stored = refreshTokenRepository.findByTokenHash(hash(refreshToken))
+                .orElseThrow(() -> new UnauthorizedException("Refresh token is invalid or has already been used"));
+        // Истекший токен проверяется до удаления: исключение откатило бы удаление, его уберет deleteExpired
+        if (stored.getExpiresAt().isBefore(Instant.now())) {
+            throw new UnauthorizedException("Refresh token is expired");
+        }
+        refreshTokenRepository.delete(stored);
+        CardUser user = userRepository.findById(stored.getUserId())
+                .orElseThrow(() -> new UnauthorizedException("Owner of the refresh token is not in database"));
+        return new TokenPairDTO(jwtService.generateToken(user), issue(user.getId()));
+    }
+
+    public void revoke(String refreshToken) {
+        if (refreshToken != null) {
+            refreshTokenRepository.deleteByTokenHash(hash(refreshToken));
+        }
+    }
+
+    public void revokeAll(String userId) {
+        refreshTokenRepository.deleteByUserId(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.refresh-token.cleanup-interval}")
+    public void deleteExpired() {
+        int deleted = refreshTokenRepository.deleteExpired(Instant.now());
+        if (deleted > 0) {
+            log.info("Expired refresh tokens deleted: {}", deleted);
+        }
+    }
+
+    static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.RevocationKind;
+import com.example.bankcards.entity.RevokedToken;
+import com.example.bankcards.repository.RevokedTokenRepository;
+import com.example.bankcards.util.BloomFilter;
+import com.example.bankcards.util.PgNotificationBus;
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отзыв access-токенов без запроса в БД на каждый запрос.
+ * Отозванные jti и пользователи хранятся в таблице revoked_token и в памяти:
+ * фильтр Блума отсекает подавляющее большинство проверок, точные множества подтверждают попадание.
+ * Узлы узнают о новых отзывах через NOTIFY, периодический опрос подстраховывает потерянные уведомления.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TokenRevocationService {
+
+    static final String REVOKE_CHANNEL = "token_revoked";
+    private static final String TOKEN_PREFIX = "jti:";
+    private static final String USER_PREFIX = "uid:";
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    // Запас на рассинхронизацию часов узлов и задержку коммита при опросе
+    private static final Duration POLL_OVERLAP = Duration.ofMinutes(1);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final PgNotificationBus notificationBus;
+
+    @Value("${app.token-expiration}")
+    private Integer tokenExpiration;
+    @Value("${app.revocation.expected-size}")
+    private int expectedSize;
+
+    private final Set<String> revokedTokenIds = ConcurrentHashMap.newKeySet();
+    private final Map<String, Instant> revokedUsers = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter;
+    private volatile Instant lastPoll = Instant.EPOCH;
+
+    @PostConstruct
+    public void init() {
+        notificationBus.subscribe(REVOKE_CHANNEL, this::applyNotification);
+        notificationBus.onReconnect(this::reload);
+        reload();
+    }
+
+    public boolean isRevoked(Claims claims) {
+        BloomFilter current = filter;
+        String tokenId = claims.getId();
+        if (tokenId != null
+                && current.mightContain(TOKEN_PREFIX + tokenId)
+                && revokedTokenIds.contains(tokenId)) {
+            return true;
+        }
+        String userId = claims.get("uid", String.class);
+        if (userId != null && current.mightContain(USER_PREFIX + userId)) {
+            Instant revokedAt = revokedUsers.get(userId);
+            Date issuedAt = claims.getIssuedAt();
+            // iat хранится с точностью до секунды, поэтому токен, выпущенный в ту же секунду, тоже считается отозванным
+            return revokedAt != null
+                    && (issuedAt == null || !issuedAt.toInstant().isAfter(revokedAt));
+        }
+        return false;
+    }
+
+    public void revokeToken(String tokenId, Instant expiresAt) {
+        revoke(RevocationKind.TOKEN, tokenId, expiresAt);
+    }
+
+    /**
+     * Отзывает все токены пользователя, выпущенные до текущего момента
+     */
+    public void revokeUser(String userId) {
+        revoke(RevocationKind.USER, userId, Instant.now().plusMillis(tokenExpiration));
+    }
+
+    /**
+     * Подстраховка на случай потерянных уведомлений: дочитывает недавние отзывы из БД
+     */
+    @Scheduled(fixedDelayString = "${app.revocation.poll-interval}")
+    public void poll() {
+        Instant since = lastPoll.minus(POLL_OVERLAP);
+        lastPoll = Instant.now();
+        revokedTokenRepository.findByRevokedAtAfter(since).forEach(this::apply);
+    }
+
+    /**
+     * Удаляет истекшие записи и перестраивает фильтр, из которого нельзя удалять элементы
+     */
+    @Scheduled(fixedDelayString = "${app.revocation.cleanup-interval}")
+    public void cleanup() {
+        int deleted = revokedTokenRepository.deleteExpired(Instant.now());
+        if (deleted > 0) {
+            log.info("Expired token revocations deleted: {}", deleted);
+        }
+        reload();
+    }
+
+    synchronized void reload() {
+        lastPoll = Instant.now();
+        List<RevokedToken> active = revokedTokenRepository.findByExpiresAtAfter(Instant.now());
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedSize, active.size() * 2), FALSE_POSITIVE_RATE);
+        Set<String> tokenIds = ConcurrentHashMap.newKeySet();
+        Map<String, Instant> users = new ConcurrentHashMap<>();
+        for (RevokedToken revoked : active) {
+            switch (revoked.getKind()) {
+                case TOKEN -> {
+                    tokenIds.add(revoked.getValue());
+                    rebuilt.put(TOKEN_PREFIX + revoked.getValue());
+                }
+                case USER -> {
+                    users.merge(revoked.getValue(), revoked.getRevokedAt(), (a, b) -> a.isAfter(b) ? a : b);
+                    rebuilt.put(USER_PREFIX + revoked.getValue());
+                }
+            }
+        }
+        // Сначала точные множества, потом фильтр: проверка с новым фильтром не должна промахнуться мимо старых данных
+        revokedTokenIds.addAll(tokenIds);
+        revokedTokenIds.retainAll(tokenIds);
+        revokedUsers.putAll(users);
+        revokedUsers.keySet().retainAll(users.keySet());
+        filter = rebuilt;
+    }
+
+    private void revoke(RevocationKind kind, String value, Instant expiresAt) {
+        RevokedToken revoked = revokedTokenRepository.save(
+                new RevokedToken(kind, value, Instant.now(), expiresAt)
+        );
+        apply(revoked);
+        notificationBus.publish(REVOKE_CHANNEL,
+                kind.name() + ":" + revoked.getRevokedAt().toEpochMilli() + ":" + value);
+    }
+
+    private void applyNotification(String payload) {
+        String[] parts = payload.split(":", 3);
+        apply(new RevokedToken(
+                RevocationKind.valueOf(parts[0]),
+                parts[2],
+                Instant.ofEpochMilli(Long.parseLong(parts[1])),
+                Instant.MAX
+        ));
+    }
+
+    private synchronized void apply(RevokedToken revoked) {
+        switch (revoked.getKind()) {
+            case TOKEN -> {
+                revokedTokenIds.add(revoked.getValue());
+                filter.put(TOKEN_PREFIX + revoked.getValue());
+            }
+            case USER -> {
+                revokedUsers.merge(revoked.getValue(), revoked.getRevokedAt(), (a, b) -> a.isAfter(b) ? a : b);
+                filter.put(USER_PREFIX + revoked.getValue());
+            }
+        }
+    }
+}
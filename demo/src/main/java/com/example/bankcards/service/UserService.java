@@ -1,10 +1,17 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.CursorPageDTO;
+import com.example.bankcards.dto.TokenPairDTO;
 import com.example.bankcards.dto.UserDTO;
 import com.example.bankcards.entity.CardUser;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.repository.UserSortKey;
+import com.example.bankcards.util.CursorCodec;
+import com.example.bankcards.util.EffectiveUserDetails;
 import com.example.bankcards.util.IdGenerator;
+import com.example.bankcards.util.LoginExecutor;
+import com.example.bankcards.util.UserDetailsCache;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -15,7 +22,9 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Set;
 
 @Service
@@ -25,12 +34,46 @@ public class UserService {
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authManager;
     private final JwtService jwtService;
+    private final UserDetailsCache userDetailsCache;
+    private final LoginExecutor loginExecutor;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationService tokenRevocationService;
 
+    @Transactional(readOnly = true)
     public Page<UserDTO> getAll(Pageable pageable) {
         return userRepository.findAll(pageable)
                 .map(CardUser::toDTO);
     }
 
+    /**
+     * Keyset-пагинация пользователей: без OFFSET и без COUNT.
+     *
+     * @param cursor {@code next} предыдущей страницы, null - первая страница
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<UserDTO> scroll(String sortBy, String sortDirection, String cursor, int size) {
+        UserSortKey sortKey = UserSortKey.of(sortBy);
+        boolean descending = sortDirection.equalsIgnoreCase("desc");
+        int limit = Math.max(size, 1);
+
+        String keyValue = null;
+        String afterId = null;
+        if (cursor != null) {
+            String[] position = CursorCodec.decode(cursor, sortKey.getProperty(), descending);
+            keyValue = position[0];
+            afterId = position[1];
+        }
+
+        List<UserDTO> rows = userRepository.findAfter(sortKey, descending, keyValue, afterId, limit + 1)
+                .stream()
+                .map(CardUser::toDTO)
+                .toList();
+        return CursorPageDTO.of(rows, limit, last -> CursorCodec.encode(
+                sortKey.getProperty(), descending, sortKey.getExtractor().apply(last), last.id()));
+    }
+
+    // Через L2-кэш. Не read-only: промахи кэша читаются из primary
+    @Transactional
     public UserDTO getByID(String id) {
         return userRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Could not fetch user from db: User does not exist"))
@@ -38,20 +81,46 @@ public class UserService {
     }
 
     public String getToken(String username, String password) {
-        Authentication auth =
+        Authentication auth = authenticate(username, password);
+        // Пользователь уже загружен при аутентификации, повторно в БД не ходим
+        if (auth.getPrincipal() instanceof EffectiveUserDetails userDetails) {
+            return jwtService.generateToken(userDetails.getCardUser());
+        }
+        return jwtService.generateToken(username);
+    }
+
+    /**
+     * Вход по паролю с выдачей access- и refresh-токена.
+     * Дальше клиент продлевает сессию через refresh-токен, без повторной проверки BCrypt
+     */
+    public TokenPairDTO getTokenPair(String username, String password) {
+        Authentication auth = authenticate(username, password);
+        CardUser user = auth.getPrincipal() instanceof EffectiveUserDetails userDetails
+                ? userDetails.getCardUser()
+                : userRepository.findByUsername(username)
+                .orElseThrow(() -> new EntityNotFoundException("Could not generate token. User is not in database"));
+        return new TokenPairDTO(
+                jwtService.generateToken(user),
+                refreshTokenService.issue(user.getId())
+        );
+    }
+
+    private Authentication authenticate(String username, String password) {
+        // BCrypt выполняется в отдельном пуле, а не на потоке Tomcat
+        Authentication auth = loginExecutor.execute(() ->
                 authManager.authenticate(
                         new UsernamePasswordAuthenticationToken(
                                 username,
                                 password
                         )
-                );
-        if (auth.isAuthenticated()) {
-            return jwtService.generateToken(username);
-        } else {
+                ));
+        if (!auth.isAuthenticated()) {
             throw new BadCredentialsException("User is not authenticated");
         }
+        return auth;
     }
 
+    @Transactional
     public UserDTO createUser(String username, String password) {
         CardUser cardUser = new CardUser();
         cardUser.setId(IdGenerator.generateId());
@@ -59,14 +128,38 @@ public class UserService {
         cardUser.setRoles(Set.of(Role.USER));
         cardUser.setPassword(passwordEncoder.encode(password));
         userRepository.save(cardUser);
+        userDetailsCache.evict(username);
         return cardUser.toDTO();
     }
 
+    /**
+     * Сессии отзываются до удаления и в той же транзакции: удаленный пользователь не сохранит действующих токенов,
+     * а кэш на узлах сбрасывается только после коммита
+     */
+    @Transactional
     public UserDTO deleteUser(String id) {
         UserDTO userDTO = userRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("No entity with id '" + id + "'. Entity is not deleted"))
                 .toDTO();
+        revokeSessions(id);
         userRepository.deleteById(id);
+        userDetailsCache.evict(userDTO.username());
         return userDTO;
     }
+
+    /**
+     * Выход из текущей сессии: отзывает предъявленный access-токен и, если передан, парный refresh-токен
+     */
+    public void logout(String accessToken, String refreshToken) {
+        jwtService.revokeToken(accessToken);
+        refreshTokenService.revoke(refreshToken);
+    }
+
+    /**
+     * Немедленно отзывает все выданные пользователю access- и refresh-токены
+     */
+    public void revokeSessions(String id) {
+        tokenRevocationService.revokeUser(id);
+        refreshTokenService.revokeAll(id);
+    }
 }
@@ -0,0 +1,97 @@
+package com.example.bankcards.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Адаптивный лимит одновременных запросов (градиентный алгоритм).
+ * Сравнивает долгосрочную среднюю задержку с текущей: если задержка растет, значит запросы
+ * уже стоят в очереди (например, за соединением из пула), и лимит уменьшается.
+ * Пока задержка стабильна, лимит растет на величину sqrt(limit).
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SHORT_WINDOW = 10;
+    private static final double LONG_WINDOW = 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double tolerance;
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private volatile double limit;
+    private double shortRtt;
+    private double longRtt;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double smoothing, double tolerance) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * @return true, если запрос можно выполнять; в этом случае после него обязателен
+     * {@link #onSuccess(long, int)} или {@link #onDropped()}
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Освобождает место без изменения лимита (например, запрос ушел в async и его время не показательно)
+     */
+    public void release() {
+        inflight.decrementAndGet();
+    }
+
+    /**
+     * @param rttNanos        время выполнения запроса
+     * @param inflightAtStart сколько запросов выполнялось в момент его начала
+     */
+    public synchronized void onSuccess(long rttNanos, int inflightAtStart) {
+        inflight.decrementAndGet();
+        shortRtt = shortRtt == 0 ? rttNanos : shortRtt + (rttNanos - shortRtt) / SHORT_WINDOW;
+        longRtt = longRtt == 0 ? rttNanos : longRtt + (rttNanos - longRtt) / LONG_WINDOW;
+
+        // Задержка упала намного ниже долгого среднего (например, ушла временная деградация) -
+        // ускоренно опускаем базу, иначе завышенная база держит градиент на 1 и лимит растет без оглядки на задержку
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        // Нагрузка далеко от лимита - задержка ничего не говорит о том, сколько мы выдержим
+        if (inflightAtStart < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        newLimit = limit * (1 - smoothing) + newLimit * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    /**
+     * Запрос завершился ошибкой сервера или таймаутом - мультипликативно уменьшаем лимит
+     */
+    public synchronized void onDropped() {
+        inflight.decrementAndGet();
+        limit = Math.max(minLimit, limit * 0.9);
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.entity.Card;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Заполняет производные от номера карты колонки перед записью в БД
+ */
+@Component
+public class CardIndexListener {
+
+    @Autowired
+    private CardNumberHasher cardNumberHasher;
+
+    @PrePersist
+    @PreUpdate
+    public void fillIndex(Card card) {
+        if (card.getCardNumber() != null) {
+            card.setCardNumberHash(cardNumberHasher.hash(card.getCardNumber()));
+            card.setCardNumberLast4(Card.lastFour(card.getCardNumber()));
+        }
+    }
+}
@@ -3,23 +3,25 @@ package com.example.bankcards.util;
 import jakarta.persistence.AttributeConverter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.security.crypto.encrypt.TextEncryptor;
 import org.springframework.stereotype.Component;
 
+/**
+ * Номер карты хранится в bytea: версия ключа, IV и шифротекст в сыром виде, без hex/base64
+ */
 @Component
-public class CardNumberEncryptor implements AttributeConverter<String, String> {
+public class CardNumberEncryptor implements AttributeConverter<String, byte[]> {
 
     @Autowired
     @Qualifier("textEncryptor")
-    private TextEncryptor encryptor;
+    private VersionedTextEncryptor encryptor;
 
     @Override
-    public String convertToDatabaseColumn(String s) {
-        return encryptor.encrypt(s);
+    public byte[] convertToDatabaseColumn(String s) {
+        return encryptor.encryptToBytes(s);
     }
 
     @Override
-    public String convertToEntityAttribute(String s) {
-        return encryptor.decrypt(s);
+    public String convertToEntityAttribute(byte[] s) {
+        return encryptor.decryptBytes(s);
     }
 }
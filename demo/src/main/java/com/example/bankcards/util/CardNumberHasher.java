@@ -0,0 +1,47 @@
+package com.example.bankcards.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+/**
+ * Blind index номера карты: HMAC-SHA256 с отдельным ключом.
+ * Шифротекст номера каждый раз разный (случайный IV), а хэш детерминирован,
+ * поэтому по нему работают поиск по индексу и уникальность без расшифровки.
+ */
+@Component
+public class CardNumberHasher {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    // Mac не потокобезопасен, а создавать его на каждый вызов дорого
+    private final ThreadLocal<Mac> mac = ThreadLocal.withInitial(this::createMac);
+
+    public CardNumberHasher(@Value("${app.blind-index.key}") String key) {
+        this.key = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    /**
+     * Пробелы и дефисы не учитываются: "4111 1111 1111 1111" и "4111111111111111" дают один хэш
+     */
+    public String hash(String cardNumber) {
+        String normalized = cardNumber.replaceAll("[\\s-]", "");
+        return HexFormat.of().formatHex(mac.get().doFinal(normalized.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private Mac createMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGORITHM);
+            instance.init(key);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not initialize card number HMAC", e);
+        }
+    }
+}
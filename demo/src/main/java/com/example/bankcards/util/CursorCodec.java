@@ -0,0 +1,45 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Курсор keyset-пагинации: поле сортировки, направление, значение ключа и id последней строки в base64url.
+ * Поле и направление хранятся в курсоре, чтобы его нельзя было применить к другой сортировке.
+ */
+public final class CursorCodec {
+
+    private static final String SEPARATOR = "\u001f";
+    private static final String ASC = "asc";
+    private static final String DESC = "desc";
+
+    private CursorCodec() {
+    }
+
+    public static String encode(String sortBy, boolean descending, Object key, Object id) {
+        String raw = String.join(SEPARATOR, sortBy, descending ? DESC : ASC, String.valueOf(key), String.valueOf(id));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return значение ключа сортировки и id последней строки предыдущей страницы
+     */
+    public static String[] decode(String cursor, String sortBy, boolean descending) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Malformed cursor");
+        }
+        String[] parts = raw.split(SEPARATOR, -1);
+        if (parts.length != 4) {
+            throw new InvalidCursorException("Malformed cursor");
+        }
+        if (!parts[0].equals(sortBy) || !parts[1].equals(descending ? DESC : ASC)) {
+            throw new InvalidCursorException("Cursor does not match requested sorting");
+        }
+        return new String[]{parts[2], parts[3]};
+    }
+}
@@ -1,24 +1,36 @@
 package com.example.bankcards.util;
 
 import com.example.bankcards.entity.CardUser;
-import lombok.RequiredArgsConstructor;
+import lombok.Getter;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
+import java.util.Set;
 import java.util.stream.Collectors;
 
-@RequiredArgsConstructor
 public class EffectiveUserDetails implements UserDetails {
 
+    @Getter
     private final CardUser cardUser;
+    // Authorities считаются один раз, объект живет в кэше и переиспользуется между запросами
+    private final Set<SimpleGrantedAuthority> authorities;
+
+    public EffectiveUserDetails(CardUser cardUser) {
+        this.cardUser = cardUser;
+        this.authorities = cardUser.getRoles().stream()
+                .map(role -> new SimpleGrantedAuthority(role.getDescription()))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public String getId() {
+        return cardUser.getId();
+    }
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return cardUser.getRoles().stream()
-                .map(role -> new SimpleGrantedAuthority(role.getDescription()))
-                .collect(Collectors.toSet());
+        return authorities;
     }
 
     @Override
@@ -0,0 +1,157 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.ServiceOverloadedException;
+import com.example.bankcards.repository.CreditRequest;
+import com.example.bankcards.repository.MoneyOperationResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Очередь зачислений (пополнений и входящих переводов) одной горячей карты с единственным писателем.
+ * Писатель забирает все накопившиеся зачисления (не больше max-batch-size) и применяет их одним вызовом writer:
+ * вместо очереди транзакций на блокировке строки карты - одна транзакция на пачку.
+ * Под нагрузкой пачка собирается сама, пока идет запись предыдущей, batch-window лишь добирает ее дольше.
+ * Результат зачисления приходит в {@link CompletableFuture} после коммита его пачки.
+ */
+@Slf4j
+public class HotCardLane {
+
+    private final Long cardId;
+    private final BlockingQueue<Pending> queue;
+    private final int maxBatchSize;
+    private final long batchWindowNanos;
+    private final Function<List<CreditRequest>, List<MoneyOperationResult>> writer;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * @param writer применяет пачку в одной транзакции и возвращает коды в порядке пачки
+     */
+    public HotCardLane(
+            Long cardId,
+            int maxPending,
+            int maxBatchSize,
+            long batchWindowMillis,
+            Function<List<CreditRequest>, List<MoneyOperationResult>> writer,
+            ThreadFactory threadFactory) {
+        this.cardId = cardId;
+        this.queue = new ArrayBlockingQueue<>(maxPending);
+        this.maxBatchSize = maxBatchSize;
+        this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(batchWindowMillis);
+        this.writer = writer;
+        this.thread = threadFactory.newThread(this::run);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Ставит зачисление в очередь карты. Переполнение очереди - {@link ServiceOverloadedException}
+     */
+    public CompletableFuture<MoneyOperationResult> submit(CreditRequest request) {
+        Pending pending = new Pending(request, new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            throw overloaded();
+        }
+        // Очередь уже закрыта и разобрана: заявку никто не заберет
+        if (!running && queue.remove(pending)) {
+            throw overloaded();
+        }
+        return pending.result;
+    }
+
+    public int getPending() {
+        return queue.size();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Останавливает писателя. Зачисления, не попавшие в пачку, завершаются отказом и не применяются
+     */
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failQueued();
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (running) {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                long deadline = System.nanoTime() + batchWindowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long left = deadline - System.nanoTime();
+                    Pending next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // close(): собранная, но не записанная пачка не применялась
+            batch.forEach(pending -> pending.result.completeExceptionally(overloaded()));
+        } catch (Throwable e) {
+            // Писатель погиб (Error и т.п.): карта перестает принимать зачисления, никто не ждет вечно
+            log.error("Writer of hot Card-id:{} has stopped", cardId, e);
+            running = false;
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+            failQueued();
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        List<MoneyOperationResult> results;
+        try {
+            results = writer.apply(batch.stream().map(Pending::request).toList());
+        } catch (RuntimeException e) {
+            // Транзакция пачки откатилась целиком, ни одно зачисление не применено
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+            return;
+        }
+        if (results == null || results.size() != batch.size()) {
+            IllegalStateException e = new IllegalStateException("Hot card batch of " + batch.size()
+                    + " credits returned " + (results == null ? 0 : results.size()) + " results");
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result.complete(results.get(i));
+        }
+    }
+
+    private void failQueued() {
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.forEach(pending -> pending.result.completeExceptionally(overloaded()));
+    }
+
+    private ServiceOverloadedException overloaded() {
+        return new ServiceOverloadedException("Too many credits to Card-id:" + cardId + " are in progress. Try again later");
+    }
+
+    private record Pending(CreditRequest request, CompletableFuture<MoneyOperationResult> result) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.config.IdempotencyProperties;
+import com.example.bankcards.repository.MoneyOperationResult;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Недавние ключи идемпотентности с результатом операции: повтор, пришедший на тот же узел, отвечает без запроса в БД.
+ * Источник истины - таблица idempotency_key, промах кэша (другой узел, вытеснение) разбирает SQL-функция.
+ * Кладутся только результаты, уже зафиксированные в БД.
+ */
+@Component
+public class IdempotencyCache implements MeterBinder {
+
+    private static final String SEPARATOR = "\u001f";
+
+    private final Cache<String, Entry> cache;
+
+    public IdempotencyCache(IdempotencyProperties properties) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheMaxSize())
+                .expireAfterWrite(Duration.ofMillis(Math.min(properties.getCacheTtl(), properties.getTtl())))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @param request параметры операции, с которыми пришел ключ
+     * @return null, если ключа нет в кэше
+     */
+    public MoneyOperationResult get(String ownerId, String key, String request) {
+        Entry entry = cache.getIfPresent(ownerId + SEPARATOR + key);
+        if (entry == null) {
+            return null;
+        }
+        return entry.request().equals(request) ? entry.result() : MoneyOperationResult.IDEMPOTENCY_KEY_REUSED;
+    }
+
+    public void put(String ownerId, String key, String request, MoneyOperationResult result) {
+        cache.put(ownerId + SEPARATOR + key, new Entry(request, result));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "idempotency-keys");
+    }
+
+    private record Entry(String request, MoneyOperationResult result) {
+    }
+}
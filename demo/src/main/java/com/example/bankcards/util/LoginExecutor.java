@@ -0,0 +1,100 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.LoginExecutionException;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Отдельный пул для проверки паролей (BCrypt).
+ * Размер пула по числу ядер и ограниченная очередь: при всплеске логинов лишние запросы
+ * сразу получают отказ, а потоки Tomcat остаются свободными для остального API.
+ */
+@Component
+public class LoginExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final Timer waitTimer;
+    private final Timer hashTimer;
+    private final Counter rejectedCounter;
+
+    public LoginExecutor(
+            MeterRegistry registry,
+            @Value("${app.login.threads}") int threads,
+            @Value("${app.login.queue-capacity}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("login-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        // Метрики пула: размер очереди, активные потоки, выполненные задачи
+        new ExecutorServiceMetrics(executor, "login", Tags.empty()).bindTo(registry);
+        this.waitTimer = Timer.builder("login.wait")
+                .description("Time a login spends in the queue before password verification starts")
+                .register(registry);
+        this.hashTimer = Timer.builder("login.hash")
+                .description("Time spent verifying the password")
+                .register(registry);
+        this.rejectedCounter = Counter.builder("login.rejected")
+                .description("Logins rejected because the verification queue was full")
+                .register(registry);
+    }
+
+    /**
+     * Выполняет задачу в пуле и ждет результат.
+     * Unchecked-исключения и ошибки задачи пробрасываются как есть, переполнение очереди - {@link ServiceOverloadedException}.
+     * Прочие причины - {@link LoginExecutionException} (500), а не IllegalStateException, которое отвечает 400
+     */
+    public <T> T execute(Supplier<T> task) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                waitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return hashTimer.record(task);
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new ServiceOverloadedException("Too many login attempts are in progress. Try again later");
+        }
+
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new LoginExecutionException("Login task failed", cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceOverloadedException("Login has been interrupted. Try again later");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.config.ReplicaProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Окно read-your-writes: после записи (пополнение, списание, перевод) чтения того же пользователя
+ * некоторое время направляются в primary, чтобы не увидеть отставшую реплику.
+ * Состояние локальное для узла: запрос на другой узел может прочитать реплику.
+ */
+@Component
+public class ReadYourWritesTracker {
+
+    // null - окно отключено
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWritesTracker(ReplicaProperties properties) {
+        this.recentWriters = properties.isEnabled() && properties.getReadYourWritesWindow() > 0
+                ? Caffeine.newBuilder()
+                .maximumSize(properties.getMaxTrackedPrincipals())
+                .expireAfterWrite(Duration.ofMillis(properties.getReadYourWritesWindow()))
+                .build()
+                : null;
+    }
+
+    /**
+     * Открывает окно для текущего аутентифицированного пользователя
+     */
+    public void recordWrite() {
+        String principal = currentPrincipal();
+        if (recentWriters != null && principal != null) {
+            recentWriters.put(principal, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * true, если текущий пользователь недавно писал и его чтения должны идти в primary
+     */
+    public boolean isPinned() {
+        String principal = currentPrincipal();
+        return recentWriters != null && principal != null && recentWriters.getIfPresent(principal) != null;
+    }
+
+    private static String currentPrincipal() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null && auth.isAuthenticated() ? auth.getName() : null;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.bankcards.util;
+
+/**
+ * Token bucket с ленивым пополнением: токены досчитываются при обращении, фоновых задач нет.
+ * Каждый бакет синхронизируется отдельно, поэтому разные ключи не конкурируют за одну блокировку.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double capacity, double refillPerSecond) {
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Забирает один токен.
+     *
+     * @return 0, если токен получен, иначе сколько наносекунд ждать до появления следующего
+     */
+    public synchronized long tryConsume() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / refillPerNano);
+    }
+}
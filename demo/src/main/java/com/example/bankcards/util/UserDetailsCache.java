@@ -0,0 +1,73 @@
+package com.example.bankcards.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Локальный кэш {@link EffectiveUserDetails} по username.
+ * Инвалидация рассылается на все узлы через {@link PgNotificationBus},
+ * а TTL ограничивает время жизни записи, если уведомление потерялось.
+ */
+@Component
+public class UserDetailsCache implements MeterBinder {
+
+    static final String EVICT_CHANNEL = "user_cache_evict";
+
+    private final Cache<String, EffectiveUserDetails> cache;
+    private final PgNotificationBus notificationBus;
+
+    public UserDetailsCache(
+            PgNotificationBus notificationBus,
+            @Value("${app.user-cache.max-size}") long maxSize,
+            @Value("${app.user-cache.ttl}") long ttl) {
+        this.notificationBus = notificationBus;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttl))
+                .recordStats()
+                .build();
+        notificationBus.subscribe(EVICT_CHANNEL, cache::invalidate);
+        notificationBus.onReconnect(cache::invalidateAll);
+    }
+
+    /**
+     * Исключение из {@code loader} (например, пользователь не найден) не кэшируется
+     */
+    public EffectiveUserDetails get(String username, Function<String, EffectiveUserDetails> loader) {
+        return cache.get(username, loader);
+    }
+
+    /**
+     * Удаляет пользователя из кэша на этом узле и рассылает инвалидацию остальным.
+     * Внутри транзакции NOTIFY доставляется при коммите, а локальная запись удаляется после него:
+     * иначе параллельный вход успел бы закэшировать еще не измененного пользователя
+     */
+    public void evict(String username) {
+        notificationBus.publish(EVICT_CHANNEL, username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(username);
+                }
+            });
+        } else {
+            cache.invalidate(username);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "user-details");
+    }
+}
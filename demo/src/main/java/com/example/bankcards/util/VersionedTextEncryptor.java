@@ -0,0 +1,122 @@
+package com.example.bankcards.util;
+
+import org.springframework.security.crypto.encrypt.TextEncryptor;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * AES-GCM шифрование с версией ключа в шифротексте: {@code v<версия>:<base64(iv || ciphertext || tag)>}.
+ * Cipher создается один раз на поток и только переинициализируется на каждый вызов.
+ * Значения без префикса версии - старый формат {@code Encryptors.text} (AES-CBC, hex),
+ * они расшифровываются через {@code legacy}.
+ * <p>
+ * Бинарный формат (для bytea): {@code [версия ключа, 1 байт][iv || ciphertext || tag]},
+ * версия {@link #LEGACY_VERSION} - {@code [iv || ciphertext]} старого формата.
+ */
+public class VersionedTextEncryptor implements TextEncryptor {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    public static final int LEGACY_VERSION = 0;
+
+    private final Map<Integer, SecretKey> keys;
+    private final int activeVersion;
+    private final String activePrefix;
+    private final TextEncryptor legacy;
+
+    private final ThreadLocal<Cipher> cipher = ThreadLocal.withInitial(VersionedTextEncryptor::createCipher);
+    private final ThreadLocal<SecureRandom> random = ThreadLocal.withInitial(SecureRandom::new);
+
+    public VersionedTextEncryptor(Map<Integer, SecretKey> keys, int activeVersion, TextEncryptor legacy) {
+        if (activeVersion <= LEGACY_VERSION || activeVersion > 255) {
+            throw new IllegalArgumentException("Key version must be in range 1..255");
+        }
+        if (!keys.containsKey(activeVersion)) {
+            throw new IllegalArgumentException("No key configured for active version " + activeVersion);
+        }
+        this.keys = Map.copyOf(keys);
+        this.activeVersion = activeVersion;
+        this.activePrefix = "v" + activeVersion + ":";
+        this.legacy = legacy;
+    }
+
+    @Override
+    public String encrypt(String text) {
+        return activePrefix + Base64.getEncoder().encodeToString(seal(text, 0));
+    }
+
+    @Override
+    public String decrypt(String encryptedText) {
+        int separator = encryptedText.indexOf(':');
+        // Hex старого формата не содержит ни 'v', ни ':'
+        if (!encryptedText.startsWith("v") || separator < 0) {
+            return legacy.decrypt(encryptedText);
+        }
+        int version = Integer.parseInt(encryptedText.substring(1, separator));
+        byte[] in = Base64.getDecoder().decode(encryptedText.substring(separator + 1));
+        return open(version, in, 0);
+    }
+
+    public byte[] encryptToBytes(String text) {
+        byte[] out = seal(text, 1);
+        out[0] = (byte) activeVersion;
+        return out;
+    }
+
+    public String decryptBytes(byte[] encrypted) {
+        int version = Byte.toUnsignedInt(encrypted[0]);
+        if (version == LEGACY_VERSION) {
+            return legacy.decrypt(HexFormat.of().formatHex(encrypted, 1, encrypted.length));
+        }
+        return open(version, encrypted, 1);
+    }
+
+    // Результат: offset свободных байт, затем iv || ciphertext || tag
+    private byte[] seal(String text, int offset) {
+        byte[] iv = new byte[IV_LENGTH];
+        random.get().nextBytes(iv);
+        try {
+            Cipher c = cipher.get();
+            c.init(Cipher.ENCRYPT_MODE, keys.get(activeVersion), new GCMParameterSpec(TAG_BITS, iv));
+            byte[] plain = text.getBytes(StandardCharsets.UTF_8);
+            byte[] out = new byte[offset + IV_LENGTH + c.getOutputSize(plain.length)];
+            System.arraycopy(iv, 0, out, offset, IV_LENGTH);
+            c.doFinal(plain, 0, plain.length, out, offset + IV_LENGTH);
+            return out;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to encrypt", e);
+        }
+    }
+
+    private String open(int version, byte[] in, int offset) {
+        SecretKey key = keys.get(version);
+        if (key == null) {
+            throw new IllegalStateException("No key configured for version " + version);
+        }
+        try {
+            Cipher c = cipher.get();
+            c.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, in, offset, IV_LENGTH));
+            int start = offset + IV_LENGTH;
+            return new String(c.doFinal(in, start, in.length - start), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to decrypt", e);
+        }
+    }
+
+    private static Cipher createCipher() {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM is not available", e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+-- Колонку из WHEN триггера нельзя менять, пока триггер существует
+DROP TRIGGER card_count_update ON card;
+
+-- Hibernate пишет статус как ordinal, а дату как LocalDate, поэтому в VARCHAR лежат '0' и '2030-10-31'.
+-- Статус уже приводился к SMALLINT при заполнении card_count (changeset 10), других значений там быть не может
+ALTER TABLE card
+    ALTER COLUMN status TYPE SMALLINT USING status::SMALLINT,
+    ALTER COLUMN expiry_date TYPE DATE USING (
+        CASE
+            WHEN length(expiry_date) = 7
+                THEN (to_date(expiry_date, 'YYYY-MM') + INTERVAL '1 month' - INTERVAL '1 day')::DATE
+            ELSE expiry_date::DATE
+        END
+    );
+
+CREATE TRIGGER card_count_update
+    AFTER UPDATE OF status, card_holder ON card
+    FOR EACH ROW
+    WHEN (OLD.status IS DISTINCT FROM NEW.status OR OLD.card_holder IS DISTINCT FROM NEW.card_holder)
+    EXECUTE FUNCTION card_count_maintain();
@@ -0,0 +1,20 @@
+-- Уведомление об изменении баланса или статуса карты для SSE-подписчиков.
+-- Срабатывает и для нативных deposit/withdraw/block/expire, и для transfer_funds.
+-- NOTIFY доставляется только после коммита, откаченные изменения клиенты не увидят
+CREATE OR REPLACE FUNCTION notify_card_changed() RETURNS TRIGGER AS '
+BEGIN
+    PERFORM pg_notify(''card_changed'', json_build_object(
+        ''cardId'', NEW.id,
+        ''ownerId'', NEW.card_holder,
+        ''status'', NEW.status,
+        ''balance'', NEW.balance
+    )::text);
+    RETURN NULL;
+END;
+' LANGUAGE plpgsql;
+
+CREATE TRIGGER card_changed_notify
+    AFTER UPDATE OF balance, status ON card
+    FOR EACH ROW
+    WHEN (OLD.balance IS DISTINCT FROM NEW.balance OR OLD.status IS DISTINCT FROM NEW.status)
+    EXECUTE FUNCTION notify_card_changed();
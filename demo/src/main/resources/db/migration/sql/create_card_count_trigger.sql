@@ -0,0 +1,34 @@
+CREATE OR REPLACE FUNCTION card_count_maintain() RETURNS TRIGGER AS '
+BEGIN
+    IF TG_OP IN (''UPDATE'', ''DELETE'') THEN
+        UPDATE card_count
+        SET cnt = cnt - 1
+        WHERE owner_id = OLD.card_holder
+        AND status = OLD.status::SMALLINT;
+    END IF;
+
+    IF TG_OP IN (''INSERT'', ''UPDATE'') THEN
+        INSERT INTO card_count (owner_id, status, cnt)
+        VALUES (NEW.card_holder, NEW.status::SMALLINT, 1)
+        ON CONFLICT (owner_id, status) DO UPDATE SET cnt = card_count.cnt + 1;
+    END IF;
+
+    RETURN NULL;
+END;
+' LANGUAGE plpgsql;
+
+CREATE TRIGGER card_count_insert_delete
+    AFTER INSERT OR DELETE ON card
+    FOR EACH ROW EXECUTE FUNCTION card_count_maintain();
+
+-- Обновления баланса и полные UPDATE от Hibernate без смены статуса/владельца счетчик не трогают
+CREATE TRIGGER card_count_update
+    AFTER UPDATE OF status, card_holder ON card
+    FOR EACH ROW
+    WHEN (OLD.status IS DISTINCT FROM NEW.status OR OLD.card_holder IS DISTINCT FROM NEW.card_holder)
+    EXECUTE FUNCTION card_count_maintain();
+
+INSERT INTO card_count (owner_id, status, cnt)
+SELECT card_holder, status::SMALLINT, count(*)
+FROM card
+GROUP BY card_holder, status::SMALLINT;
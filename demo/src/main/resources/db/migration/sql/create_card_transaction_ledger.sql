@@ -0,0 +1,247 @@
+-- Журнал операций по картам, только добавление. Партиции по месяцам: вставки и чтение свежей истории
+-- идут в маленькие горячие партиции, старые месяцы отсоединяются без DELETE и VACUUM.
+-- kind (TransactionKind): 0 - пополнение, 1 - снятие, 2 - перевод с карты, 3 - перевод на карту
+CREATE TABLE card_transaction (
+    id BIGSERIAL,
+    card_id BIGINT NOT NULL,
+    kind SMALLINT NOT NULL,
+    amount DECIMAL(19, 4) NOT NULL,
+    balance_after DECIMAL(19, 4) NOT NULL,
+    counterpart_card_id BIGINT,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- История карты: keyset по (created_at, id) от новых записей к старым
+CREATE INDEX idx_card_transaction_card_created ON card_transaction (card_id, created_at DESC, id DESC);
+
+-- Страховка, если партиция месяца не была создана заранее: операция не должна падать из-за журнала
+CREATE TABLE card_transaction_default PARTITION OF card_transaction DEFAULT;
+
+-- Создает партиции текущего и следующих months_ahead месяцев, возвращает число созданных.
+-- Партиция месяца, строки которого уже попали в default, иначе не создается (constraint default-партиции
+-- был бы нарушен), поэтому она собирается отдельной таблицей, строки переносятся в нее и она присоединяется
+CREATE OR REPLACE FUNCTION create_card_transaction_partitions(months_ahead INT) RETURNS INT AS '
+DECLARE
+    month_start DATE;
+    month_end DATE;
+    partition_name TEXT;
+    created INT := 0;
+BEGIN
+    -- Задачу запускают все узлы
+    PERFORM pg_advisory_xact_lock(hashtext(''card_transaction_partitions''));
+    FOR i IN 0..months_ahead LOOP
+        month_start := (date_trunc(''month'', now()) + make_interval(months => i))::DATE;
+        month_end := (month_start + INTERVAL ''1 month'')::DATE;
+        partition_name := ''card_transaction_p'' || to_char(month_start, ''YYYYMM'');
+        IF to_regclass(partition_name) IS NULL THEN
+            -- Новые строки месяца не должны попасть в default между переносом и присоединением
+            LOCK TABLE card_transaction_default IN SHARE ROW EXCLUSIVE MODE;
+            EXECUTE format(
+                ''CREATE TABLE %I (LIKE card_transaction INCLUDING DEFAULTS INCLUDING CONSTRAINTS)'',
+                partition_name);
+            EXECUTE format(
+                ''WITH moved AS (
+                    DELETE FROM card_transaction_default
+                    WHERE created_at >= %L AND created_at < %L
+                    RETURNING *
+                )
+                INSERT INTO %I SELECT * FROM moved'',
+                month_start, month_end, partition_name);
+            EXECUTE format(
+                ''ALTER TABLE card_transaction ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)'',
+                partition_name, month_start, month_end);
+            created := created + 1;
+        END IF;
+    END LOOP;
+    RETURN created;
+END;
+' LANGUAGE plpgsql;
+
+-- Отсоединяет партиции старше retention_months месяцев. Таблицы остаются для архивации или удаления вручную
+CREATE OR REPLACE FUNCTION detach_card_transaction_partitions(retention_months INT) RETURNS INT AS '
+DECLARE
+    boundary TEXT := ''card_transaction_p''
+        || to_char(date_trunc(''month'', now()) - make_interval(months => retention_months), ''YYYYMM'');
+    part RECORD;
+    detached INT := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext(''card_transaction_partitions''));
+    FOR part IN
+        SELECT c.relname
+        FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = ''card_transaction''::regclass
+        AND c.relname ~ ''^card_transaction_p[0-9]{6}$''
+        AND c.relname < boundary
+    LOOP
+        EXECUTE format(''ALTER TABLE card_transaction DETACH PARTITION %I'', part.relname);
+        detached := detached + 1;
+    END LOOP;
+    RETURN detached;
+END;
+' LANGUAGE plpgsql;
+
+SELECT create_card_transaction_partitions(1);
+
+-- Те же функции, что в create_checked_money_functions.sql, плюс запись в журнал в той же транзакции
+-- amount в журнале всегда положительна и хранится без округления, направление задает kind:
+-- неположительная сумма и сумма точнее 4 знаков отклоняются первой проверкой
+CREATE OR REPLACE FUNCTION deposit_funds(
+    target_card_id BIGINT,
+    caller_id VARCHAR,
+    deposit_amount DECIMAL
+) RETURNS SMALLINT AS '
+DECLARE
+    holder VARCHAR;
+    card_status SMALLINT;
+    new_balance DECIMAL;
+BEGIN
+    IF deposit_amount <= 0 OR deposit_amount <> round(deposit_amount, 4) THEN
+        RETURN 9;
+    END IF;
+
+    SELECT card_holder, status INTO holder, card_status
+    FROM card
+    WHERE id = target_card_id
+    FOR UPDATE;
+
+    IF NOT FOUND THEN
+        RETURN 1;
+    END IF;
+    IF holder <> caller_id THEN
+        RETURN 2;
+    END IF;
+    IF card_status <> 0 THEN
+        RETURN 3;
+    END IF;
+
+    UPDATE card
+    SET balance = balance + deposit_amount,
+        version = version + 1
+    WHERE id = target_card_id
+    RETURNING balance INTO new_balance;
+
+    INSERT INTO card_transaction (card_id, kind, amount, balance_after)
+    VALUES (target_card_id, 0, deposit_amount, new_balance);
+    RETURN 0;
+END;
+' LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION withdraw_funds(
+    source_card_id BIGINT,
+    caller_id VARCHAR,
+    withdraw_amount DECIMAL
+) RETURNS SMALLINT AS '
+DECLARE
+    holder VARCHAR;
+    card_status SMALLINT;
+    card_balance DECIMAL;
+BEGIN
+    IF withdraw_amount <= 0 OR withdraw_amount <> round(withdraw_amount, 4) THEN
+        RETURN 9;
+    END IF;
+
+    SELECT card_holder, status, balance INTO holder, card_status, card_balance
+    FROM card
+    WHERE id = source_card_id
+    FOR UPDATE;
+
+    IF NOT FOUND THEN
+        RETURN 1;
+    END IF;
+    IF holder <> caller_id THEN
+        RETURN 2;
+    END IF;
+    IF card_status <> 0 THEN
+        RETURN 3;
+    END IF;
+    IF card_balance < withdraw_amount THEN
+        RETURN 4;
+    END IF;
+
+    UPDATE card
+    SET balance = balance - withdraw_amount,
+        version = version + 1
+    WHERE id = source_card_id
+    RETURNING balance INTO card_balance;
+
+    INSERT INTO card_transaction (card_id, kind, amount, balance_after)
+    VALUES (source_card_id, 1, withdraw_amount, card_balance);
+    RETURN 0;
+END;
+' LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION transfer_funds(
+    from_card_id BIGINT,
+    to_card_id BIGINT,
+    caller_id VARCHAR,
+    transfer_amount DECIMAL
+) RETURNS SMALLINT AS '
+DECLARE
+    holder VARCHAR;
+    card_status SMALLINT;
+    card_balance DECIMAL;
+    target_status SMALLINT;
+    target_balance DECIMAL;
+BEGIN
+    IF transfer_amount <= 0 OR transfer_amount <> round(transfer_amount, 4) THEN
+        RETURN 9;
+    END IF;
+    IF from_card_id = to_card_id THEN
+        RETURN 7;
+    END IF;
+
+    -- Обе строки блокируются в порядке id: встречные переводы не дают взаимной блокировки
+    PERFORM 1
+    FROM card
+    WHERE id IN (from_card_id, to_card_id)
+    ORDER BY id
+    FOR UPDATE;
+
+    SELECT card_holder, status, balance INTO holder, card_status, card_balance
+    FROM card
+    WHERE id = from_card_id;
+
+    IF NOT FOUND THEN
+        RETURN 1;
+    END IF;
+    IF holder <> caller_id THEN
+        RETURN 2;
+    END IF;
+    IF card_status <> 0 THEN
+        RETURN 3;
+    END IF;
+    IF card_balance < transfer_amount THEN
+        RETURN 4;
+    END IF;
+
+    SELECT status INTO target_status
+    FROM card
+    WHERE id = to_card_id;
+
+    IF NOT FOUND THEN
+        RETURN 5;
+    END IF;
+    IF target_status <> 0 THEN
+        RETURN 6;
+    END IF;
+
+    UPDATE card
+    SET balance = balance - transfer_amount,
+        version = version + 1
+    WHERE id = from_card_id
+    RETURNING balance INTO card_balance;
+    UPDATE card
+    SET balance = balance + transfer_amount,
+        version = version + 1
+    WHERE id = to_card_id
+    RETURNING balance INTO target_balance;
+
+    -- По записи на каждую карту: история карты читается одним диапазоном индекса
+    INSERT INTO card_transaction (card_id, kind, amount, balance_after, counterpart_card_id)
+    VALUES (from_card_id, 2, transfer_amount, card_balance, to_card_id),
+           (to_card_id, 3, transfer_amount, target_balance, from_card_id);
+    RETURN 0;
+END;
+' LANGUAGE plpgsql;
@@ -0,0 +1,152 @@
+-- Движение денег за один запрос: проверки статуса, владельца и баланса выполняются внутри функции
+-- под блокировкой строк, между проверкой и изменением баланса карта измениться не может.
+-- Код результата (MoneyOperationResult):
+--   0 - успех, 1 - карта не найдена, 2 - карта не принадлежит пользователю,
+--   3 - карта заблокирована или просрочена, 4 - недостаточно средств,
+--   5 - карта получателя не найдена, 6 - карта получателя заблокирована или просрочена,
+--   7 - карты отправителя и получателя совпадают,
+--   9 - сумма не больше нуля или точнее 4 знаков, как balance DECIMAL(19, 4) (проверяется первой)
+CREATE OR REPLACE FUNCTION deposit_funds(
+    target_card_id BIGINT,
+    caller_id VARCHAR,
+    deposit_amount DECIMAL
+) RETURNS SMALLINT AS '
+DECLARE
+    holder VARCHAR;
+    card_status SMALLINT;
+BEGIN
+    IF deposit_amount <= 0 OR deposit_amount <> round(deposit_amount, 4) THEN
+        RETURN 9;
+    END IF;
+
+    SELECT card_holder, status INTO holder, card_status
+    FROM card
+    WHERE id = target_card_id
+    FOR UPDATE;
+
+    IF NOT FOUND THEN
+        RETURN 1;
+    END IF;
+    IF holder <> caller_id THEN
+        RETURN 2;
+    END IF;
+    IF card_status <> 0 THEN
+        RETURN 3;
+    END IF;
+
+    UPDATE card
+    SET balance = balance + deposit_amount,
+        version = version + 1
+    WHERE id = target_card_id;
+    RETURN 0;
+END;
+' LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION withdraw_funds(
+    source_card_id BIGINT,
+    caller_id VARCHAR,
+    withdraw_amount DECIMAL
+) RETURNS SMALLINT AS '
+DECLARE
+    holder VARCHAR;
+    card_status SMALLINT;
+    card_balance DECIMAL;
+BEGIN
+    IF withdraw_amount <= 0 OR withdraw_amount <> round(withdraw_amount, 4) THEN
+        RETURN 9;
+    END IF;
+
+    SELECT card_holder, status, balance INTO holder, card_status, card_balance
+    FROM card
+    WHERE id = source_card_id
+    FOR UPDATE;
+
+    IF NOT FOUND THEN
+        RETURN 1;
+    END IF;
+    IF holder <> caller_id THEN
+        RETURN 2;
+    END IF;
+    IF card_status <> 0 THEN
+        RETURN 3;
+    END IF;
+    IF card_balance < withdraw_amount THEN
+        RETURN 4;
+    END IF;
+
+    UPDATE card
+    SET balance = balance - withdraw_amount,
+        version = version + 1
+    WHERE id = source_card_id;
+    RETURN 0;
+END;
+' LANGUAGE plpgsql;
+
+-- Заменяет transfer_funds(BIGINT, BIGINT, DECIMAL): та не проверяла владельца и статус
+DROP FUNCTION IF EXISTS transfer_funds(BIGINT, BIGINT, DECIMAL);
+
+CREATE OR REPLACE FUNCTION transfer_funds(
+    from_card_id BIGINT,
+    to_card_id BIGINT,
+    caller_id VARCHAR,
+    transfer_amount DECIMAL
+) RETURNS SMALLINT AS '
+DECLARE
+    holder VARCHAR;
+    card_status SMALLINT;
+    card_balance DECIMAL;
+    target_status SMALLINT;
+BEGIN
+    IF transfer_amount <= 0 OR transfer_amount <> round(transfer_amount, 4) THEN
+        RETURN 9;
+    END IF;
+    IF from_card_id = to_card_id THEN
+        RETURN 7;
+    END IF;
+
+    -- Обе строки блокируются в порядке id: встречные переводы не дают взаимной блокировки
+    PERFORM 1
+    FROM card
+    WHERE id IN (from_card_id, to_card_id)
+    ORDER BY id
+    FOR UPDATE;
+
+    SELECT card_holder, status, balance INTO holder, card_status, card_balance
+    FROM card
+    WHERE id = from_card_id;
+
+    IF NOT FOUND THEN
+        RETURN 1;
+    END IF;
+    IF holder <> caller_id THEN
+        RETURN 2;
+    END IF;
+    IF card_status <> 0 THEN
+        RETURN 3;
+    END IF;
+    IF card_balance < transfer_amount THEN
+        RETURN 4;
+    END IF;
+
+    SELECT status INTO target_status
+    FROM card
+    WHERE id = to_card_id;
+
+    IF NOT FOUND THEN
+        RETURN 5;
+    END IF;
+    IF target_status <> 0 THEN
+        RETURN 6;
+    END IF;
+
+    UPDATE card
+    SET balance = balance - transfer_amount,
+        version = version + 1
+    WHERE id = from_card_id;
+    UPDATE card
+    SET balance = balance + transfer_amount,
+        version = version + 1
+    WHERE id = to_card_id;
+    RETURN 0;
+END;
+' LANGUAGE plpgsql;
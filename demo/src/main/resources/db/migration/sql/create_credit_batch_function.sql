@@ -0,0 +1,149 @@
+-- Пачка зачислений на одну карту (горячие карты, HotCardCreditService): пополнения владельцем
+-- и входящие переводы с любых карт. Баланс горячей карты меняется одним UPDATE на пачку,
+-- журнал получает по записи на каждое зачисление (и списание с карты-отправителя).
+-- source_card_ids[i] - карта-отправитель перевода, NULL - пополнение. operation_keys[i] может быть NULL.
+-- Проверки, коды и отпечатки ключей идемпотентности - те же, что у deposit_funds и transfer_funds,
+-- код результата возвращается для каждого элемента в порядке массивов
+CREATE OR REPLACE FUNCTION credit_funds_batch(
+    target_card_id BIGINT,
+    caller_ids VARCHAR[],
+    source_card_ids BIGINT[],
+    credit_amounts DECIMAL[],
+    operation_keys VARCHAR[]
+) RETURNS SMALLINT[] AS '
+DECLARE
+    target_found BOOLEAN;
+    target_holder VARCHAR;
+    target_status SMALLINT;
+    target_balance DECIMAL;
+    source_id BIGINT;
+    source_holder VARCHAR;
+    source_status SMALLINT;
+    source_balance DECIMAL;
+    credited BOOLEAN := FALSE;
+    code SMALLINT;
+    codes SMALLINT[] := ''{}'';
+    claimed SMALLINT[] := ''{}'';
+    n INT := coalesce(array_length(caller_ids, 1), 0);
+    idx INT;
+BEGIN
+    -- Ключи захватываются до блокировки карт, как в перегрузках с ключом (create_idempotency_keys.sql):
+    -- везде сначала ключ, потом карта, поэтому тот же ключ в пачке и в обычной операции не дает взаимной
+    -- блокировки. Между собой ключи захватываются в порядке (владелец, ключ) - так же не сцепятся две пачки.
+    -- Повтор ключа дальше в этой же пачке видит незакрытую запись (-1) и берет результат при обработке
+    FOR idx IN
+        SELECT k
+        FROM generate_series(1, n) AS k
+        WHERE operation_keys[k] IS NOT NULL
+        AND credit_amounts[k] > 0
+        AND credit_amounts[k] = round(credit_amounts[k], 4)
+        ORDER BY caller_ids[k], operation_keys[k], k
+    LOOP
+        claimed[idx] := claim_idempotency_key(caller_ids[idx], operation_keys[idx],
+            CASE
+                WHEN source_card_ids[idx] IS NULL
+                    THEN ''deposit:'' || target_card_id
+                ELSE ''transfer:'' || source_card_ids[idx] || '':'' || target_card_id
+            END || '':'' || credit_amounts[idx]::DECIMAL(19, 4));
+    END LOOP;
+
+    -- Все строки пачки блокируются одним запросом в порядке id, как в transfer_funds:
+    -- пачка и обычные переводы между теми же картами не дают взаимной блокировки
+    PERFORM 1
+    FROM card
+    WHERE id = ANY(source_card_ids || target_card_id)
+    ORDER BY id
+    FOR UPDATE;
+
+    SELECT card_holder, status, balance INTO target_holder, target_status, target_balance
+    FROM card
+    WHERE id = target_card_id;
+    target_found := FOUND;
+
+    FOR i IN 1..n LOOP
+        source_id := source_card_ids[i];
+
+        IF credit_amounts[i] <= 0 OR credit_amounts[i] <> round(credit_amounts[i], 4) THEN
+            code := 9;
+        ELSIF claimed[i] = -1 THEN
+            -- Тот же ключ раньше в этой пачке: к этому элементу он уже закрыт
+            SELECT result INTO code
+            FROM idempotency_key
+            WHERE owner_id = caller_ids[i]
+            AND request_key = operation_keys[i];
+        ELSE
+            code := claimed[i];
+        END IF;
+
+        IF code IS NULL THEN
+            IF source_id IS NULL THEN
+                IF NOT target_found THEN
+                    code := 1;
+                ELSIF target_holder <> caller_ids[i] THEN
+                    code := 2;
+                ELSIF target_status <> 0 THEN
+                    code := 3;
+                ELSE
+                    code := 0;
+                END IF;
+            ELSIF source_id = target_card_id THEN
+                code := 7;
+            ELSE
+                SELECT card_holder, status, balance INTO source_holder, source_status, source_balance
+                FROM card
+                WHERE id = source_id;
+
+                IF NOT FOUND THEN
+                    code := 1;
+                ELSIF source_holder <> caller_ids[i] THEN
+                    code := 2;
+                ELSIF source_status <> 0 THEN
+                    code := 3;
+                ELSIF source_balance < credit_amounts[i] THEN
+                    code := 4;
+                ELSIF NOT target_found THEN
+                    code := 5;
+                ELSIF target_status <> 0 THEN
+                    code := 6;
+                ELSE
+                    code := 0;
+                    -- Отправитель списывается сразу: та же карта может встретиться в пачке еще раз
+                    UPDATE card
+                    SET balance = balance - credit_amounts[i],
+                        version = version + 1
+                    WHERE id = source_id
+                    RETURNING balance INTO source_balance;
+                END IF;
+            END IF;
+
+            IF code = 0 THEN
+                target_balance := target_balance + credit_amounts[i];
+                credited := TRUE;
+                IF source_id IS NULL THEN
+                    INSERT INTO card_transaction (card_id, kind, amount, balance_after)
+                    VALUES (target_card_id, 0, credit_amounts[i], target_balance);
+                ELSE
+                    INSERT INTO card_transaction (card_id, kind, amount, balance_after, counterpart_card_id)
+                    VALUES (source_id, 2, credit_amounts[i], source_balance, target_card_id),
+                           (target_card_id, 3, credit_amounts[i], target_balance, source_id);
+                END IF;
+            END IF;
+
+            -- Ключ закрывается сразу: повтор того же ключа дальше в этой же пачке прочитает готовый результат
+            IF operation_keys[i] IS NOT NULL THEN
+                PERFORM complete_idempotency_key(caller_ids[i], operation_keys[i], code);
+            END IF;
+        END IF;
+
+        codes := codes || code;
+    END LOOP;
+
+    IF credited THEN
+        UPDATE card
+        SET balance = target_balance,
+            version = version + 1
+        WHERE id = target_card_id;
+    END IF;
+    RETURN codes;
+END;
+' LANGUAGE plpgsql;
@@ -0,0 +1,137 @@
+-- Ключи идемпотентности денежных операций. Ключ уникален в пределах пользователя.
+-- request - параметры исходного запроса: повтор с тем же ключом, но другими параметрами отклоняется
+CREATE TABLE idempotency_key (
+    owner_id VARCHAR(255) NOT NULL,
+    request_key VARCHAR(255) NOT NULL,
+    request TEXT NOT NULL,
+    result SMALLINT NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    PRIMARY KEY (owner_id, request_key)
+);
+
+-- Очистка просроченных ключей
+CREATE INDEX idx_idempotency_key_created_at ON idempotency_key (created_at);
+
+-- Занимает ключ в текущей транзакции. NULL - ключ новый, операцию нужно выполнить.
+-- Иначе - сохраненный результат первой операции или 8, если ключ уже использован с другими параметрами.
+-- Параллельный запрос с тем же ключом ждет на уникальном индексе, пока первая транзакция не завершится
+CREATE OR REPLACE FUNCTION claim_idempotency_key(
+    caller_id VARCHAR,
+    claimed_key VARCHAR,
+    claimed_request TEXT
+) RETURNS SMALLINT AS '
+DECLARE
+    stored_request TEXT;
+    stored_result SMALLINT;
+BEGIN
+    INSERT INTO idempotency_key (owner_id, request_key, request, result)
+    VALUES (caller_id, claimed_key, claimed_request, -1)
+    ON CONFLICT (owner_id, request_key) DO NOTHING;
+    IF FOUND THEN
+        RETURN NULL;
+    END IF;
+
+    SELECT request, result INTO stored_request, stored_result
+    FROM idempotency_key
+    WHERE owner_id = caller_id
+    AND request_key = claimed_key;
+
+    IF stored_request <> claimed_request THEN
+        RETURN 8;
+    END IF;
+    RETURN stored_result;
+END;
+' LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION complete_idempotency_key(
+    caller_id VARCHAR,
+    claimed_key VARCHAR,
+    operation_result SMALLINT
+) RETURNS VOID AS '
+BEGIN
+    UPDATE idempotency_key
+    SET result = operation_result
+    WHERE owner_id = caller_id
+    AND request_key = claimed_key;
+END;
+' LANGUAGE plpgsql;
+
+-- Перегрузки с ключом поверх функций из create_card_transaction_ledger.sql: ключ, баланс и журнал
+-- фиксируются одной транзакцией, повтор возвращает первый результат и не трогает строки card
+-- Неположительная сумма и сумма точнее 4 знаков отклоняются до захвата ключа: такой запрос не оставляет записи
+-- в idempotency_key, а отпечаток amount::DECIMAL(19, 4) считается только от суммы без округления
+CREATE OR REPLACE FUNCTION deposit_funds(
+    target_card_id BIGINT,
+    caller_id VARCHAR,
+    deposit_amount DECIMAL,
+    operation_key VARCHAR
+) RETURNS SMALLINT AS '
+DECLARE
+    code SMALLINT;
+BEGIN
+    IF deposit_amount <= 0 OR deposit_amount <> round(deposit_amount, 4) THEN
+        RETURN 9;
+    END IF;
+
+    code := claim_idempotency_key(caller_id, operation_key,
+        ''deposit:'' || target_card_id || '':'' || deposit_amount::DECIMAL(19, 4));
+    IF code IS NOT NULL THEN
+        RETURN code;
+    END IF;
+
+    code := deposit_funds(target_card_id, caller_id, deposit_amount);
+    PERFORM complete_idempotency_key(caller_id, operation_key, code);
+    RETURN code;
+END;
+' LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION withdraw_funds(
+    source_card_id BIGINT,
+    caller_id VARCHAR,
+    withdraw_amount DECIMAL,
+    operation_key VARCHAR
+) RETURNS SMALLINT AS '
+DECLARE
+    code SMALLINT;
+BEGIN
+    IF withdraw_amount <= 0 OR withdraw_amount <> round(withdraw_amount, 4) THEN
+        RETURN 9;
+    END IF;
+
+    code := claim_idempotency_key(caller_id, operation_key,
+        ''withdraw:'' || source_card_id || '':'' || withdraw_amount::DECIMAL(19, 4));
+    IF code IS NOT NULL THEN
+        RETURN code;
+    END IF;
+
+    code := withdraw_funds(source_card_id, caller_id, withdraw_amount);
+    PERFORM complete_idempotency_key(caller_id, operation_key, code);
+    RETURN code;
+END;
+' LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION transfer_funds(
+    from_card_id BIGINT,
+    to_card_id BIGINT,
+    caller_id VARCHAR,
+    transfer_amount DECIMAL,
+    operation_key VARCHAR
+) RETURNS SMALLINT AS '
+DECLARE
+    code SMALLINT;
+BEGIN
+    IF transfer_amount <= 0 OR transfer_amount <> round(transfer_amount, 4) THEN
+        RETURN 9;
+    END IF;
+
+    code := claim_idempotency_key(caller_id, operation_key,
+        ''transfer:'' || from_card_id || '':'' || to_card_id || '':'' || transfer_amount::DECIMAL(19, 4));
+    IF code IS NOT NULL THEN
+        RETURN code;
+    END IF;
+
+    code := transfer_funds(from_card_id, to_card_id, caller_id, transfer_amount);
+    PERFORM complete_idempotency_key(caller_id, operation_key, code);
+    RETURN code;
+END;
+' LANGUAGE plpgsql;
@@ -0,0 +1,106 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.exception.ServiceOverloadedException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitFilterTest {
+
+    private static final int INITIAL_LIMIT = 20;
+
+    private SimpleMeterRegistry registry;
+    private ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        ConcurrencyLimitProperties.Group group = new ConcurrencyLimitProperties.Group();
+        group.setName("user");
+        group.setPatterns(List.of("/api/v1/user/**"));
+        group.setInitialLimit(INITIAL_LIMIT);
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        properties.setGroups(List.of(group));
+        registry = new SimpleMeterRegistry();
+        filter = new ConcurrencyLimitFilter(properties, new ObjectMapper(), registry);
+    }
+
+    @Test
+    void doFilter_WhenDownstreamShedsLoad_ShouldNotLowerLimit() throws Exception {
+        // Arrange
+        FilterChain chain = (request, response) -> {
+            request.setAttribute(DispatcherServlet.EXCEPTION_ATTRIBUTE,
+                    new ServiceOverloadedException("Too many login attempts are in progress. Try again later"));
+            ((MockHttpServletResponse) response).setStatus(503);
+        };
+
+        // Act
+        filter.doFilter(request(), new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertEquals(INITIAL_LIMIT, limit());
+        assertEquals(0, inflight());
+    }
+
+    @Test
+    void doFilter_WhenServerError_ShouldLowerLimit() throws Exception {
+        // Arrange
+        FilterChain chain = (request, response) -> ((MockHttpServletResponse) response).setStatus(500);
+
+        // Act
+        filter.doFilter(request(), new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertTrue(limit() < INITIAL_LIMIT);
+        assertEquals(0, inflight());
+    }
+
+    @Test
+    void doFilter_WhenExceptionEscapes_ShouldLowerLimit() {
+        // Arrange
+        FilterChain chain = (request, response) -> {
+            throw new ServletException(new QueryTimeoutException("canceling statement due to statement timeout"));
+        };
+
+        // Act & Assert
+        assertThrows(ServletException.class,
+                () -> filter.doFilter(request(), new MockHttpServletResponse(), chain));
+        assertTrue(limit() < INITIAL_LIMIT);
+        assertEquals(0, inflight());
+    }
+
+    @Test
+    void doFilter_WhenClientError_ShouldNotLowerLimit() throws Exception {
+        // Arrange
+        FilterChain chain = (request, response) -> ((MockHttpServletResponse) response).setStatus(400);
+
+        // Act
+        filter.doFilter(request(), new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertTrue(limit() >= INITIAL_LIMIT);
+        assertEquals(0, inflight());
+    }
+
+    private MockHttpServletRequest request() {
+        return new MockHttpServletRequest("GET", "/api/v1/user/card");
+    }
+
+    private double limit() {
+        return registry.get("concurrency.limit").tag("group", "user").gauge().value();
+    }
+
+    private double inflight() {
+        return registry.get("concurrency.inflight").tag("group", "user").gauge().value();
+    }
+}
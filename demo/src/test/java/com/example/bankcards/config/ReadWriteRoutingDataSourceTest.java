@@ -0,0 +1,87 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.util.ReadYourWritesTracker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private ReadYourWritesTracker tracker;
+    private ReadWriteRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() {
+        ReplicaProperties properties = new ReplicaProperties();
+        properties.setEnabled(true);
+        properties.setReadYourWritesWindow(60000);
+        tracker = new ReadYourWritesTracker(properties);
+        routing = new ReadWriteRoutingDataSource(tracker);
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated("user", null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void determineCurrentLookupKey_OutsideReadOnlyTransaction_ShouldRouteToPrimary() {
+        // Act & Assert
+        assertEquals(ReadWriteRoutingDataSource.Route.PRIMARY, routing.determineCurrentLookupKey());
+    }
+
+    @Test
+    void determineCurrentLookupKey_InReadOnlyTransaction_ShouldRouteToReplica() {
+        // Arrange
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // Act & Assert
+        assertEquals(ReadWriteRoutingDataSource.Route.REPLICA, routing.determineCurrentLookupKey());
+    }
+
+    @Test
+    void determineCurrentLookupKey_AfterWriteOfSameUser_ShouldRouteToPrimary() {
+        // Arrange
+        tracker.recordWrite();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // Act & Assert
+        assertEquals(ReadWriteRoutingDataSource.Route.PRIMARY, routing.determineCurrentLookupKey());
+    }
+
+    @Test
+    void determineCurrentLookupKey_AfterWriteOfOtherUser_ShouldRouteToReplica() {
+        // Arrange
+        tracker.recordWrite();
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated("other", null, List.of()));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // Act & Assert
+        assertEquals(ReadWriteRoutingDataSource.Route.REPLICA, routing.determineCurrentLookupKey());
+    }
+
+    @Test
+    void determineCurrentLookupKey_WhenWindowDisabled_ShouldIgnoreWrites() {
+        // Arrange
+        ReplicaProperties properties = new ReplicaProperties();
+        properties.setEnabled(true);
+        ReadYourWritesTracker disabled = new ReadYourWritesTracker(properties);
+        ReadWriteRoutingDataSource router = new ReadWriteRoutingDataSource(disabled);
+        disabled.recordWrite();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // Act & Assert
+        assertEquals(ReadWriteRoutingDataSource.Route.REPLICA, router.determineCurrentLookupKey());
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.config.EncryptorConfig;
+import com.example.bankcards.config.EncryptorProperties;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.util.CardIndexListener;
+import com.example.bankcards.util.CardNumberEncryptor;
+import com.example.bankcards.util.CardNumberHasher;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Нативные изменения карт не должны оставлять в L2-кэше старый баланс или статус
+ * и не должны вытеснять из кэша остальные карты
+ */
+@DataJpaTest
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Import({
+        EncryptorConfig.class,
+        EncryptorProperties.class,
+        CardNumberEncryptor.class,
+        CardNumberHasher.class,
+        CardIndexListener.class,
+        CardCacheInvalidator.class
+})
+@TestPropertySource(properties = "spring.jpa.hibernate.ddl-auto=none")
+class CardCacheInvalidatorTest {
+
+    private static final String OWNER_ID = "user123";
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long cardId;
+    private Long otherCardId;
+
+    @BeforeEach
+    void setUp() {
+        entityManagerFactory.getCache().evictAll();
+        cardId = cardRepository.save(new Card("4000000000000001", OWNER_ID)).getId();
+        otherCardId = cardRepository.save(new Card("4000000000000002", OWNER_ID)).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        // Первое чтение кладет карты в кэш
+        cardRepository.findById(cardId);
+        cardRepository.findById(otherCardId);
+        entityManager.clear();
+    }
+
+    @Test
+    void findById_ShouldBeServedFromCache() {
+        // Assert
+        assertTrue(entityManagerFactory.getCache().contains(Card.class, cardId));
+        assertTrue(entityManagerFactory.getCache().contains(Card.class, otherCardId));
+    }
+
+    @Test
+    void deposit_ShouldNotServeStaleBalanceAndKeepOtherCardsCached() {
+        // Act
+        cardRepository.deposit(cardId, OWNER_ID, BigDecimal.valueOf(100), null);
+        entityManager.clear();
+
+        // Assert
+        Card card = cardRepository.findById(cardId).orElseThrow();
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(card.getBalance()));
+        assertTrue(entityManagerFactory.getCache().contains(Card.class, otherCardId));
+    }
+
+    @Test
+    void updateStatus_ShouldNotServeStaleStatusAndBumpVersion() {
+        // Arrange
+        Long version = cardRepository.findById(cardId).orElseThrow().getVersion();
+        entityManager.clear();
+
+        // Act
+        boolean updated = cardRepository.updateStatus(cardId, CardStatus.BLOCKED);
+        entityManager.clear();
+
+        // Assert
+        assertTrue(updated);
+        Card card = cardRepository.findById(cardId).orElseThrow();
+        assertEquals(CardStatus.BLOCKED, card.getStatus());
+        assertEquals(version + 1, card.getVersion());
+        assertFalse(cardRepository.updateStatus(-1L, CardStatus.BLOCKED));
+    }
+
+    @Test
+    void blockCards_ShouldNotServeStaleStatus() {
+        // Act
+        cardRepository.blockCards(List.of(cardId));
+        entityManager.clear();
+
+        // Assert
+        assertEquals(CardStatus.BLOCKED, cardRepository.findById(cardId).orElseThrow().getStatus());
+        assertEquals(CardStatus.ACTIVE, cardRepository.findById(otherCardId).orElseThrow().getStatus());
+    }
+}
@@ -0,0 +1,539 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.config.EncryptorConfig;
+import com.example.bankcards.config.EncryptorProperties;
+import com.example.bankcards.dto.CardTransactionDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.entity.TransactionKind;
+import com.example.bankcards.util.CardIndexListener;
+import com.example.bankcards.util.CardNumberEncryptor;
+import com.example.bankcards.util.CardNumberHasher;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Коды результата deposit_funds, withdraw_funds и transfer_funds: каждая проверка выполняется в БД,
+ * при отказе баланс не меняется. Успешная операция пишет журнал card_transaction в той же функции
+ */
+@DataJpaTest
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Import({
+        EncryptorConfig.class,
+        EncryptorProperties.class,
+        CardNumberEncryptor.class,
+        CardNumberHasher.class,
+        CardIndexListener.class,
+        CardCacheInvalidator.class
+})
+@TestPropertySource(properties = "spring.jpa.hibernate.ddl-auto=none")
+class CardMoneyOperationTest {
+
+    private static final String OWNER_ID = "user123";
+    private static final String OTHER_ID = "user456";
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private CardTransactionRepository cardTransactionRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Long cardId;
+    private Long otherCardId;
+    private Long blockedCardId;
+
+    @BeforeEach
+    void setUp() {
+        Card card = new Card("4000000000000001", OWNER_ID);
+        card.setBalance(HUNDRED);
+        cardId = cardRepository.save(card).getId();
+        otherCardId = cardRepository.save(new Card("4000000000000002", OTHER_ID)).getId();
+        Card blocked = new Card("4000000000000003", OWNER_ID);
+        blocked.setStatus(CardStatus.BLOCKED);
+        blockedCardId = cardRepository.save(blocked).getId();
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void deposit_WhenOwnActiveCard_ShouldSucceed() {
+        // Act
+        MoneyOperationResult result = cardRepository.deposit(cardId, OWNER_ID, HUNDRED, null);
+
+        // Assert
+        assertEquals(MoneyOperationResult.SUCCESS, result);
+        assertBalance(cardId, BigDecimal.valueOf(200));
+    }
+
+    @Test
+    void deposit_WhenCardBelongsToOtherUser_ShouldReturnNotOwner() {
+        // Act & Assert
+        assertEquals(MoneyOperationResult.NOT_OWNER, cardRepository.deposit(otherCardId, OWNER_ID, HUNDRED, null));
+        assertBalance(otherCardId, BigDecimal.ZERO);
+    }
+
+    @Test
+    void withdraw_WhenCardIsBlocked_ShouldReturnCardInactive() {
+        // Act & Assert
+        assertEquals(MoneyOperationResult.CARD_INACTIVE, cardRepository.withdraw(blockedCardId, OWNER_ID, HUNDRED, null));
+    }
+
+    @Test
+    void withdraw_WhenBalanceIsLow_ShouldReturnInsufficientFunds() {
+        // Act & Assert
+        assertEquals(MoneyOperationResult.INSUFFICIENT_FUNDS,
+                cardRepository.withdraw(cardId, OWNER_ID, BigDecimal.valueOf(101), null));
+        assertBalance(cardId, HUNDRED);
+    }
+
+    @Test
+    void withdraw_WhenCardNotExists_ShouldReturnCardNotFound() {
+        // Act & Assert
+        assertEquals(MoneyOperationResult.CARD_NOT_FOUND, cardRepository.withdraw(-1L, OWNER_ID, HUNDRED, null));
+    }
+
+    @Test
+    void transfer_ToOtherUsersCard_ShouldMoveFunds() {
+        // Act
+        MoneyOperationResult result = cardRepository.transfer(cardId, otherCardId, OWNER_ID, BigDecimal.valueOf(40), null);
+
+        // Assert
+        assertEquals(MoneyOperationResult.SUCCESS, result);
+        assertBalance(cardId, BigDecimal.valueOf(60));
+        assertBalance(otherCardId, BigDecimal.valueOf(40));
+    }
+
+    @Test
+    void transfer_FromOtherUsersCard_ShouldReturnNotOwner() {
+        // Act & Assert
+        assertEquals(MoneyOperationResult.NOT_OWNER,
+                cardRepository.transfer(otherCardId, cardId, OWNER_ID, BigDecimal.ZERO, null));
+    }
+
+    @Test
+    void transfer_ToBlockedCard_ShouldReturnTargetInactiveAndKeepBalances() {
+        // Act & Assert
+        assertEquals(MoneyOperationResult.TARGET_INACTIVE,
+                cardRepository.transfer(cardId, blockedCardId, OWNER_ID, BigDecimal.TEN, null));
+        assertBalance(cardId, HUNDRED);
+        assertBalance(blockedCardId, BigDecimal.ZERO);
+    }
+
+    @Test
+    void transfer_ToMissingCard_ShouldReturnTargetNotFound() {
+        // Act & Assert
+        assertEquals(MoneyOperationResult.TARGET_NOT_FOUND,
+                cardRepository.transfer(cardId, -1L, OWNER_ID, BigDecimal.TEN, null));
+    }
+
+    @Test
+    void transfer_ToSameCard_ShouldReturnSameCard() {
+        // Act & Assert
+        assertEquals(MoneyOperationResult.SAME_CARD,
+                cardRepository.transfer(cardId, cardId, OWNER_ID, BigDecimal.TEN, null));
+    }
+
+    @Test
+    void transfer_WithNegativeAmount_ShouldReturnInvalidAmountAndKeepBalances() {
+        // Act & Assert
+        assertEquals(MoneyOperationResult.INVALID_AMOUNT,
+                cardRepository.transfer(cardId, otherCardId, OWNER_ID, BigDecimal.valueOf(-1000), null));
+        assertBalance(cardId, HUNDRED);
+        assertBalance(otherCardId, BigDecimal.ZERO);
+    }
+
+    @Test
+    void withdraw_WithNegativeAmount_ShouldReturnInvalidAmount() {
+        // Act & Assert
+        assertEquals(MoneyOperationResult.INVALID_AMOUNT,
+                cardRepository.withdraw(cardId, OWNER_ID, BigDecimal.valueOf(-50), null));
+        assertBalance(cardId, HUNDRED);
+    }
+
+    @Test
+    void deposit_WithZeroOrNegativeAmount_ShouldReturnInvalidAmount() {
+        // Act & Assert
+        assertEquals(MoneyOperationResult.INVALID_AMOUNT, cardRepository.deposit(cardId, OWNER_ID, BigDecimal.ZERO, null));
+        assertEquals(MoneyOperationResult.INVALID_AMOUNT,
+                cardRepository.deposit(cardId, OWNER_ID, BigDecimal.valueOf(-150), null));
+        assertBalance(cardId, HUNDRED);
+    }
+
+    @Test
+    void moneyOperations_WithMoreThanFourDecimalPlaces_ShouldReturnInvalidAmount() {
+        // Act & Assert
+        assertEquals(MoneyOperationResult.INVALID_AMOUNT,
+                cardRepository.deposit(cardId, OWNER_ID, new BigDecimal("0.00001"), null));
+        assertEquals(MoneyOperationResult.INVALID_AMOUNT,
+                cardRepository.withdraw(cardId, OWNER_ID, new BigDecimal("1.00005"), null));
+        assertEquals(MoneyOperationResult.INVALID_AMOUNT,
+                cardRepository.transfer(cardId, otherCardId, OWNER_ID, new BigDecimal("1.00005"), null));
+        assertBalance(cardId, HUNDRED);
+        assertTrue(cardTransactionRepository.findHistory(cardId, OWNER_ID, PageRequest.of(0, 10)).isEmpty());
+    }
+
+    @Test
+    void deposit_WithTrailingZerosBeyondFourDecimalPlaces_ShouldSucceed() {
+        // Act
+        MoneyOperationResult result = cardRepository.deposit(cardId, OWNER_ID, new BigDecimal("1.500000"), null);
+
+        // Assert
+        assertEquals(MoneyOperationResult.SUCCESS, result);
+        assertBalance(cardId, new BigDecimal("101.5"));
+    }
+
+    @Test
+    void transfer_ShouldWriteLedgerEntryForEachCard() {
+        // Act
+        cardRepository.transfer(cardId, otherCardId, OWNER_ID, BigDecimal.valueOf(40), null);
+
+        // Assert
+        List<CardTransactionDTO> outgoing = cardTransactionRepository.findHistory(cardId, OWNER_ID, PageRequest.of(0, 10));
+        List<CardTransactionDTO> incoming = cardTransactionRepository.findHistory(otherCardId, OTHER_ID, PageRequest.of(0, 10));
+        assertEquals(1, outgoing.size());
+        assertEquals(TransactionKind.TRANSFER_OUT, outgoing.get(0).kind());
+        assertEquals(0, BigDecimal.valueOf(60).compareTo(outgoing.get(0).balanceAfter()));
+        assertEquals(otherCardId, outgoing.get(0).counterpartCardId());
+        assertEquals(1, incoming.size());
+        assertEquals(TransactionKind.TRANSFER_IN, incoming.get(0).kind());
+    }
+
+    @Test
+    void withdraw_WhenRejected_ShouldNotWriteLedger() {
+        // Act
+        cardRepository.withdraw(cardId, OWNER_ID, BigDecimal.valueOf(101), null);
+
+        // Assert
+        assertTrue(cardTransactionRepository.findHistory(cardId, OWNER_ID, PageRequest.of(0, 10)).isEmpty());
+    }
+
+    @Test
+    void transfer_WithNegativeAmount_ShouldNotWriteLedger() {
+        // Act
+        cardRepository.transfer(cardId, otherCardId, OWNER_ID, BigDecimal.valueOf(-40), null);
+
+        // Assert
+        assertTrue(cardTransactionRepository.findHistory(cardId, OWNER_ID, PageRequest.of(0, 10)).isEmpty());
+        assertTrue(cardTransactionRepository.findHistory(otherCardId, OTHER_ID, PageRequest.of(0, 10)).isEmpty());
+    }
+
+    @Test
+    void createPartitions_WhenMonthRowsAreInDefaultPartition_ShouldMoveThemToNewPartition() {
+        // Arrange
+        entityManager.createNativeQuery("INSERT INTO card_transaction (card_id, kind, amount, balance_after, created_at) "
+                        + "VALUES (?1, 0, 1, 1, date_trunc('month', now()) + INTERVAL '6 months' + INTERVAL '1 day')")
+                .setParameter(1, cardId)
+                .executeUpdate();
+
+        // Act
+        int created = cardTransactionRepository.createPartitions(6);
+
+        // Assert
+        assertTrue(created > 0);
+        assertEquals(0L, ((Number) entityManager.createNativeQuery(
+                "SELECT count(*) FROM card_transaction_default").getSingleResult()).longValue());
+        assertEquals(1L, ((Number) entityManager.createNativeQuery(
+                "SELECT count(*) FROM card_transaction WHERE card_id = ?1")
+                .setParameter(1, cardId)
+                .getSingleResult()).longValue());
+    }
+
+    @Test
+    void findHistory_ForOtherUsersCard_ShouldReturnNothing() {
+        // Arrange
+        cardRepository.deposit(cardId, OWNER_ID, HUNDRED, null);
+
+        // Act & Assert
+        assertTrue(cardTransactionRepository.findHistory(cardId, OTHER_ID, PageRequest.of(0, 10)).isEmpty());
+    }
+
+    @Test
+    void findHistoryAfter_ShouldReturnOlderEntriesNewestFirst() {
+        // Arrange
+        cardRepository.deposit(cardId, OWNER_ID, BigDecimal.ONE, null);
+        cardRepository.deposit(cardId, OWNER_ID, BigDecimal.valueOf(2), null);
+        cardRepository.deposit(cardId, OWNER_ID, BigDecimal.valueOf(3), null);
+        List<CardTransactionDTO> first = cardTransactionRepository.findHistory(cardId, OWNER_ID, PageRequest.of(0, 1));
+        CardTransactionDTO last = first.get(0);
+
+        // Act
+        List<CardTransactionDTO> next = cardTransactionRepository.findHistoryAfter(
+                cardId, OWNER_ID, last.createdAt(), last.id(), PageRequest.of(0, 10));
+
+        // Assert
+        assertEquals(0, BigDecimal.valueOf(3).compareTo(last.amount()));
+        assertEquals(2, next.size());
+        assertEquals(0, BigDecimal.valueOf(2).compareTo(next.get(0).amount()));
+        assertEquals(0, BigDecimal.ONE.compareTo(next.get(1).amount()));
+    }
+
+    @Test
+    void deposit_WhenRetriedWithSameKey_ShouldApplyOnce() {
+        // Act
+        MoneyOperationResult first = cardRepository.deposit(cardId, OWNER_ID, HUNDRED, "key-1");
+        MoneyOperationResult retry = cardRepository.deposit(cardId, OWNER_ID, new BigDecimal("100.00"), "key-1");
+
+        // Assert
+        assertEquals(MoneyOperationResult.SUCCESS, first);
+        assertEquals(MoneyOperationResult.SUCCESS, retry);
+        assertBalance(cardId, BigDecimal.valueOf(200));
+        assertEquals(1, cardTransactionRepository.findHistory(cardId, OWNER_ID, PageRequest.of(0, 10)).size());
+    }
+
+    @Test
+    void withdraw_WhenRetriedWithSameKey_ShouldReturnOriginalFailure() {
+        // Arrange
+        cardRepository.withdraw(cardId, OWNER_ID, BigDecimal.valueOf(150), "key-1");
+        cardRepository.deposit(cardId, OWNER_ID, HUNDRED, null);
+
+        // Act
+        MoneyOperationResult retry = cardRepository.withdraw(cardId, OWNER_ID, BigDecimal.valueOf(150), "key-1");
+
+        // Assert
+        assertEquals(MoneyOperationResult.INSUFFICIENT_FUNDS, retry);
+        assertBalance(cardId, BigDecimal.valueOf(200));
+    }
+
+    @Test
+    void transfer_WhenKeyReusedWithOtherAmount_ShouldReturnKeyReused() {
+        // Arrange
+        cardRepository.transfer(cardId, otherCardId, OWNER_ID, BigDecimal.TEN, "key-1");
+
+        // Act
+        MoneyOperationResult result = cardRepository.transfer(cardId, otherCardId, OWNER_ID, BigDecimal.ONE, "key-1");
+
+        // Assert
+        assertEquals(MoneyOperationResult.IDEMPOTENCY_KEY_REUSED, result);
+        assertBalance(cardId, BigDecimal.valueOf(90));
+    }
+
+    @Test
+    void transfer_WithNegativeAmountAndKey_ShouldNotClaimKey() {
+        // Arrange
+        MoneyOperationResult rejected = cardRepository.transfer(cardId, otherCardId, OWNER_ID, BigDecimal.valueOf(-10), "key-1");
+
+        // Act
+        MoneyOperationResult result = cardRepository.transfer(cardId, otherCardId, OWNER_ID, BigDecimal.TEN, "key-1");
+
+        // Assert
+        assertEquals(MoneyOperationResult.INVALID_AMOUNT, rejected);
+        assertEquals(MoneyOperationResult.SUCCESS, result);
+        assertBalance(cardId, BigDecimal.valueOf(90));
+        assertBalance(otherCardId, BigDecimal.TEN);
+    }
+
+    @Test
+    void withdraw_WithMoreThanFourDecimalPlacesAndKey_ShouldNotClaimKey() {
+        // Arrange
+        MoneyOperationResult rejected = cardRepository.withdraw(cardId, OWNER_ID, new BigDecimal("10.00001"), "key-1");
+
+        // Act
+        MoneyOperationResult result = cardRepository.withdraw(cardId, OWNER_ID, new BigDecimal("10.0000"), "key-1");
+
+        // Assert
+        assertEquals(MoneyOperationResult.INVALID_AMOUNT, rejected);
+        assertEquals(MoneyOperationResult.SUCCESS, result);
+        assertBalance(cardId, BigDecimal.valueOf(90));
+    }
+
+    @Test
+    void deposit_WithSameKeyOfOtherUser_ShouldApplyIndependently() {
+        // Act
+        cardRepository.deposit(cardId, OWNER_ID, HUNDRED, "key-1");
+        MoneyOperationResult other = cardRepository.deposit(otherCardId, OTHER_ID, HUNDRED, "key-1");
+
+        // Assert
+        assertEquals(MoneyOperationResult.SUCCESS, other);
+        assertBalance(otherCardId, HUNDRED);
+    }
+
+    @Test
+    void deleteIdempotencyKeysCreatedBefore_ShouldAllowKeyToBeUsedAgain() {
+        // Arrange
+        cardRepository.deposit(cardId, OWNER_ID, HUNDRED, "key-1");
+
+        // Act
+        int deleted = cardRepository.deleteIdempotencyKeysCreatedBefore(Instant.now().plusSeconds(1));
+
+        // Assert
+        assertEquals(1, deleted);
+        cardRepository.deposit(cardId, OWNER_ID, HUNDRED, "key-1");
+        assertBalance(cardId, BigDecimal.valueOf(300));
+    }
+
+    @Test
+    void creditBatch_ShouldCreditOnceAndReturnCodeForEachDeposit() {
+        // Act
+        List<MoneyOperationResult> results = cardRepository.creditBatch(cardId, List.of(
+                CreditRequest.deposit(OWNER_ID, BigDecimal.TEN, null),
+                CreditRequest.deposit(OTHER_ID, BigDecimal.TEN, null),
+                CreditRequest.deposit(OWNER_ID, BigDecimal.valueOf(5), null)));
+
+        // Assert
+        assertEquals(List.of(
+                MoneyOperationResult.SUCCESS,
+                MoneyOperationResult.NOT_OWNER,
+                MoneyOperationResult.SUCCESS), results);
+        assertBalance(cardId, BigDecimal.valueOf(115));
+        List<CardTransactionDTO> history = cardTransactionRepository.findHistory(cardId, OWNER_ID, PageRequest.of(0, 10));
+        assertEquals(2, history.size());
+        assertEquals(0, BigDecimal.valueOf(115).compareTo(history.get(0).balanceAfter()));
+        assertEquals(0, BigDecimal.valueOf(110).compareTo(history.get(1).balanceAfter()));
+    }
+
+    @Test
+    void creditBatch_ToBlockedCard_ShouldReturnCardInactiveForEachDeposit() {
+        // Act
+        List<MoneyOperationResult> results = cardRepository.creditBatch(blockedCardId, List.of(
+                CreditRequest.deposit(OWNER_ID, BigDecimal.TEN, null),
+                CreditRequest.deposit(OWNER_ID, BigDecimal.TEN, null)));
+
+        // Assert
+        assertEquals(List.of(MoneyOperationResult.CARD_INACTIVE, MoneyOperationResult.CARD_INACTIVE), results);
+        assertBalance(blockedCardId, BigDecimal.ZERO);
+    }
+
+    @Test
+    void creditBatch_WithSameKeyTwice_ShouldApplyOnce() {
+        // Act
+        List<MoneyOperationResult> results = cardRepository.creditBatch(cardId, List.of(
+                CreditRequest.deposit(OWNER_ID, BigDecimal.TEN, "key-1"),
+                CreditRequest.deposit(OWNER_ID, BigDecimal.TEN, "key-1"),
+                CreditRequest.deposit(OWNER_ID, BigDecimal.ONE, "key-1")));
+
+        // Assert
+        assertEquals(List.of(
+                MoneyOperationResult.SUCCESS,
+                MoneyOperationResult.SUCCESS,
+                MoneyOperationResult.IDEMPOTENCY_KEY_REUSED), results);
+        assertBalance(cardId, BigDecimal.valueOf(110));
+    }
+
+    @Test
+    void creditBatch_WithKeysOutOfOrder_ShouldReturnResultsInBatchOrder() {
+        // Arrange
+        cardRepository.deposit(cardId, OWNER_ID, BigDecimal.ONE, "key-a");
+
+        // Act
+        List<MoneyOperationResult> results = cardRepository.creditBatch(cardId, List.of(
+                CreditRequest.deposit(OWNER_ID, BigDecimal.TEN, "key-b"),
+                CreditRequest.deposit(OWNER_ID, BigDecimal.TEN, "key-a")));
+
+        // Assert
+        assertEquals(List.of(
+                MoneyOperationResult.SUCCESS,
+                MoneyOperationResult.IDEMPOTENCY_KEY_REUSED), results);
+        assertBalance(cardId, BigDecimal.valueOf(111));
+    }
+
+    @Test
+    void deposit_WhenKeyWasUsedInBatch_ShouldReturnStoredResult() {
+        // Arrange
+        cardRepository.creditBatch(cardId, List.of(CreditRequest.deposit(OWNER_ID, BigDecimal.TEN, "key-1")));
+
+        // Act
+        MoneyOperationResult retry = cardRepository.deposit(cardId, OWNER_ID, BigDecimal.TEN, "key-1");
+
+        // Assert
+        assertEquals(MoneyOperationResult.SUCCESS, retry);
+        assertBalance(cardId, BigDecimal.valueOf(110));
+    }
+
+    @Test
+    void creditBatch_WithIncomingTransfers_ShouldDebitSourcesAndCreditTargetOnce() {
+        // Arrange
+        Card source = new Card("4000000000000004", OTHER_ID);
+        source.setBalance(BigDecimal.valueOf(50));
+        Long sourceId = cardRepository.save(source).getId();
+        entityManager.flush();
+        entityManager.clear();
+
+        // Act
+        List<MoneyOperationResult> results = cardRepository.creditBatch(cardId, List.of(
+                CreditRequest.transfer(sourceId, OTHER_ID, BigDecimal.valueOf(30), null),
+                CreditRequest.transfer(sourceId, OTHER_ID, BigDecimal.valueOf(30), null),
+                CreditRequest.transfer(sourceId, OWNER_ID, BigDecimal.TEN, null),
+                CreditRequest.transfer(sourceId, OTHER_ID, BigDecimal.valueOf(20), null)));
+
+        // Assert
+        assertEquals(List.of(
+                MoneyOperationResult.SUCCESS,
+                MoneyOperationResult.INSUFFICIENT_FUNDS,
+                MoneyOperationResult.NOT_OWNER,
+                MoneyOperationResult.SUCCESS), results);
+        assertBalance(sourceId, BigDecimal.ZERO);
+        assertBalance(cardId, BigDecimal.valueOf(150));
+        List<CardTransactionDTO> incoming = cardTransactionRepository.findHistory(cardId, OWNER_ID, PageRequest.of(0, 10));
+        assertEquals(2, incoming.size());
+        assertEquals(TransactionKind.TRANSFER_IN, incoming.get(0).kind());
+        assertEquals(sourceId, incoming.get(0).counterpartCardId());
+        assertEquals(0, BigDecimal.valueOf(150).compareTo(incoming.get(0).balanceAfter()));
+        assertEquals(2, cardTransactionRepository.findHistory(sourceId, OTHER_ID, PageRequest.of(0, 10)).size());
+    }
+
+    @Test
+    void creditBatch_WithTransferToBlockedCard_ShouldReturnTargetInactive() {
+        // Act
+        List<MoneyOperationResult> results = cardRepository.creditBatch(blockedCardId, List.of(
+                CreditRequest.transfer(cardId, OWNER_ID, BigDecimal.TEN, null)));
+
+        // Assert
+        assertEquals(List.of(MoneyOperationResult.TARGET_INACTIVE), results);
+        assertBalance(cardId, HUNDRED);
+    }
+
+    @Test
+    void creditBatch_WithNonPositiveElement_ShouldRejectItAndKeepOthers() {
+        // Act
+        List<MoneyOperationResult> results = cardRepository.creditBatch(cardId, List.of(
+                CreditRequest.deposit(OWNER_ID, BigDecimal.valueOf(-50), null),
+                CreditRequest.transfer(otherCardId, OTHER_ID, BigDecimal.ZERO, "key-1"),
+                CreditRequest.deposit(OWNER_ID, BigDecimal.TEN, null)));
+
+        // Assert
+        assertEquals(List.of(
+                MoneyOperationResult.INVALID_AMOUNT,
+                MoneyOperationResult.INVALID_AMOUNT,
+                MoneyOperationResult.SUCCESS), results);
+        assertBalance(cardId, BigDecimal.valueOf(110));
+        assertEquals(0, cardRepository.deleteIdempotencyKeysCreatedBefore(Instant.now().plusSeconds(1)));
+    }
+
+    @Test
+    void transfer_WhenKeyWasUsedInBatch_ShouldReturnStoredResult() {
+        // Arrange
+        cardRepository.creditBatch(otherCardId, List.of(CreditRequest.transfer(cardId, OWNER_ID, BigDecimal.TEN, "key-1")));
+
+        // Act
+        MoneyOperationResult retry = cardRepository.transfer(cardId, otherCardId, OWNER_ID, BigDecimal.TEN, "key-1");
+
+        // Assert
+        assertEquals(MoneyOperationResult.SUCCESS, retry);
+        assertBalance(cardId, BigDecimal.valueOf(90));
+        assertBalance(otherCardId, BigDecimal.TEN);
+    }
+
+    private void assertBalance(Long id, BigDecimal expected) {
+        entityManager.clear();
+        BigDecimal balance = cardRepository.findById(id).orElseThrow().getBalance();
+        assertEquals(0, expected.compareTo(balance), () -> "Balance of card " + id + " is " + balance);
+    }
+}
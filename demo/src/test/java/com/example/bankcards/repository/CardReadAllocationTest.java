@@ -0,0 +1,105 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.config.EncryptorConfig;
+import com.example.bankcards.config.EncryptorProperties;
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.util.CardIndexListener;
+import com.example.bankcards.util.CardNumberEncryptor;
+import com.example.bankcards.util.CardNumberHasher;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Сравнение аллокаций при чтении страницы из 100 карт: загрузка управляемых сущностей
+ * с последующим toDTOEncrypted против проекции прямо в {@link CardDTO}.
+ * Память считается по текущему потоку через {@code getCurrentThreadAllocatedBytes}.
+ */
+@DataJpaTest
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Import({
+        EncryptorConfig.class,
+        EncryptorProperties.class,
+        CardNumberEncryptor.class,
+        CardNumberHasher.class,
+        CardIndexListener.class,
+        CardCacheInvalidator.class
+})
+@TestPropertySource(properties = "spring.jpa.hibernate.ddl-auto=none")
+class CardReadAllocationTest {
+
+    private static final String OWNER_ID = "user123";
+    private static final int PAGE_SIZE = 100;
+    private static final Pageable PAGEABLE = PageRequest.of(0, PAGE_SIZE, Sort.by("id"));
+    private static final int WARMUP = 10;
+    private static final int ITERATIONS = 30;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        List<Card> cards = IntStream.range(0, PAGE_SIZE)
+                .mapToObj(i -> new Card(String.format("4000%012d", i), OWNER_ID))
+                .toList();
+        cardRepository.saveAll(cards);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void projection_ShouldAllocateLessThanEntityPage() {
+        // Arrange
+        Supplier<Page<CardDTO>> entities = () -> cardRepository.findAll(PAGEABLE).map(Card::toDTOEncrypted);
+        Supplier<Page<CardDTO>> projection = () -> cardRepository.findAllMasked(PAGEABLE);
+        assertEquals(entities.get().getContent(), projection.get().getContent());
+
+        // Act
+        long entityBytes = allocatedPerPage(entities);
+        long projectionBytes = allocatedPerPage(projection);
+
+        // Assert
+        assertTrue(projectionBytes < entityBytes, () -> String.format(
+                "Page of %d cards: entities + toDTOEncrypted %d bytes, projection %d bytes",
+                PAGE_SIZE, entityBytes, projectionBytes));
+    }
+
+    private long allocatedPerPage(Supplier<Page<CardDTO>> read) {
+        for (int i = 0; i < WARMUP; i++) {
+            read(read);
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            read(read);
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / ITERATIONS;
+    }
+
+    private void read(Supplier<Page<CardDTO>> read) {
+        assertEquals(PAGE_SIZE, read.get().getNumberOfElements());
+        // Каждая итерация читает в пустой контекст, как отдельный запрос
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.config.EncryptorConfig;
+import com.example.bankcards.config.EncryptorProperties;
+import com.example.bankcards.dto.CardSearchFilter;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.util.CardIndexListener;
+import com.example.bankcards.util.CardNumberEncryptor;
+import com.example.bankcards.util.CardNumberHasher;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Регрессия планов запросов CardRepository на встроенном Postgres со схемой из Liquibase.
+ * Для каждого запроса берется SQL, который реально сгенерировал Hibernate, и строится
+ * EXPLAIN (GENERIC_PLAN) с enable_seqscan = off: если подходящего индекса нет,
+ * планировщику остается только Seq Scan, и тест падает.
+ */
+@DataJpaTest
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Import({
+        EncryptorConfig.class,
+        EncryptorProperties.class,
+        CardNumberEncryptor.class,
+        CardNumberHasher.class,
+        CardIndexListener.class,
+        CardCacheInvalidator.class
+})
+@TestPropertySource(properties = {
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.example.bankcards.repository.SqlCapture"
+})
+class CardRepositoryPlanTest {
+
+    private static final String OWNER_ID = "user123";
+    private static final Pageable PAGEABLE = PageRequest.of(2, 10, Sort.by("id"));
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private CardTransactionRepository cardTransactionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        SqlCapture.clear();
+    }
+
+    @Test
+    void search_ByOwner_ShouldUseIndex() {
+        // Act
+        cardRepository.search(OWNER_ID, CardSearchFilter.all(), PAGEABLE);
+
+        // Assert
+        assertNoSeqScan();
+    }
+
+    @Test
+    void search_ByOwnerAndStatuses_ShouldUseIndex() {
+        // Arrange
+        CardSearchFilter filter = new CardSearchFilter(
+                Set.of(CardStatus.ACTIVE, CardStatus.BLOCKED),
+                YearMonth.of(2030, 1),
+                YearMonth.of(2030, 12),
+                BigDecimal.ZERO,
+                BigDecimal.valueOf(1000));
+
+        // Act
+        cardRepository.search(OWNER_ID, filter, PageRequest.of(0, 10, Sort.by("balance").descending()));
+
+        // Assert
+        assertNoSeqScan();
+    }
+
+    @Test
+    void findSliceMaskedByOwnerIdAndStatus_ShouldUseIndex() {
+        // Act
+        cardRepository.findSliceMaskedByOwnerIdAndStatus(OWNER_ID, CardStatus.BLOCKED, PAGEABLE);
+
+        // Assert
+        assertNoSeqScan();
+    }
+
+    @Test
+    void findMaskedAfter_ByOwnerAndStatus_ShouldUseIndex() {
+        // Act
+        cardRepository.findMaskedAfter(OWNER_ID, CardStatus.ACTIVE, CardSortKey.ID, false, null, 100L, 11);
+
+        // Assert
+        assertNoSeqScan();
+    }
+
+    @Test
+    void findMaskedAfter_ForEverySortKey_ShouldReadInIndexOrder() {
+        for (String ownerId : new String[]{OWNER_ID, null}) {
+            for (CardSortKey sortKey : CardSortKey.values()) {
+                for (boolean descending : new boolean[]{false, true}) {
+                    // Arrange
+                    SqlCapture.clear();
+                    Object keyValue = sortKey.parse(switch (sortKey) {
+                        case ID, BALANCE -> "100";
+                        case EXPIRY_DATE -> "2030-01";
+                        case STATUS -> "ACTIVE";
+                    });
+
+                    // Act
+                    cardRepository.findMaskedAfter(ownerId, null, sortKey, descending, keyValue, 100L, 11);
+
+                    // Assert
+                    assertNoSort();
+                }
+            }
+        }
+    }
+
+    @Test
+    void findSliceMasked_ShouldUseIndex() {
+        // Act
+        cardRepository.findSliceMasked(PAGEABLE);
+
+        // Assert
+        assertNoSeqScan();
+    }
+
+    @Test
+    void findById_ShouldUseIndex() {
+        // Act
+        cardRepository.findById(1L);
+
+        // Assert
+        assertNoSeqScan();
+    }
+
+    @Test
+    void findVersion_ShouldUseIndex() {
+        // Act
+        cardRepository.findVersion(1L, OWNER_ID);
+
+        // Assert
+        assertNoSeqScan();
+    }
+
+    @Test
+    void findOwnerVersion_ShouldUseIndex() {
+        // Act
+        cardRepository.findOwnerVersion(OWNER_ID);
+
+        // Assert
+        assertNoSeqScan();
+    }
+
+    @Test
+    void findBalance_ShouldUseIndex() {
+        // Act
+        cardRepository.findBalance(1L, OWNER_ID);
+
+        // Assert
+        assertNoSeqScan();
+    }
+
+    @Test
+    void findDTOByCardNumberHash_ShouldUseIndex() {
+        // Act
+        cardRepository.findDTOByCardNumberHash("0".repeat(64));
+
+        // Assert
+        assertNoSeqScan();
+    }
+
+    @Test
+    void expireCards_ShouldUsePartialIndex() {
+        // Нативные изменения идут через JdbcTemplate мимо Hibernate, план строится по их SQL
+        assertNoSeqScan(List.of(CardRepositoryCustomImpl.EXPIRE_CANDIDATES_SQL));
+    }
+
+    @Test
+    void blockCards_ShouldUseIndex() {
+        assertNoSeqScan(List.of(CardRepositoryCustomImpl.BLOCK_SQL, CardRepositoryCustomImpl.EXPIRE_SQL));
+    }
+
+    @Test
+    void findHistoryAfter_ShouldUseIndexInEveryPartition() {
+        // Act
+        cardTransactionRepository.findHistoryAfter(1L, OWNER_ID, Instant.now(), 100L, PageRequest.of(0, 21));
+
+        // Assert
+        assertNoSeqScan();
+    }
+
+    @Test
+    void countFromCounter_ShouldUseIndex() {
+        // Act
+        cardRepository.countFromCounter(OWNER_ID, CardStatus.ACTIVE.ordinal());
+
+        // Assert
+        assertNoSeqScan();
+    }
+
+    private void assertNoSeqScan() {
+        List<String> statements = SqlCapture.statements();
+        assertFalse(statements.isEmpty(), "No SQL was captured");
+        assertNoSeqScan(statements);
+    }
+
+    private void assertNoSeqScan(List<String> statements) {
+        jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+        for (String sql : statements) {
+            String plan = explain(sql);
+            assertFalse(plan.contains("Seq Scan"), () -> "Sequential scan in plan of:\n" + sql + "\n" + plan);
+        }
+    }
+
+    // С enable_sort = off Sort остается в плане, только если порядок не дает ни один индекс
+    private void assertNoSort() {
+        List<String> statements = SqlCapture.statements();
+        assertFalse(statements.isEmpty(), "No SQL was captured");
+        jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+        jdbcTemplate.execute("SET LOCAL enable_sort = off");
+        for (String sql : statements) {
+            String plan = explain(sql);
+            assertFalse(plan.contains("Sort ") || plan.contains("Seq Scan"),
+                    () -> "Sort or sequential scan in plan of:\n" + sql + "\n" + plan);
+        }
+        jdbcTemplate.execute("SET LOCAL enable_sort = on");
+    }
+
+    private String explain(String sql) {
+        // GENERIC_PLAN принимает параметры только в виде $n
+        StringBuilder numbered = new StringBuilder();
+        int index = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                numbered.append('$').append(++index);
+            } else {
+                numbered.append(c);
+            }
+        }
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("EXPLAIN (GENERIC_PLAN) " + numbered);
+        return rows.stream()
+                .map(row -> String.valueOf(row.values().iterator().next()))
+                .collect(Collectors.joining("\n"));
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.exception.InvalidSortException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ключи сортировки страничных и keyset-списков карт: только поля с индексом, остальное - 400 без упоминания курсора
+ */
+class CardSortKeyTest {
+
+    @Test
+    void of_WithSupportedProperty_ShouldReturnKey() {
+        // Act & Assert
+        assertEquals(CardSortKey.ID, CardSortKey.of("id"));
+        assertEquals(CardSortKey.BALANCE, CardSortKey.of("balance"));
+        assertEquals(CardSortKey.EXPIRY_DATE, CardSortKey.of("expiryDate"));
+        assertEquals(CardSortKey.STATUS, CardSortKey.of("status"));
+    }
+
+    @Test
+    void of_WithUnsupportedProperty_ShouldThrowInvalidSortException() {
+        // Act
+        InvalidSortException exception = assertThrows(InvalidSortException.class, () -> CardSortKey.of("cardHolder"));
+
+        // Assert
+        assertEquals("Sorting is not supported for key 'cardHolder'. Supported keys: id, balance, expiryDate, status",
+                exception.getMessage());
+    }
+}
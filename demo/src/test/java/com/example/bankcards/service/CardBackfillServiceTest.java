@@ -0,0 +1,123 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.repository.CardNumberIndex;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.CardNumberHasher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardBackfillServiceTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private CardNumberHasher cardNumberHasher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private CardBackfillService cardBackfillService;
+
+    private final String cardNumber1 = "4000000000000001";
+    private final String cardNumber2 = "4000000000000002";
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cardBackfillService, "batchSize", 2);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void backfill_WhenLockedByAnotherNode_ShouldNotTouchCards() {
+        // Arrange
+        when(cardRepository.tryLockNumberIndexBackfill()).thenReturn(false);
+
+        // Act
+        cardBackfillService.backfill();
+
+        // Assert
+        verify(cardRepository, never()).findBackfillCandidates(anyLong(), any(Limit.class));
+        verify(cardRepository, never()).fillNumberIndex(anyList());
+    }
+
+    @Test
+    void backfill_ShouldFillEachBatchWithOneUpdate() {
+        // Arrange
+        when(cardRepository.tryLockNumberIndexBackfill()).thenReturn(true);
+        when(cardNumberHasher.hash(cardNumber1)).thenReturn("hash-1");
+        when(cardNumberHasher.hash(cardNumber2)).thenReturn("hash-2");
+        when(cardRepository.findBackfillCandidates(0L, Limit.of(2)))
+                .thenReturn(List.of(card(1L, cardNumber1), card(2L, cardNumber2)));
+        when(cardRepository.findBackfillCandidates(2L, Limit.of(2))).thenReturn(List.of());
+        when(cardRepository.fillNumberIndex(anyList())).thenReturn(List.of(1L, 2L));
+
+        // Act
+        cardBackfillService.backfill();
+
+        // Assert
+        verify(cardRepository).fillNumberIndex(List.of(
+                new CardNumberIndex(1L, "hash-1", "0001"),
+                new CardNumberIndex(2L, "hash-2", "0002")
+        ));
+    }
+
+    @Test
+    void backfill_WithDuplicateCardNumbers_ShouldSkipDuplicateAndContinue() {
+        // Arrange
+        when(cardRepository.tryLockNumberIndexBackfill()).thenReturn(true);
+        when(cardNumberHasher.hash(cardNumber1)).thenReturn("hash-1");
+        when(cardRepository.findBackfillCandidates(0L, Limit.of(2)))
+                .thenReturn(List.of(card(1L, cardNumber1), card(2L, cardNumber1)));
+        when(cardRepository.findBackfillCandidates(2L, Limit.of(2))).thenReturn(List.of());
+        when(cardRepository.fillNumberIndex(anyList())).thenReturn(List.of(1L));
+
+        // Act & Assert
+        assertDoesNotThrow(() -> cardBackfillService.backfill());
+        verify(cardRepository).fillNumberIndex(List.of(new CardNumberIndex(1L, "hash-1", "0001")));
+        verify(cardRepository).findBackfillCandidates(2L, Limit.of(2));
+    }
+
+    @Test
+    void backfill_WhenUniqueIndexViolated_ShouldStopWithoutThrowing() {
+        // Arrange
+        when(cardRepository.tryLockNumberIndexBackfill()).thenReturn(true);
+        when(cardNumberHasher.hash(cardNumber1)).thenReturn("hash-1");
+        when(cardRepository.findBackfillCandidates(0L, Limit.of(2)))
+                .thenReturn(List.of(card(1L, cardNumber1)));
+        when(cardRepository.fillNumberIndex(anyList()))
+                .thenThrow(new DataIntegrityViolationException("uq_card_number_hash"));
+
+        // Act & Assert
+        assertDoesNotThrow(() -> cardBackfillService.backfill());
+        verify(cardRepository, times(1)).findBackfillCandidates(anyLong(), any(Limit.class));
+    }
+
+    private CardDTO card(Long id, String cardNumber) {
+        return new CardDTO(id, cardNumber, "owner", YearMonth.of(2030, 1), CardStatus.ACTIVE, BigDecimal.ZERO);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardCountServiceTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @InjectMocks
+    private CardCountService cardCountService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cardCountService, "estimateTtl", 60000L);
+    }
+
+    @Test
+    void estimateAll_ShouldCacheEstimate() {
+        // Arrange
+        when(cardRepository.estimateCount()).thenReturn(500L);
+
+        // Act
+        long first = cardCountService.estimateAll();
+        long second = cardCountService.estimateAll();
+
+        // Assert
+        assertEquals(500L, first);
+        assertEquals(500L, second);
+        verify(cardRepository, times(1)).estimateCount();
+        verify(cardRepository, never()).count();
+    }
+
+    @Test
+    void estimateAll_WhenTableNotAnalyzed_ShouldFallBackToCount() {
+        // Arrange
+        when(cardRepository.estimateCount()).thenReturn(-1L);
+        when(cardRepository.count()).thenReturn(42L);
+
+        // Act
+        long result = cardCountService.estimateAll();
+
+        // Assert
+        assertEquals(42L, result);
+    }
+
+    @Test
+    void countOfOwner_WithStatus_ShouldQueryCounterByOrdinal() {
+        // Arrange
+        when(cardRepository.countFromCounter("user123", CardStatus.EXPIRED.ordinal())).thenReturn(3L);
+
+        // Act
+        long result = cardCountService.countOfOwner("user123", CardStatus.EXPIRED);
+
+        // Assert
+        assertEquals(3L, result);
+    }
+}
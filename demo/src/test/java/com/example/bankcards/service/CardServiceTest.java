@@ -1,32 +1,48 @@
 package com.example.bankcards.service;
 
 import com.example.bankcards.dto.CardDTO;
+import com.example.bankcards.dto.CardSearchFilter;
 import com.example.bankcards.dto.CardType;
+import com.example.bankcards.dto.CursorPageDTO;
+import com.example.bankcards.dto.SliceDTO;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.CardStatus;
-import com.example.bankcards.entity.CardUser;
 import com.example.bankcards.exception.BalanceException;
 import com.example.bankcards.exception.CardPropertyNotAccessibleException;
+import com.example.bankcards.exception.IdempotencyKeyException;
 import com.example.bankcards.exception.InvalidCardException;
+import com.example.bankcards.exception.InvalidCursorException;
+import com.example.bankcards.exception.InvalidSortException;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardSortKey;
+import com.example.bankcards.repository.MoneyOperationResult;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.util.CardNumberGenerator;
+import com.example.bankcards.util.CardNumberHasher;
+import com.example.bankcards.util.CursorCodec;
+import com.example.bankcards.util.IdempotencyCache;
+import com.example.bankcards.util.ReadYourWritesTracker;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 
 import java.math.BigDecimal;
+import java.time.YearMonth;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -44,6 +60,21 @@ class CardServiceTest {
     @Mock
     private CardNumberGenerator cardNumberGenerator;
 
+    @Mock
+    private CardCountService cardCountService;
+
+    @Mock
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Mock
+    private IdempotencyCache idempotencyCache;
+
+    @Mock
+    private HotCardCreditService hotCardCreditService;
+
+    @Spy
+    private CardNumberHasher cardNumberHasher = new CardNumberHasher("test-key");
+
     @InjectMocks
     private CardService cardService;
 
@@ -78,16 +109,12 @@ class CardServiceTest {
     @Test
     void getActiveCardsOfUser_WhenUserExists_ShouldReturnActiveCards() {
         // Arrange
-        CardUser user = new CardUser();
-        user.setId(ownerId);
-
         Card activeCard1 = createCard(1L, ownerId, CardStatus.ACTIVE, cardNumber1);
         Card activeCard2 = createCard(2L, ownerId, CardStatus.ACTIVE, cardNumber2);
         List<Card> activeCards = Arrays.asList(activeCard1, activeCard2);
-        Page<Card> activeCardsPage = new PageImpl<>(activeCards, PAGEABLE, activeCards.size());
+        Page<CardDTO> activeCardsPage = new PageImpl<>(masked(activeCards), PAGEABLE, activeCards.size());
 
-        when(userRepository.findById(ownerId)).thenReturn(Optional.of(user));
-        when(cardRepository.findByOwnerIdAndStatus(ownerId, CardStatus.ACTIVE, PAGEABLE))
+        when(cardRepository.search(ownerId, CardSearchFilter.withStatus(CardStatus.ACTIVE), PAGEABLE))
                 .thenReturn(activeCardsPage);
 
         // Act
@@ -100,27 +127,13 @@ class CardServiceTest {
         assertEquals(activeCard2.toDTOEncrypted(), result.getContent().get(1));
     }
 
-    @Test
-    void getActiveCardsOfUser_WhenUserNotExists_ShouldThrowException() {
-        // Arrange
-        when(userRepository.findById(NON_EXISTENT_USER_ID)).thenReturn(Optional.empty());
-
-        // Act & Assert
-        EntityNotFoundException exception = assertThrows(EntityNotFoundException.class,
-                () -> cardService.getActiveCardsOfUser(NON_EXISTENT_USER_ID, PAGEABLE));
-
-        assertEquals("Could not fetch cards of user. User is not in database", exception.getMessage());
-    }
 
     @Test
     void getActiveCardsOfUser_WhenNoActiveCards_ShouldReturnEmptyPage() {
         // Arrange
-        CardUser user = new CardUser();
-        user.setId(ownerId);
-        Page<Card> emptyPage = new PageImpl<>(List.of(), PAGEABLE, 0);
+        Page<CardDTO> emptyPage = new PageImpl<>(List.of(), PAGEABLE, 0);
 
-        when(userRepository.findById(ownerId)).thenReturn(Optional.of(user));
-        when(cardRepository.findByOwnerIdAndStatus(ownerId, CardStatus.ACTIVE, PAGEABLE))
+        when(cardRepository.search(ownerId, CardSearchFilter.withStatus(CardStatus.ACTIVE), PAGEABLE))
                 .thenReturn(emptyPage);
 
         // Act
@@ -130,21 +143,18 @@ class CardServiceTest {
         assertNotNull(result);
         assertTrue(result.getContent().isEmpty());
         assertEquals(0, result.getTotalElements());
+        verifyNoInteractions(userRepository);
     }
 
     @Test
     void getBlockedCardsOfUser_WhenUserExists_ShouldReturnBlockedCards() {
         // Arrange
-        CardUser user = new CardUser();
-        user.setId(ownerId);
-
         Card blockedCard1 = createCard(1L, ownerId, CardStatus.BLOCKED, cardNumber1);
         Card blockedCard2 = createCard(2L, ownerId, CardStatus.BLOCKED, cardNumber2);
         List<Card> blockedCards = Arrays.asList(blockedCard1, blockedCard2);
-        Page<Card> blockedCardsPage = new PageImpl<>(blockedCards, PAGEABLE, blockedCards.size());
+        Page<CardDTO> blockedCardsPage = new PageImpl<>(masked(blockedCards), PAGEABLE, blockedCards.size());
 
-        when(userRepository.findById(ownerId)).thenReturn(Optional.of(user));
-        when(cardRepository.findByOwnerIdAndStatus(ownerId, CardStatus.BLOCKED, PAGEABLE))
+        when(cardRepository.search(ownerId, CardSearchFilter.withStatus(CardStatus.BLOCKED), PAGEABLE))
                 .thenReturn(blockedCardsPage);
 
         // Act
@@ -158,30 +168,28 @@ class CardServiceTest {
     }
 
     @Test
-    void getBlockedCardsOfUser_WhenUserNotExists_ShouldThrowException() {
+    void getBlockedCardsOfUser_WhenPageEmpty_ShouldNotCheckUserExistence() {
         // Arrange
-        when(userRepository.findById(NON_EXISTENT_USER_ID)).thenReturn(Optional.empty());
+        when(cardRepository.search(eq(ownerId), any(CardSearchFilter.class), eq(PAGEABLE)))
+                .thenReturn(Page.empty(PAGEABLE));
 
-        // Act & Assert
-        EntityNotFoundException exception = assertThrows(EntityNotFoundException.class,
-                () -> cardService.getBlockedCardsOfUser(NON_EXISTENT_USER_ID, PAGEABLE));
+        // Act
+        Page<CardDTO> result = cardService.getBlockedCardsOfUser(ownerId, PAGEABLE);
 
-        assertEquals("Could not fetch cards of user. User is not in database", exception.getMessage());
+        // Assert
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(userRepository);
     }
 
     @Test
     void getExpiredCardsOfUser_WhenUserExists_ShouldReturnExpiredCards() {
         // Arrange
-        CardUser user = new CardUser();
-        user.setId(ownerId);
-
         Card expiredCard1 = createCard(1L, ownerId, CardStatus.EXPIRED, cardNumber1);
         Card expiredCard2 = createCard(2L, ownerId, CardStatus.EXPIRED, cardNumber2);
         List<Card> expiredCards = Arrays.asList(expiredCard1, expiredCard2);
-        Page<Card> expiredCardsPage = new PageImpl<>(expiredCards, PAGEABLE, expiredCards.size());
+        Page<CardDTO> expiredCardsPage = new PageImpl<>(masked(expiredCards), PAGEABLE, expiredCards.size());
 
-        when(userRepository.findById(ownerId)).thenReturn(Optional.of(user));
-        when(cardRepository.findByOwnerIdAndStatus(ownerId, CardStatus.EXPIRED, PAGEABLE))
+        when(cardRepository.search(ownerId, CardSearchFilter.withStatus(CardStatus.EXPIRED), PAGEABLE))
                 .thenReturn(expiredCardsPage);
 
         // Act
@@ -195,46 +203,43 @@ class CardServiceTest {
     }
 
     @Test
-    void getExpiredCardsOfUser_WhenUserNotExists_ShouldThrowException() {
+    void getExpiredCardsOfUser_WhenPageEmpty_ShouldNotCheckUserExistence() {
         // Arrange
-        when(userRepository.findById(NON_EXISTENT_USER_ID)).thenReturn(Optional.empty());
+        when(cardRepository.search(eq(ownerId), any(CardSearchFilter.class), eq(PAGEABLE)))
+                .thenReturn(Page.empty(PAGEABLE));
 
-        // Act & Assert
-        EntityNotFoundException exception = assertThrows(EntityNotFoundException.class,
-                () -> cardService.getExpiredCardsOfUser(NON_EXISTENT_USER_ID, PAGEABLE));
+        // Act
+        Page<CardDTO> result = cardService.getExpiredCardsOfUser(ownerId, PAGEABLE);
 
-        assertEquals("Could not fetch cards of user. User is not in database", exception.getMessage());
+        // Assert
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(userRepository);
     }
 
     @Test
     void getAllMethods_ShouldUseCorrectCardStatus() {
         // Arrange
-        CardUser user = new CardUser();
-        user.setId(ownerId);
-
         Card activeCard = createCard(1L, ownerId, CardStatus.ACTIVE, cardNumber1);
         Card blockedCard = createCard(2L, ownerId, CardStatus.BLOCKED, cardNumber2);
         Card expiredCard = createCard(3L, ownerId, CardStatus.EXPIRED, cardNumber3);
 
-        when(userRepository.findById(ownerId)).thenReturn(Optional.of(user));
-
         // Test active cards
-        when(cardRepository.findByOwnerIdAndStatus(ownerId, CardStatus.ACTIVE, PAGEABLE))
-                .thenReturn(new PageImpl<>(List.of(activeCard)));
+        when(cardRepository.search(ownerId, CardSearchFilter.withStatus(CardStatus.ACTIVE), PAGEABLE))
+                .thenReturn(new PageImpl<>(masked(List.of(activeCard))));
         Page<CardDTO> activeResult = cardService.getActiveCardsOfUser(ownerId, PAGEABLE);
         assertEquals(1, activeResult.getContent().size());
         assertEquals(activeCard.toDTOEncrypted(), activeResult.getContent().get(0));
 
         // Test blocked cards
-        when(cardRepository.findByOwnerIdAndStatus(ownerId, CardStatus.BLOCKED, PAGEABLE))
-                .thenReturn(new PageImpl<>(List.of(blockedCard)));
+        when(cardRepository.search(ownerId, CardSearchFilter.withStatus(CardStatus.BLOCKED), PAGEABLE))
+                .thenReturn(new PageImpl<>(masked(List.of(blockedCard))));
         Page<CardDTO> blockedResult = cardService.getBlockedCardsOfUser(ownerId, PAGEABLE);
         assertEquals(1, blockedResult.getContent().size());
         assertEquals(blockedCard.toDTOEncrypted(), blockedResult.getContent().get(0));
 
         // Test expired cards
-        when(cardRepository.findByOwnerIdAndStatus(ownerId, CardStatus.EXPIRED, PAGEABLE))
-                .thenReturn(new PageImpl<>(List.of(expiredCard)));
+        when(cardRepository.search(ownerId, CardSearchFilter.withStatus(CardStatus.EXPIRED), PAGEABLE))
+                .thenReturn(new PageImpl<>(masked(List.of(expiredCard))));
         Page<CardDTO> expiredResult = cardService.getExpiredCardsOfUser(ownerId, PAGEABLE);
         assertEquals(1, expiredResult.getContent().size());
         assertEquals(expiredCard.toDTOEncrypted(), expiredResult.getContent().get(0));
@@ -243,15 +248,12 @@ class CardServiceTest {
     @Test
     void getActiveCardsOfUser_WithPagination_ShouldPassCorrectPageable() {
         // Arrange
-        CardUser user = new CardUser();
-        user.setId(ownerId);
         Pageable customPageable = PageRequest.of(2, 5); // page 2, size 5
 
         Card activeCard = createCard(1L, ownerId, CardStatus.ACTIVE, cardNumber1);
-        Page<Card> singleCardPage = new PageImpl<>(List.of(activeCard), customPageable, 1);
+        Page<CardDTO> singleCardPage = new PageImpl<>(masked(List.of(activeCard)), customPageable, 1);
 
-        when(userRepository.findById(ownerId)).thenReturn(Optional.of(user));
-        when(cardRepository.findByOwnerIdAndStatus(ownerId, CardStatus.ACTIVE, customPageable))
+        when(cardRepository.search(ownerId, CardSearchFilter.withStatus(CardStatus.ACTIVE), customPageable))
                 .thenReturn(singleCardPage);
 
         // Act
@@ -264,6 +266,12 @@ class CardServiceTest {
         assertEquals(5, result.getPageable().getPageSize());
     }
 
+    private List<CardDTO> masked(List<Card> cards) {
+        return cards.stream()
+                .map(Card::toDTOEncrypted)
+                .toList();
+    }
+
     private Card createCard(Long cardId, String ownerId, CardStatus status, String cardNumber1) {
         Card card = new Card();
         card.setId(cardId);
@@ -279,8 +287,8 @@ class CardServiceTest {
         // Arrange
         Pageable pageable = Pageable.unpaged();
         List<Card> cards = Arrays.asList(activeCard, blockedCard);
-        Page<Card> cardPage = new PageImpl<>(cards);
-        when(cardRepository.findAll(pageable)).thenReturn(cardPage);
+        Page<CardDTO> cardPage = new PageImpl<>(masked(cards));
+        when(cardRepository.findAllMasked(pageable)).thenReturn(cardPage);
 
         // Act
         Page<CardDTO> result = cardService.getAll(pageable);
@@ -288,7 +296,92 @@ class CardServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(2, result.getTotalElements());
-        verify(cardRepository).findAll(pageable);
+        verify(cardRepository).findAllMasked(pageable);
+    }
+
+    @Test
+    void getAllSlice_ShouldUseEstimatedTotalInsteadOfCount() {
+        // Arrange
+        Slice<CardDTO> slice = new SliceImpl<>(masked(List.of(activeCard)), PAGEABLE, true);
+        when(cardRepository.findSliceMasked(PAGEABLE)).thenReturn(slice);
+        when(cardCountService.estimateAll()).thenReturn(1000L);
+
+        // Act
+        SliceDTO<CardDTO> result = cardService.getAllSlice(PAGEABLE);
+
+        // Assert
+        assertEquals(1, result.content().size());
+        assertTrue(result.hasNext());
+        assertEquals(1000L, result.approximateTotal());
+        verify(cardRepository, never()).findAllMasked(any(Pageable.class));
+    }
+
+    @Test
+    void getCardsOfUserSlice_WithStatus_ShouldUseOwnerCounter() {
+        // Arrange
+        Slice<CardDTO> slice = new SliceImpl<>(masked(List.of(blockedCard)), PAGEABLE, false);
+        when(cardRepository.findSliceMaskedByOwnerIdAndStatus(ownerId, CardStatus.BLOCKED, PAGEABLE)).thenReturn(slice);
+        when(cardCountService.countOfOwner(ownerId, CardStatus.BLOCKED)).thenReturn(1L);
+
+        // Act
+        SliceDTO<CardDTO> result = cardService.getCardsOfUserSlice(ownerId, CardStatus.BLOCKED, PAGEABLE);
+
+        // Assert
+        assertFalse(result.hasNext());
+        assertEquals(1L, result.approximateTotal());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void scrollCards_WhenMoreRowsThanSize_ShouldReturnNextCursor() {
+        // Arrange
+        List<CardDTO> rows = masked(List.of(
+                createCard(1L, ownerId, CardStatus.ACTIVE, cardNumber1),
+                createCard(2L, ownerId, CardStatus.ACTIVE, cardNumber2),
+                createCard(3L, ownerId, CardStatus.ACTIVE, cardNumber3)));
+        when(cardRepository.findMaskedAfter(ownerId, CardStatus.ACTIVE, CardSortKey.ID, false, null, null, 3))
+                .thenReturn(rows);
+
+        // Act
+        CursorPageDTO<CardDTO> result = cardService.scrollCards(ownerId, CardStatus.ACTIVE, "id", "asc", null, 2);
+
+        // Assert
+        assertEquals(2, result.content().size());
+        assertEquals(CursorCodec.encode("id", false, 2L, 2L), result.next());
+    }
+
+    @Test
+    void scrollCards_WithCursor_ShouldSeekAfterLastRow() {
+        // Arrange
+        String cursor = CursorCodec.encode("balance", true, new BigDecimal("100.5"), 7L);
+        when(cardRepository.findMaskedAfter(null, null, CardSortKey.BALANCE, true, new BigDecimal("100.5"), 7L, 11))
+                .thenReturn(List.of());
+
+        // Act
+        CursorPageDTO<CardDTO> result = cardService.scrollCards(null, null, "balance", "desc", cursor, 10);
+
+        // Assert
+        assertTrue(result.content().isEmpty());
+        assertNull(result.next());
+        verify(cardRepository, never()).findAllMasked(any(Pageable.class));
+    }
+
+    @Test
+    void scrollCards_CursorForOtherSorting_ShouldThrowException() {
+        // Arrange
+        String cursor = CursorCodec.encode("id", false, 5L, 5L);
+
+        // Act & Assert
+        assertThrows(InvalidCursorException.class,
+                () -> cardService.scrollCards(ownerId, null, "balance", "asc", cursor, 10));
+        verifyNoInteractions(cardRepository);
+    }
+
+    @Test
+    void scrollCards_UnsupportedSortKey_ShouldThrowException() {
+        // Act & Assert
+        assertThrows(InvalidSortException.class,
+                () -> cardService.scrollCards(ownerId, null, "cardNumber", "asc", null, 10));
     }
 
     @Test
@@ -317,24 +410,40 @@ class CardServiceTest {
     @Test
     void getByNumber_WhenCardExists_ShouldReturnCardDTO() {
         // Arrange
-        when(cardRepository.findByCardNumber(cardNumber1)).thenReturn(Optional.of(activeCard));
+        String hash = cardNumberHasher.hash(cardNumber1);
+        when(cardRepository.findDTOByCardNumberHash(hash)).thenReturn(Optional.of(activeCard.toDTO()));
 
         // Act
         CardDTO result = cardService.getByNumber(cardNumber1);
 
         // Assert
         assertNotNull(result);
-        verify(cardRepository).findByCardNumber(cardNumber1);
+        verify(cardRepository).findDTOByCardNumberHash(hash);
+    }
+
+    @Test
+    void getByNumber_WithSpaces_ShouldLookUpSameHash() {
+        // Arrange
+        String hash = cardNumberHasher.hash(cardNumber1);
+        when(cardRepository.findDTOByCardNumberHash(hash)).thenReturn(Optional.of(activeCard.toDTO()));
+
+        // Act
+        CardDTO result = cardService.getByNumber("1234 5678 9012 3456");
+
+        // Assert
+        assertNotNull(result);
+        verify(cardRepository).findDTOByCardNumberHash(hash);
     }
 
     @Test
     void getByNumber_WhenCardNotExists_ShouldThrowException() {
         // Arrange
-        when(cardRepository.findByCardNumber(cardNumber1)).thenReturn(Optional.empty());
+        String hash = cardNumberHasher.hash(cardNumber1);
+        when(cardRepository.findDTOByCardNumberHash(hash)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(EntityNotFoundException.class, () -> cardService.getByNumber(cardNumber1));
-        verify(cardRepository).findByCardNumber(cardNumber1);
+        verify(cardRepository).findDTOByCardNumberHash(hash);
     }
 
     @Test
@@ -342,10 +451,9 @@ class CardServiceTest {
         // Arrange
         Pageable pageable = Pageable.unpaged();
         List<Card> cards = Arrays.asList(activeCard);
-        Page<Card> cardPage = new PageImpl<>(cards);
+        Page<CardDTO> cardPage = new PageImpl<>(masked(cards));
 
-        when(userRepository.findById(ownerId)).thenReturn(Optional.of(mock(com.example.bankcards.entity.CardUser.class)));
-        when(cardRepository.findByOwnerId(ownerId, pageable)).thenReturn(cardPage);
+        when(cardRepository.search(ownerId, CardSearchFilter.all(), pageable)).thenReturn(cardPage);
 
         // Act
         Page<CardDTO> result = cardService.getCardsOfUser(ownerId, pageable);
@@ -353,20 +461,58 @@ class CardServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(1, result.getTotalElements());
-        verify(userRepository).findById(ownerId);
-        verify(cardRepository).findByOwnerId(ownerId, pageable);
+        verify(cardRepository).search(ownerId, CardSearchFilter.all(), pageable);
+        verifyNoInteractions(userRepository);
     }
 
     @Test
-    void getCardsOfUser_WhenUserNotExists_ShouldThrowException() {
+    void getCardsOfOwner_WhenUserNotExists_ShouldThrowException() {
         // Arrange
         Pageable pageable = Pageable.unpaged();
-        when(userRepository.findById(ownerId)).thenReturn(Optional.empty());
+        when(cardRepository.search(NON_EXISTENT_USER_ID, CardSearchFilter.all(), pageable)).thenReturn(Page.empty());
+        when(userRepository.existsById(NON_EXISTENT_USER_ID)).thenReturn(false);
 
         // Act & Assert
-        assertThrows(EntityNotFoundException.class, () -> cardService.getCardsOfUser(ownerId, pageable));
-        verify(userRepository).findById(ownerId);
-        verify(cardRepository, never()).findByOwnerId(anyString(), any(Pageable.class));
+        EntityNotFoundException exception = assertThrows(EntityNotFoundException.class,
+                () -> cardService.getCardsOfOwner(NON_EXISTENT_USER_ID, pageable));
+
+        assertEquals("Could not fetch cards of user. User is not in database", exception.getMessage());
+        verify(userRepository).existsById(NON_EXISTENT_USER_ID);
+    }
+
+    @Test
+    void getCardsOfOwner_WhenPageNotEmpty_ShouldNotCheckUserExistence() {
+        // Arrange
+        Pageable pageable = Pageable.unpaged();
+        Page<CardDTO> cards = new PageImpl<>(masked(List.of(activeCard)));
+        when(cardRepository.search(ownerId, CardSearchFilter.all(), pageable)).thenReturn(cards);
+
+        // Act
+        Page<CardDTO> result = cardService.getCardsOfOwner(ownerId, pageable);
+
+        // Assert
+        assertEquals(1, result.getTotalElements());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void search_ShouldPassFilterToRepositoryWithoutUserCheck() {
+        // Arrange
+        CardSearchFilter filter = new CardSearchFilter(
+                Set.of(CardStatus.ACTIVE, CardStatus.BLOCKED),
+                YearMonth.of(2030, 1),
+                YearMonth.of(2030, 12),
+                BigDecimal.ZERO,
+                BigDecimal.valueOf(500));
+        Page<CardDTO> cardPage = new PageImpl<>(masked(List.of(activeCard, blockedCard)), PAGEABLE, 2);
+        when(cardRepository.search(ownerId, filter, PAGEABLE)).thenReturn(cardPage);
+
+        // Act
+        Page<CardDTO> result = cardService.search(ownerId, filter, PAGEABLE);
+
+        // Assert
+        assertEquals(2, result.getTotalElements());
+        verifyNoInteractions(userRepository);
     }
 
     @Test
@@ -389,26 +535,27 @@ class CardServiceTest {
     void setCardStatus_WhenCardExists_ShouldUpdateStatus() {
         // Arrange
         CardStatus newStatus = CardStatus.BLOCKED;
+        when(cardRepository.updateStatus(cardId, newStatus)).thenReturn(true);
+        activeCard.setStatus(newStatus);
         when(cardRepository.findById(cardId)).thenReturn(Optional.of(activeCard));
-        // Убрали ненужный стаббинг для cardRepository.save
 
         // Act
         CardDTO result = cardService.setCardStatus(cardId, newStatus);
 
         // Assert
-        assertNotNull(result);
-        assertEquals(CardStatus.BLOCKED, activeCard.getStatus()); // Проверяем, что статус изменился
-        verify(cardRepository).findById(cardId);
+        assertEquals(CardStatus.BLOCKED, result.status());
+        verify(cardRepository).updateStatus(cardId, newStatus);
+        verify(cardRepository, never()).save(any(Card.class));
     }
 
     @Test
     void setCardStatus_WhenCardNotExists_ShouldThrowException() {
         // Arrange
-        when(cardRepository.findById(cardId)).thenReturn(Optional.empty());
+        when(cardRepository.updateStatus(cardId, CardStatus.BLOCKED)).thenReturn(false);
 
         // Act & Assert
         assertThrows(EntityNotFoundException.class, () -> cardService.setCardStatus(cardId, CardStatus.BLOCKED));
-        verify(cardRepository).findById(cardId);
+        verify(cardRepository, never()).findById(anyLong());
     }
 
     @Test
@@ -475,145 +622,149 @@ class CardServiceTest {
     void getBalance_WhenCardBelongsToUser_ShouldReturnBalance() {
         // Arrange
         BigDecimal expectedBalance = BigDecimal.valueOf(1000);
-        when(cardRepository.findByIdAndOwnerId(cardId, ownerId)).thenReturn(Optional.of(activeCard));
+        when(cardRepository.findBalance(cardId, ownerId)).thenReturn(Optional.of(activeCard.getBalance()));
 
         // Act
         BigDecimal result = cardService.getBalance(cardId, ownerId);
 
         // Assert
         assertEquals(expectedBalance, result);
-        verify(cardRepository).findByIdAndOwnerId(cardId, ownerId);
+        verify(cardRepository).findBalance(cardId, ownerId);
     }
 
     @Test
     void getBalance_WhenCardNotBelongsToUser_ShouldThrowException() {
         // Arrange
-        when(cardRepository.findByIdAndOwnerId(cardId, ownerId)).thenReturn(Optional.empty());
+        when(cardRepository.findBalance(cardId, ownerId)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(CardPropertyNotAccessibleException.class, () -> cardService.getBalance(cardId, ownerId));
-        verify(cardRepository).findByIdAndOwnerId(cardId, ownerId);
+        verify(cardRepository).findBalance(cardId, ownerId);
     }
 
     @Test
-    void deposit_WhenCardIsActive_ShouldDepositFunds() {
+    void getBalanceETag_WhenCardBelongsToUser_ShouldCombineIdAndVersion() {
         // Arrange
-        BigDecimal amount = BigDecimal.valueOf(500);
-        when(cardRepository.findById(cardId)).thenReturn(Optional.of(activeCard));
-        when(cardRepository.deposit(cardId, amount)).thenReturn(1);
+        when(cardRepository.findVersion(cardId, ownerId)).thenReturn(Optional.of(3L));
 
         // Act
-        cardService.deposit(cardId, amount);
+        String result = cardService.getBalanceETag(cardId, ownerId);
 
         // Assert
-        verify(cardRepository).findById(cardId);
-        verify(cardRepository).deposit(cardId, amount);
+        assertEquals(cardId + "-3", result);
     }
 
     @Test
-    void deposit_WhenCardIsInvalid_ShouldThrowException() {
+    void getBalanceETag_WhenCardNotBelongsToUser_ShouldReturnNull() {
         // Arrange
-        BigDecimal amount = BigDecimal.valueOf(500);
-        when(cardRepository.findById(cardId)).thenReturn(Optional.of(blockedCard));
+        when(cardRepository.findVersion(cardId, ownerId)).thenReturn(Optional.empty());
 
-        // Act & Assert
-        assertThrows(InvalidCardException.class, () -> cardService.deposit(cardId, amount));
-        verify(cardRepository).findById(cardId);
-        verify(cardRepository, never()).deposit(anyLong(), any(BigDecimal.class));
+        // Act
+        String result = cardService.getBalanceETag(cardId, ownerId);
+
+        // Assert
+        assertNull(result);
     }
 
     @Test
-    void deposit_WhenCardNotExists_ShouldThrowException() {
+    void getCardsETag_ShouldReturnOwnerVersion() {
         // Arrange
-        BigDecimal amount = BigDecimal.valueOf(500);
-        when(cardRepository.findById(cardId)).thenReturn(Optional.empty());
+        when(cardRepository.findOwnerVersion(ownerId)).thenReturn("2-3-5");
+
+        // Act
+        String result = cardService.getCardsETag(ownerId);
+
+        // Assert
+        assertEquals("2-3-5", result);
+        verify(cardRepository).findOwnerVersion(ownerId);
+    }
+
+    @Test
+    void deposit_WhenSucceeds_ShouldRecordWrite() {
+        // Arrange
+        BigDecimal amount = new BigDecimal("500.0000");
+        when(cardRepository.deposit(cardId, ownerId, amount, null)).thenReturn(MoneyOperationResult.SUCCESS);
+
+        // Act
+        cardService.deposit(cardId, ownerId, amount, null);
+
+        // Assert
+        verify(cardRepository).deposit(cardId, ownerId, amount, null);
+        verify(cardRepository, never()).findById(anyLong());
+        verify(readYourWritesTracker).recordWrite();
+    }
+
+    @Test
+    void deposit_WhenCardIsBlocked_ShouldThrowInvalidCardException() {
+        // Arrange
+        BigDecimal amount = new BigDecimal("500.0000");
+        when(cardRepository.deposit(cardId, ownerId, amount, null)).thenReturn(MoneyOperationResult.CARD_INACTIVE);
 
         // Act & Assert
-        assertThrows(EntityNotFoundException.class, () -> cardService.deposit(cardId, amount));
-        verify(cardRepository).findById(cardId);
-        verify(cardRepository, never()).deposit(anyLong(), any(BigDecimal.class));
+        assertThrows(InvalidCardException.class, () -> cardService.deposit(cardId, ownerId, amount, null));
+        verify(readYourWritesTracker, never()).recordWrite();
     }
 
     @Test
-    void deposit_WhenRepositoryReturnsZero_ShouldThrowException() {
+    void deposit_WhenCardNotExists_ShouldThrowEntityNotFoundException() {
         // Arrange
-        BigDecimal amount = BigDecimal.valueOf(500);
-        when(cardRepository.findById(cardId)).thenReturn(Optional.of(activeCard));
-        when(cardRepository.deposit(cardId, amount)).thenReturn(0);
+        BigDecimal amount = new BigDecimal("500.0000");
+        when(cardRepository.deposit(cardId, ownerId, amount, null)).thenReturn(MoneyOperationResult.CARD_NOT_FOUND);
 
         // Act & Assert
-        assertThrows(CardPropertyNotAccessibleException.class, () -> cardService.deposit(cardId, amount));
-        verify(cardRepository).findById(cardId);
-        verify(cardRepository).deposit(cardId, amount);
+        assertThrows(EntityNotFoundException.class, () -> cardService.deposit(cardId, ownerId, amount, null));
     }
 
     @Test
-    void withdraw_WhenCardIsActiveAndHasSufficientBalance_ShouldWithdrawFunds() {
+    void withdraw_WhenSucceeds_ShouldRecordWrite() {
         // Arrange
-        BigDecimal amount = BigDecimal.valueOf(500);
-        when(cardRepository.findById(cardId)).thenReturn(Optional.of(activeCard));
-        when(cardRepository.withdraw(cardId, amount)).thenReturn(1);
+        BigDecimal amount = new BigDecimal("500.0000");
+        when(cardRepository.withdraw(cardId, ownerId, amount, null)).thenReturn(MoneyOperationResult.SUCCESS);
 
         // Act
-        cardService.withdraw(cardId, amount);
+        cardService.withdraw(cardId, ownerId, amount, null);
 
         // Assert
-        verify(cardRepository).findById(cardId);
-        verify(cardRepository).withdraw(cardId, amount);
+        verify(cardRepository).withdraw(cardId, ownerId, amount, null);
+        verify(readYourWritesTracker).recordWrite();
     }
 
     @Test
-    void withdraw_WhenCardIsInvalid_ShouldThrowException() {
+    void withdraw_WhenCardBelongsToOtherUser_ShouldThrowCardPropertyNotAccessibleException() {
         // Arrange
-        BigDecimal amount = BigDecimal.valueOf(500);
-        when(cardRepository.findById(cardId)).thenReturn(Optional.of(blockedCard));
+        BigDecimal amount = new BigDecimal("500.0000");
+        when(cardRepository.withdraw(cardId, ownerId, amount, null)).thenReturn(MoneyOperationResult.NOT_OWNER);
 
         // Act & Assert
-        assertThrows(InvalidCardException.class, () -> cardService.withdraw(cardId, amount));
-        verify(cardRepository).findById(cardId);
-        verify(cardRepository, never()).withdraw(anyLong(), any(BigDecimal.class));
+        assertThrows(CardPropertyNotAccessibleException.class, () -> cardService.withdraw(cardId, ownerId, amount, null));
+        verify(readYourWritesTracker, never()).recordWrite();
     }
 
     @Test
-    void withdraw_WhenRepositoryReturnsZero_ShouldThrowException() {
+    void withdraw_WhenInsufficientBalance_ShouldThrowBalanceException() {
         // Arrange
-        BigDecimal amount = BigDecimal.valueOf(500);
-        when(cardRepository.findById(cardId)).thenReturn(Optional.of(activeCard));
-        when(cardRepository.withdraw(cardId, amount)).thenReturn(0);
+        BigDecimal amount = new BigDecimal("2000.0000");
+        when(cardRepository.withdraw(cardId, ownerId, amount, null)).thenReturn(MoneyOperationResult.INSUFFICIENT_FUNDS);
 
         // Act & Assert
-        assertThrows(BalanceException.class, () -> cardService.withdraw(cardId, amount));
-        verify(cardRepository).findById(cardId);
-        verify(cardRepository).withdraw(cardId, amount);
+        assertThrows(BalanceException.class, () -> cardService.withdraw(cardId, ownerId, amount, null));
     }
 
     @Test
-    void transfer_WhenBothCardsActiveAndSufficientBalance_ShouldTransferFunds() {
+    void transfer_WhenSucceeds_ShouldUseSingleCall() {
         // Arrange
         Long fromId = 1L;
         Long toId = 2L;
-        BigDecimal amount = BigDecimal.valueOf(500);
-
-        // Используем разные ID для from и to карт
-        Card fromCard = new Card("1111", ownerId);
-        fromCard.setId(fromId);
-        fromCard.setStatus(CardStatus.ACTIVE);
-
-        Card toCard = new Card("2222", ownerId);
-        toCard.setId(toId);
-        toCard.setStatus(CardStatus.ACTIVE);
-
-        when(cardRepository.findById(fromId)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(toId)).thenReturn(Optional.of(toCard));
-        when(cardRepository.transfer(fromId, toId, amount)).thenReturn(true);
+        BigDecimal amount = new BigDecimal("500.0000");
+        when(cardRepository.transfer(fromId, toId, ownerId, amount, null)).thenReturn(MoneyOperationResult.SUCCESS);
 
         // Act
-        cardService.transfer(fromId, toId, amount);
+        cardService.transfer(fromId, toId, ownerId, amount, null);
 
         // Assert
-        verify(cardRepository).findById(fromId);
-        verify(cardRepository).findById(toId);
-        verify(cardRepository).transfer(fromId, toId, amount);
+        verify(cardRepository).transfer(fromId, toId, ownerId, amount, null);
+        verifyNoMoreInteractions(cardRepository);
+        verify(readYourWritesTracker).recordWrite();
     }
 
     @Test
@@ -621,133 +772,221 @@ class CardServiceTest {
         // Arrange
         Long fromId = 1L;
         Long toId = 2L;
-        BigDecimal amount = BigDecimal.valueOf(500);
-
-        Card blockedFromCard = new Card("1111", ownerId);
-        blockedFromCard.setId(fromId);
-        blockedFromCard.setStatus(CardStatus.BLOCKED);
-
-        when(cardRepository.findById(fromId)).thenReturn(Optional.of(blockedFromCard));
-        // Не нужно заглушать findById(toId) - исключение выбросится при первой же проверке
+        BigDecimal amount = new BigDecimal("500.0000");
+        when(cardRepository.transfer(fromId, toId, ownerId, amount, null)).thenReturn(MoneyOperationResult.CARD_INACTIVE);
 
         // Act & Assert
         InvalidCardException exception = assertThrows(InvalidCardException.class,
-                () -> cardService.transfer(fromId, toId, amount));
+                () -> cardService.transfer(fromId, toId, ownerId, amount, null));
 
-        assertTrue(exception.getMessage().contains("is blocked or expired"));
-        verify(cardRepository, never()).transfer(anyLong(), anyLong(), any(BigDecimal.class));
+        assertTrue(exception.getMessage().contains("Card-id:" + fromId + " is blocked or expired"));
     }
 
     @Test
-    void transfer_WhenToCardIsExpired_ShouldThrowInvalidCardException() {
+    void transfer_WhenToCardIsExpired_ShouldNameTargetCard() {
         // Arrange
         Long fromId = 1L;
         Long toId = 2L;
-        BigDecimal amount = BigDecimal.valueOf(500);
-
-        Card activeFromCard = new Card("1111", ownerId);
-        activeFromCard.setId(fromId);
-        activeFromCard.setStatus(CardStatus.ACTIVE);
-
-        Card expiredToCard = new Card("2222", ownerId);
-        expiredToCard.setId(toId);
-        expiredToCard.setStatus(CardStatus.EXPIRED);
-
-        when(cardRepository.findById(fromId)).thenReturn(Optional.of(activeFromCard));
-        when(cardRepository.findById(toId)).thenReturn(Optional.of(expiredToCard));
+        BigDecimal amount = new BigDecimal("500.0000");
+        when(cardRepository.transfer(fromId, toId, ownerId, amount, null)).thenReturn(MoneyOperationResult.TARGET_INACTIVE);
 
         // Act & Assert
         InvalidCardException exception = assertThrows(InvalidCardException.class,
-                () -> cardService.transfer(fromId, toId, amount));
+                () -> cardService.transfer(fromId, toId, ownerId, amount, null));
 
-        assertTrue(exception.getMessage().contains("is blocked or expired"));
-        verify(cardRepository, never()).transfer(anyLong(), anyLong(), any(BigDecimal.class));
+        assertTrue(exception.getMessage().contains("Card-id:" + toId + " is blocked or expired"));
     }
 
     @Test
-    void transfer_WhenBothCardsAreInvalid_ShouldThrowInvalidCardException() {
+    void transfer_WhenToCardNotExists_ShouldThrowEntityNotFoundException() {
         // Arrange
         Long fromId = 1L;
         Long toId = 2L;
-        BigDecimal amount = BigDecimal.valueOf(500);
+        BigDecimal amount = new BigDecimal("500.0000");
+        when(cardRepository.transfer(fromId, toId, ownerId, amount, null)).thenReturn(MoneyOperationResult.TARGET_NOT_FOUND);
 
-        Card blockedFromCard = new Card("1111", ownerId);
-        blockedFromCard.setId(fromId);
-        blockedFromCard.setStatus(CardStatus.BLOCKED);
+        // Act & Assert
+        assertThrows(EntityNotFoundException.class, () -> cardService.transfer(fromId, toId, ownerId, amount, null));
+    }
 
-        // Только одна заглушка - для from карты
-        when(cardRepository.findById(fromId)).thenReturn(Optional.of(blockedFromCard));
+    @Test
+    void transfer_WhenFromCardBelongsToOtherUser_ShouldThrowCardPropertyNotAccessibleException() {
+        // Arrange
+        Long fromId = 1L;
+        Long toId = 2L;
+        BigDecimal amount = new BigDecimal("500.0000");
+        when(cardRepository.transfer(fromId, toId, ownerId, amount, null)).thenReturn(MoneyOperationResult.NOT_OWNER);
 
         // Act & Assert
-        InvalidCardException exception = assertThrows(InvalidCardException.class,
-                () -> cardService.transfer(fromId, toId, amount));
+        assertThrows(CardPropertyNotAccessibleException.class,
+                () -> cardService.transfer(fromId, toId, ownerId, amount, null));
+        verify(readYourWritesTracker, never()).recordWrite();
+    }
+
+    @Test
+    void transfer_WhenInsufficientBalance_ShouldThrowBalanceException() {
+        // Arrange
+        Long fromId = 1L;
+        Long toId = 2L;
+        BigDecimal amount = new BigDecimal("5000.0000");
+        when(cardRepository.transfer(fromId, toId, ownerId, amount, null)).thenReturn(MoneyOperationResult.INSUFFICIENT_FUNDS);
 
-        assertTrue(exception.getMessage().contains("is blocked or expired"));
-        verify(cardRepository, never()).transfer(anyLong(), anyLong(), any(BigDecimal.class));
+        // Act & Assert
+        assertThrows(BalanceException.class, () -> cardService.transfer(fromId, toId, ownerId, amount, null));
     }
 
     @Test
-    void transfer_WhenFromCardDoesNotExist_ShouldThrowEntityNotFoundException() {
+    void transfer_WithNonPositiveAmount_ShouldThrowBalanceException() {
         // Arrange
         Long fromId = 1L;
         Long toId = 2L;
-        BigDecimal amount = BigDecimal.valueOf(500);
+        BigDecimal amount = new BigDecimal("-1000.0000");
+        when(cardRepository.transfer(fromId, toId, ownerId, amount, null)).thenReturn(MoneyOperationResult.INVALID_AMOUNT);
 
-        when(cardRepository.findById(fromId)).thenReturn(Optional.empty());
+        // Act & Assert
+        assertThrows(BalanceException.class, () -> cardService.transfer(fromId, toId, ownerId, amount, null));
+        verify(readYourWritesTracker, never()).recordWrite();
+    }
 
+    @Test
+    void deposit_WithNewIdempotencyKey_ShouldCacheResult() {
+        // Arrange
+        BigDecimal amount = new BigDecimal("500.0000");
+        String key = "key-1";
+        when(cardRepository.deposit(cardId, ownerId, amount, key)).thenReturn(MoneyOperationResult.SUCCESS);
+
+        // Act
+        cardService.deposit(cardId, ownerId, amount, key);
+
+        // Assert
+        verify(idempotencyCache).put(ownerId, key, "deposit:" + cardId + ":500.0000", MoneyOperationResult.SUCCESS);
+    }
+
+    @Test
+    void deposit_WithCachedIdempotencyKey_ShouldNotCallRepository() {
+        // Arrange
+        BigDecimal amount = new BigDecimal("500.00");
+        String key = "key-1";
+        when(idempotencyCache.get(ownerId, key, "deposit:" + cardId + ":500.0000")).thenReturn(MoneyOperationResult.SUCCESS);
+
+        // Act
+        cardService.deposit(cardId, ownerId, amount, key);
+
+        // Assert
+        verify(cardRepository, never()).deposit(anyLong(), anyString(), any(BigDecimal.class), anyString());
+    }
+
+    @Test
+    void deposit_ShouldPassAmountAtBalanceScale() {
+        // Arrange
+        when(cardRepository.deposit(cardId, ownerId, new BigDecimal("1.5000"), null)).thenReturn(MoneyOperationResult.SUCCESS);
+
+        // Act
+        cardService.deposit(cardId, ownerId, new BigDecimal("1.500000"), null);
+
+        // Assert
+        verify(cardRepository).deposit(cardId, ownerId, new BigDecimal("1.5000"), null);
+    }
+
+    @Test
+    void transfer_WithMoreThanFourDecimalPlaces_ShouldThrowBalanceExceptionWithoutCallingRepository() {
         // Act & Assert
-        assertThrows(EntityNotFoundException.class,
-                () -> cardService.transfer(fromId, toId, amount));
+        assertThrows(BalanceException.class,
+                () -> cardService.transfer(1L, 2L, ownerId, new BigDecimal("1.00005"), "key-1"));
+        verifyNoInteractions(cardRepository, idempotencyCache);
+    }
+
+    @Test
+    void withdraw_WithCachedFailedResult_ShouldThrowSameException() {
+        // Arrange
+        BigDecimal amount = new BigDecimal("2000.0000");
+        String key = "key-1";
+        when(idempotencyCache.get(eq(ownerId), eq(key), anyString())).thenReturn(MoneyOperationResult.INSUFFICIENT_FUNDS);
 
-        verify(cardRepository, never()).transfer(anyLong(), anyLong(), any(BigDecimal.class));
+        // Act & Assert
+        assertThrows(BalanceException.class, () -> cardService.withdraw(cardId, ownerId, amount, key));
+        verifyNoInteractions(cardRepository);
     }
 
     @Test
-    void transfer_WhenToCardDoesNotExist_ShouldThrowEntityNotFoundException() {
+    void transfer_WhenIdempotencyKeyReused_ShouldThrowAndNotCacheResult() {
         // Arrange
         Long fromId = 1L;
         Long toId = 2L;
-        BigDecimal amount = BigDecimal.valueOf(500);
+        BigDecimal amount = new BigDecimal("500.0000");
+        String key = "key-1";
+        when(cardRepository.transfer(fromId, toId, ownerId, amount, key))
+                .thenReturn(MoneyOperationResult.IDEMPOTENCY_KEY_REUSED);
 
-        Card activeFromCard = new Card("1111", ownerId);
-        activeFromCard.setId(fromId);
-        activeFromCard.setStatus(CardStatus.ACTIVE);
+        // Act & Assert
+        assertThrows(IdempotencyKeyException.class, () -> cardService.transfer(fromId, toId, ownerId, amount, key));
+        verify(idempotencyCache, never()).put(anyString(), anyString(), anyString(), any());
+    }
 
-        when(cardRepository.findById(fromId)).thenReturn(Optional.of(activeFromCard));
-        when(cardRepository.findById(toId)).thenReturn(Optional.empty());
+    @Test
+    void deposit_ToHotCard_ShouldGoThroughHotCardLane() {
+        // Arrange
+        BigDecimal amount = new BigDecimal("500.0000");
+        when(hotCardCreditService.isHot(cardId)).thenReturn(true);
+        when(hotCardCreditService.deposit(cardId, ownerId, amount, null)).thenReturn(MoneyOperationResult.SUCCESS);
 
-        // Act & Assert
-        assertThrows(EntityNotFoundException.class,
-                () -> cardService.transfer(fromId, toId, amount));
+        // Act
+        cardService.deposit(cardId, ownerId, amount, null);
 
-        verify(cardRepository, never()).transfer(anyLong(), anyLong(), any(BigDecimal.class));
+        // Assert
+        verify(cardRepository, never()).deposit(anyLong(), anyString(), any(BigDecimal.class), any());
+        verify(readYourWritesTracker).recordWrite();
     }
-    //
 
     @Test
-    void transfer_WhenRepositoryReturnsFalse_ShouldThrowException() {
+    void transfer_ToHotCard_ShouldGoThroughHotCardLane() {
         // Arrange
         Long fromId = 1L;
         Long toId = 2L;
-        BigDecimal amount = BigDecimal.valueOf(500);
+        BigDecimal amount = new BigDecimal("500.0000");
+        when(hotCardCreditService.isHot(toId)).thenReturn(true);
+        when(hotCardCreditService.transfer(fromId, toId, ownerId, amount, null)).thenReturn(MoneyOperationResult.SUCCESS);
 
-        Card fromCard = new Card("1111", ownerId);
-        fromCard.setId(fromId);
-        fromCard.setStatus(CardStatus.ACTIVE);
+        // Act
+        cardService.transfer(fromId, toId, ownerId, amount, null);
 
-        Card toCard = new Card("2222", ownerId);
-        toCard.setId(toId);
-        toCard.setStatus(CardStatus.ACTIVE);
+        // Assert
+        verify(cardRepository, never()).transfer(anyLong(), anyLong(), anyString(), any(BigDecimal.class), any());
+        verify(readYourWritesTracker).recordWrite();
+    }
+
+    @Test
+    void deposit_ToHotCardOfOtherUser_ShouldThrowCardPropertyNotAccessibleException() {
+        // Arrange
+        BigDecimal amount = new BigDecimal("500.0000");
+        when(hotCardCreditService.isHot(cardId)).thenReturn(true);
+        when(hotCardCreditService.deposit(cardId, ownerId, amount, null)).thenReturn(MoneyOperationResult.NOT_OWNER);
 
-        when(cardRepository.findById(fromId)).thenReturn(Optional.of(fromCard));
-        when(cardRepository.findById(toId)).thenReturn(Optional.of(toCard));
-        when(cardRepository.transfer(fromId, toId, amount)).thenReturn(false);
+        // Act & Assert
+        assertThrows(CardPropertyNotAccessibleException.class, () -> cardService.deposit(cardId, ownerId, amount, null));
+    }
+
+    @Test
+    void withdraw_WithNegativeAmountAndKey_ShouldNotCacheResult() {
+        // Arrange
+        BigDecimal amount = new BigDecimal("-500.0000");
+        String key = "key-1";
+        when(cardRepository.withdraw(cardId, ownerId, amount, key)).thenReturn(MoneyOperationResult.INVALID_AMOUNT);
+
+        // Act & Assert
+        assertThrows(BalanceException.class, () -> cardService.withdraw(cardId, ownerId, amount, key));
+        verify(idempotencyCache, never()).put(anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void deposit_WithTooLongIdempotencyKey_ShouldThrowException() {
+        // Arrange
+        String key = "k".repeat(256);
 
         // Act & Assert
-        assertThrows(BalanceException.class, () -> cardService.transfer(fromId, toId, amount));
-        verify(cardRepository).findById(fromId);
-        verify(cardRepository).findById(toId);
-        verify(cardRepository).transfer(fromId, toId, amount);
+        assertThrows(IdempotencyKeyException.class,
+                () -> cardService.deposit(cardId, ownerId, BigDecimal.TEN, key));
+        verifyNoInteractions(cardRepository);
     }
 
     @Test
@@ -774,22 +1013,4 @@ class CardServiceTest {
         verify(cardRepository).findById(cardId);
         verify(cardRepository, never()).deleteById(anyLong());
     }
-
-    @Test
-    void invalid_WhenCardIsActive_ShouldReturnFalse() {
-        // Arrange
-        when(cardRepository.findById(cardId)).thenReturn(Optional.of(activeCard));
-
-        // Act & Assert
-        assertFalse(cardService.invalid(cardId));
-    }
-
-    @Test
-    void invalid_WhenCardIsBlocked_ShouldReturnTrue() {
-        // Arrange
-        when(cardRepository.findById(cardId)).thenReturn(Optional.of(blockedCard));
-
-        // Act & Assert
-        assertTrue(cardService.invalid(cardId));
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,181 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.CardStreamProperties;
+import com.example.bankcards.dto.CardBalanceEvent;
+import com.example.bankcards.entity.CardStatus;
+import com.example.bankcards.util.PgNotificationBus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardStreamServiceTest {
+
+    private static final String OWNER_ID = "user123";
+
+    @Mock
+    private PgNotificationBus notificationBus;
+
+    private CardStreamService cardStreamService;
+    private RecordingEmitter emitter;
+
+    @BeforeEach
+    void setUp() {
+        CardStreamProperties properties = new CardStreamProperties();
+        properties.setThreads(1);
+        properties.setMaxPending(2);
+        cardStreamService = new CardStreamService(
+                notificationBus, new ObjectMapper(), properties, new SimpleMeterRegistry());
+        emitter = new RecordingEmitter();
+    }
+
+    @AfterEach
+    void tearDown() {
+        emitter.release();
+        cardStreamService.shutdown();
+    }
+
+    @Test
+    void register_ShouldSendResyncFirst() throws InterruptedException {
+        // Act
+        cardStreamService.register(OWNER_ID, emitter);
+
+        // Assert
+        assertEquals(CardStreamService.RESYNC_EVENT, emitter.nextName());
+    }
+
+    @Test
+    void applyNotification_WhenClientIsSlow_ShouldCoalesceToLatestBalance() throws InterruptedException {
+        // Arrange
+        emitter.blockFirstSend();
+        cardStreamService.register(OWNER_ID, emitter);
+        emitter.awaitBlocked();
+
+        // Act
+        cardStreamService.applyNotification(notification(1L, OWNER_ID, 100));
+        cardStreamService.applyNotification(notification(1L, OWNER_ID, 200));
+        cardStreamService.applyNotification(notification(2L, OWNER_ID, 50));
+        cardStreamService.applyNotification(notification(1L, OWNER_ID, 300));
+        emitter.release();
+
+        // Assert
+        assertEquals(CardStreamService.RESYNC_EVENT, emitter.nextName());
+        assertEquals(new CardBalanceEvent(1L, CardStatus.ACTIVE, BigDecimal.valueOf(300)), emitter.nextData());
+        assertEquals(new CardBalanceEvent(2L, CardStatus.ACTIVE, BigDecimal.valueOf(50)), emitter.nextData());
+        assertNull(emitter.sent.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void applyNotification_WhenPendingOverflows_ShouldCloseStream() throws InterruptedException {
+        // Arrange
+        emitter.blockFirstSend();
+        cardStreamService.register(OWNER_ID, emitter);
+        emitter.awaitBlocked();
+
+        // Act
+        cardStreamService.applyNotification(notification(1L, OWNER_ID, 100));
+        cardStreamService.applyNotification(notification(2L, OWNER_ID, 100));
+        cardStreamService.applyNotification(notification(3L, OWNER_ID, 100));
+        emitter.release();
+
+        // Assert
+        assertTrue(emitter.completed.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void applyNotification_ForOtherOwner_ShouldNotSend() throws InterruptedException {
+        // Arrange
+        cardStreamService.register(OWNER_ID, emitter);
+        assertEquals(CardStreamService.RESYNC_EVENT, emitter.nextName());
+
+        // Act
+        cardStreamService.applyNotification(notification(1L, "otherUser", 100));
+
+        // Assert
+        assertNull(emitter.sent.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private static String notification(Long cardId, String ownerId, int balance) {
+        return String.format("{\"cardId\" : %d, \"ownerId\" : \"%s\", \"status\" : 0, \"balance\" : %d}",
+                cardId, ownerId, balance);
+    }
+
+    // Запоминает отправленные события. Первую отправку можно задержать, имитируя медленного клиента
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final BlockingQueue<List<Object>> sent = new LinkedBlockingQueue<>();
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile boolean blockFirst;
+
+        void blockFirstSend() {
+            blockFirst = true;
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            assertTrue(blocked.await(1, TimeUnit.SECONDS));
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            List<Object> parts = new ArrayList<>();
+            builder.build().forEach(part -> parts.add(part.getData()));
+            if (blockFirst) {
+                blockFirst = false;
+                blocked.countDown();
+                try {
+                    released.await(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            sent.add(parts);
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        String nextName() throws InterruptedException {
+            List<Object> parts = sent.poll(1, TimeUnit.SECONDS);
+            assertNotNull(parts);
+            return parts.get(0).toString().lines()
+                    .filter(line -> line.startsWith("event:"))
+                    .findFirst()
+                    .orElseThrow()
+                    .substring("event:".length());
+        }
+
+        Object nextData() throws InterruptedException {
+            List<Object> parts = sent.poll(1, TimeUnit.SECONDS);
+            assertNotNull(parts);
+            return parts.stream()
+                    .filter(CardBalanceEvent.class::isInstance)
+                    .findFirst()
+                    .orElseThrow();
+        }
+    }
+}
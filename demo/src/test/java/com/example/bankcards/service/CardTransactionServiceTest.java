@@ -0,0 +1,139 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.LedgerProperties;
+import com.example.bankcards.dto.CardTransactionDTO;
+import com.example.bankcards.dto.CursorPageDTO;
+import com.example.bankcards.entity.TransactionKind;
+import com.example.bankcards.exception.CardPropertyNotAccessibleException;
+import com.example.bankcards.exception.InvalidCursorException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardTransactionRepository;
+import com.example.bankcards.util.CursorCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardTransactionServiceTest {
+
+    private static final Long CARD_ID = 1L;
+    private static final String OWNER_ID = "user123";
+    private static final Instant CREATED_AT = Instant.parse("2026-10-17T09:15:30.123456Z");
+
+    @Mock
+    private CardTransactionRepository cardTransactionRepository;
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Spy
+    private LedgerProperties ledgerProperties = new LedgerProperties();
+
+    @InjectMocks
+    private CardTransactionService cardTransactionService;
+
+    @Test
+    void getHistory_WhenMoreRowsThanSize_ShouldReturnCursorOfLastRow() {
+        // Arrange
+        List<CardTransactionDTO> rows = List.of(entry(3L), entry(2L), entry(1L));
+        when(cardTransactionRepository.findHistory(CARD_ID, OWNER_ID, PageRequest.of(0, 3))).thenReturn(rows);
+
+        // Act
+        CursorPageDTO<CardTransactionDTO> result = cardTransactionService.getHistory(CARD_ID, OWNER_ID, null, 2);
+
+        // Assert
+        assertEquals(2, result.content().size());
+        assertEquals(CursorCodec.encode(CardTransactionService.CURSOR_KEY, true, CREATED_AT, 2L), result.next());
+        verify(cardRepository, never()).findVersion(anyLong(), anyString());
+    }
+
+    @Test
+    void getHistory_WithCursor_ShouldContinueAfterLastRow() {
+        // Arrange
+        String cursor = CursorCodec.encode(CardTransactionService.CURSOR_KEY, true, CREATED_AT, 2L);
+        when(cardTransactionRepository.findHistoryAfter(CARD_ID, OWNER_ID, CREATED_AT, 2L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(entry(1L)));
+
+        // Act
+        CursorPageDTO<CardTransactionDTO> result = cardTransactionService.getHistory(CARD_ID, OWNER_ID, cursor, 2);
+
+        // Assert
+        assertEquals(1, result.content().size());
+        assertNull(result.next());
+    }
+
+    @Test
+    void getHistory_WhenEmptyAndCardIsOwned_ShouldReturnEmptyPage() {
+        // Arrange
+        when(cardTransactionRepository.findHistory(eq(CARD_ID), eq(OWNER_ID), any())).thenReturn(List.of());
+        when(cardRepository.findVersion(CARD_ID, OWNER_ID)).thenReturn(Optional.of(0L));
+
+        // Act
+        CursorPageDTO<CardTransactionDTO> result = cardTransactionService.getHistory(CARD_ID, OWNER_ID, null, 20);
+
+        // Assert
+        assertTrue(result.content().isEmpty());
+    }
+
+    @Test
+    void getHistory_WhenCardBelongsToOtherUser_ShouldThrowException() {
+        // Arrange
+        when(cardTransactionRepository.findHistory(eq(CARD_ID), eq(OWNER_ID), any())).thenReturn(List.of());
+        when(cardRepository.findVersion(CARD_ID, OWNER_ID)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(CardPropertyNotAccessibleException.class,
+                () -> cardTransactionService.getHistory(CARD_ID, OWNER_ID, null, 20));
+    }
+
+    @Test
+    void getHistory_WithMalformedCursor_ShouldThrowInvalidCursorException() {
+        // Arrange
+        String cursor = CursorCodec.encode(CardTransactionService.CURSOR_KEY, true, "yesterday", 2L);
+
+        // Act & Assert
+        assertThrows(InvalidCursorException.class,
+                () -> cardTransactionService.getHistory(CARD_ID, OWNER_ID, cursor, 20));
+        verifyNoInteractions(cardTransactionRepository);
+    }
+
+    @Test
+    void maintainPartitions_WhenRetentionDisabled_ShouldNotDetach() {
+        // Act
+        cardTransactionService.maintainPartitions();
+
+        // Assert
+        verify(cardTransactionRepository).createPartitions(ledgerProperties.getMonthsAhead());
+        verify(cardTransactionRepository, never()).detachPartitions(anyInt());
+    }
+
+    @Test
+    void maintainPartitions_WhenRetentionSet_ShouldDetachOldPartitions() {
+        // Arrange
+        ledgerProperties.setRetentionMonths(12);
+
+        // Act
+        cardTransactionService.maintainPartitions();
+
+        // Assert
+        verify(cardTransactionRepository).detachPartitions(12);
+    }
+
+    private static CardTransactionDTO entry(Long id) {
+        return new CardTransactionDTO(
+                id, CARD_ID, TransactionKind.DEPOSIT, BigDecimal.TEN, BigDecimal.TEN, null, CREATED_AT);
+    }
+}
@@ -3,6 +3,8 @@ package com.example.bankcards.service;
 import com.example.bankcards.entity.CardUser;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.EffectiveUserDetails;
+import com.example.bankcards.util.JwtClaimsCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,6 +15,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import jakarta.persistence.EntityNotFoundException;
+import java.time.Instant;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -24,7 +27,11 @@ class JwtServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
     private JwtService jwtService;
+    private JwtClaimsCache claimsCache;
 
     private final String secretKey = "veryLongSecretKeyThatIsAtLeast64BytesLongForHS384Algorithm1234567890";
     private final Integer tokenExpiration = 3600000; // 1 hour
@@ -34,7 +41,8 @@ class JwtServiceTest {
 
     @BeforeEach
     void setUp() {
-        jwtService = new JwtService(userRepository);
+        claimsCache = new JwtClaimsCache(1000);
+        jwtService = new JwtService(userRepository, claimsCache, tokenRevocationService);
         ReflectionTestUtils.setField(jwtService, "secretKey", secretKey);
         ReflectionTestUtils.setField(jwtService, "tokenExpiration", tokenExpiration);
 
@@ -107,44 +115,32 @@ class JwtServiceTest {
     }
 
     @Test
-    void extractId_WithValidToken_ShouldReturnUserId() {
+    void validateToken_WithValidTokenAndUser_ShouldReturnTrue() {
         // Arrange
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
         String token = jwtService.generateToken("testuser");
 
         // Act
-        String userId = jwtService.extractId(token);
+        boolean isValid = jwtService.validateToken(token, userDetails);
 
         // Assert
-        assertEquals("user-123", userId);
-        verify(userRepository, times(2)).findByUsername("testuser");
-    }
-
-    @Test
-    void extractId_WithNonExistentUser_ShouldThrowException() {
-        // Arrange
-        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
-        String token = jwtService.generateToken("testuser");
-
-        when(userRepository.findByUsername("testuser")).thenReturn(Optional.empty());
-
-        // Act & Assert
-        assertThrows(EntityNotFoundException.class, () -> {
-            jwtService.extractId(token);
-        });
+        assertTrue(isValid);
     }
 
     @Test
-    void validateToken_WithValidTokenAndUser_ShouldReturnTrue() {
+    void revokeToken_ShouldRevokeByJtiUntilExpiration() {
         // Arrange
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
         String token = jwtService.generateToken("testuser");
 
         // Act
-        boolean isValid = jwtService.validateToken(token, userDetails);
+        jwtService.revokeToken(token);
 
         // Assert
-        assertTrue(isValid);
+        verify(tokenRevocationService).revokeToken(
+                argThat(jti -> jti != null && !jti.isEmpty()),
+                argThat(expiresAt -> expiresAt.isAfter(Instant.now()))
+        );
     }
 
     @Test
@@ -169,7 +165,7 @@ class JwtServiceTest {
     void validateToken_WithExpiredToken_ShouldReturnFalse() {
         // Arrange
         // Создаем сервис с очень коротким временем жизни токена
-        JwtService shortLivedJwtService = new JwtService(userRepository);
+        JwtService shortLivedJwtService = new JwtService(userRepository, new JwtClaimsCache(1000), tokenRevocationService);
         ReflectionTestUtils.setField(shortLivedJwtService, "secretKey", secretKey);
         ReflectionTestUtils.setField(shortLivedJwtService, "tokenExpiration", 1); // 1 ms
 
@@ -225,7 +221,7 @@ class JwtServiceTest {
         String validToken = jwtService.generateToken("testuser");
 
         // Создаем другой сервис с другим секретным ключом
-        JwtService differentJwtService = new JwtService(userRepository);
+        JwtService differentJwtService = new JwtService(userRepository, new JwtClaimsCache(1000), tokenRevocationService);
         ReflectionTestUtils.setField(differentJwtService, "secretKey", "differentVeryLongSecretKeyThatIsAtLeast64BytesLong1234567890");
         ReflectionTestUtils.setField(differentJwtService, "tokenExpiration", tokenExpiration);
 
@@ -249,4 +245,72 @@ class JwtServiceTest {
         // Можно дополнительно проверить содержимое токена, если нужно
         verify(userRepository, times(1)).findByUsername("testuser");
     }
+
+    @Test
+    void validateToken_CalledRepeatedly_ShouldVerifySignatureOnce() {
+        // Arrange
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        String token = jwtService.generateToken("testuser");
+
+        // Act
+        jwtService.extractSub(token);
+        boolean firstCheck = jwtService.validateToken(token, userDetails);
+        boolean secondCheck = jwtService.validateToken(token, userDetails);
+
+        // Assert
+        assertTrue(firstCheck);
+        assertTrue(secondCheck);
+        assertEquals(1, claimsCache.stats().missCount());
+        assertEquals(4, claimsCache.stats().hitCount());
+    }
+
+    @Test
+    void extractSub_WithInvalidToken_ShouldNotBeCached() {
+        // Act
+        jwtService.extractSub("invalid.token.here");
+        jwtService.extractSub("invalid.token.here");
+
+        // Assert
+        assertEquals(0, claimsCache.stats().hitCount());
+        assertEquals(2, claimsCache.stats().missCount());
+    }
+
+    @Test
+    void extractPrincipal_WithTokenForLoadedUser_ShouldNotQueryDatabase() {
+        // Arrange
+        String token = jwtService.generateToken(testUser);
+
+        // Act
+        EffectiveUserDetails principal = jwtService.extractPrincipal(token);
+
+        // Assert
+        assertNotNull(principal);
+        assertEquals("user-123", principal.getId());
+        assertEquals("testuser", principal.getUsername());
+        assertEquals(Set.of(Role.USER, Role.ADMIN), principal.getCardUser().getRoles());
+        assertTrue(jwtService.validateToken(token, principal));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void extractPrincipal_WithInvalidToken_ShouldReturnNull() {
+        // Act
+        EffectiveUserDetails principal = jwtService.extractPrincipal("invalid.token.here");
+
+        // Assert
+        assertNull(principal);
+    }
+
+    @Test
+    void validateToken_WithRevokedToken_ShouldReturnFalse() {
+        // Arrange
+        String token = jwtService.generateToken(testUser);
+        when(tokenRevocationService.isRevoked(any())).thenReturn(true);
+
+        // Act
+        boolean isValid = jwtService.validateToken(token, userDetails);
+
+        // Assert
+        assertFalse(isValid);
+    }
 }
@@ -0,0 +1,118 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TokenPairDTO;
+import com.example.bankcards.entity.CardUser;
+import com.example.bankcards.entity.RefreshToken;
+import com.example.bankcards.entity.Role;
+import com.example.bankcards.exception.UnauthorizedException;
+import com.example.bankcards.repository.RefreshTokenRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private JwtService jwtService;
+
+    @InjectMocks
+    private RefreshTokenService refreshTokenService;
+
+    private CardUser testUser;
+    private final String userId = "user123";
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(refreshTokenService, "refreshTokenExpiration", 3600000L);
+
+        testUser = new CardUser();
+        testUser.setId(userId);
+        testUser.setUsername("testuser");
+        testUser.setRoles(Set.of(Role.USER));
+    }
+
+    @Test
+    void issue_ShouldStoreOnlyHashOfToken() {
+        // Act
+        String token = refreshTokenService.issue(userId);
+
+        // Assert
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(captor.capture());
+        RefreshToken stored = captor.getValue();
+        assertNotEquals(token, stored.getTokenHash());
+        assertEquals(RefreshTokenService.hash(token), stored.getTokenHash());
+        assertEquals(userId, stored.getUserId());
+        assertTrue(stored.getExpiresAt().isAfter(Instant.now()));
+    }
+
+    @Test
+    void refresh_WithValidToken_ShouldRotateTokenAndIssueAccessToken() {
+        // Arrange
+        String oldToken = "old-refresh-token";
+        RefreshToken stored = new RefreshToken(
+                RefreshTokenService.hash(oldToken), userId, Instant.now().plusSeconds(60));
+        when(refreshTokenRepository.findByTokenHash(RefreshTokenService.hash(oldToken)))
+                .thenReturn(Optional.of(stored));
+        when(userRepository.findById(userId)).thenReturn(Optional.of(testUser));
+        when(jwtService.generateToken(testUser)).thenReturn("access-token");
+
+        // Act
+        TokenPairDTO result = refreshTokenService.refresh(oldToken);
+
+        // Assert
+        assertEquals("access-token", result.accessToken());
+        assertNotEquals(oldToken, result.refreshToken());
+        verify(refreshTokenRepository).delete(stored);
+        verify(refreshTokenRepository).save(any(RefreshToken.class));
+        verify(jwtService, never()).generateToken(anyString());
+    }
+
+    @Test
+    void refresh_WithUnknownToken_ShouldThrowUnauthorizedException() {
+        // Arrange
+        when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(UnauthorizedException.class, () -> refreshTokenService.refresh("unknown"));
+        verify(refreshTokenRepository, never()).save(any(RefreshToken.class));
+    }
+
+    @Test
+    void refresh_WithExpiredToken_ShouldThrowUnauthorizedException() {
+        // Arrange
+        String oldToken = "expired-refresh-token";
+        RefreshToken stored = new RefreshToken(
+                RefreshTokenService.hash(oldToken), userId, Instant.now().minusSeconds(1));
+        when(refreshTokenRepository.findByTokenHash(RefreshTokenService.hash(oldToken)))
+                .thenReturn(Optional.of(stored));
+
+        // Act & Assert
+        assertThrows(UnauthorizedException.class, () -> refreshTokenService.refresh(oldToken));
+        verify(userRepository, never()).findById(anyString());
+        verify(refreshTokenRepository, never()).save(any(RefreshToken.class));
+        verify(refreshTokenRepository, never()).delete(any(RefreshToken.class));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.RevocationKind;
+import com.example.bankcards.entity.RevokedToken;
+import com.example.bankcards.repository.RevokedTokenRepository;
+import com.example.bankcards.util.PgNotificationBus;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Mock
+    private PgNotificationBus notificationBus;
+
+    @InjectMocks
+    private TokenRevocationService tokenRevocationService;
+
+    private final String userId = "user123";
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(tokenRevocationService, "tokenExpiration", 300000);
+        ReflectionTestUtils.setField(tokenRevocationService, "expectedSize", 1000);
+        when(revokedTokenRepository.findByExpiresAtAfter(any(Instant.class))).thenReturn(List.of());
+        tokenRevocationService.init();
+    }
+
+    @Test
+    void isRevoked_WithoutRevocations_ShouldReturnFalse() {
+        // Act & Assert
+        assertFalse(tokenRevocationService.isRevoked(claims("jti-1", Instant.now())));
+    }
+
+    @Test
+    void revokeToken_ShouldRevokeOnlyThatToken() {
+        // Arrange
+        when(revokedTokenRepository.save(any(RevokedToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        tokenRevocationService.revokeToken("jti-1", Instant.now().plusSeconds(300));
+
+        // Assert
+        assertTrue(tokenRevocationService.isRevoked(claims("jti-1", Instant.now())));
+        assertFalse(tokenRevocationService.isRevoked(claims("jti-2", Instant.now())));
+        verify(notificationBus).publish(eq(TokenRevocationService.REVOKE_CHANNEL), anyString());
+    }
+
+    @Test
+    void revokeUser_ShouldRevokeTokensIssuedBeforeRevocation() {
+        // Arrange
+        when(revokedTokenRepository.save(any(RevokedToken.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Instant issuedBefore = Instant.now().minusSeconds(60);
+
+        // Act
+        tokenRevocationService.revokeUser(userId);
+
+        // Assert
+        assertTrue(tokenRevocationService.isRevoked(claims("jti-1", issuedBefore)));
+        assertFalse(tokenRevocationService.isRevoked(claims("jti-2", Instant.now().plusSeconds(60))));
+    }
+
+    @Test
+    void reload_ShouldPickUpRevocationsFromOtherNodes() {
+        // Arrange
+        RevokedToken revoked = new RevokedToken(
+                RevocationKind.TOKEN, "jti-remote", Instant.now(), Instant.now().plusSeconds(300));
+        when(revokedTokenRepository.findByExpiresAtAfter(any(Instant.class))).thenReturn(List.of(revoked));
+
+        // Act
+        tokenRevocationService.reload();
+
+        // Assert
+        assertTrue(tokenRevocationService.isRevoked(claims("jti-remote", Instant.now())));
+    }
+
+    private Claims claims(String tokenId, Instant issuedAt) {
+        return Jwts.claims()
+                .id(tokenId)
+                .add("uid", userId)
+                .issuedAt(Date.from(issuedAt))
+                .build();
+    }
+}
@@ -1,18 +1,28 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.CursorPageDTO;
+import com.example.bankcards.dto.TokenPairDTO;
 import com.example.bankcards.dto.UserDTO;
 import com.example.bankcards.entity.CardUser;
 import com.example.bankcards.entity.Role;
 import com.example.bankcards.exception.UnauthorizedException;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.repository.UserSortKey;
+import com.example.bankcards.util.CursorCodec;
+import com.example.bankcards.util.EffectiveUserDetails;
 import com.example.bankcards.util.IdGenerator;
+import com.example.bankcards.util.LoginExecutor;
+import com.example.bankcards.util.UserDetailsCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -47,6 +57,18 @@ class UserServiceTest {
     @Mock
     private JwtService jwtService;
 
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
+    @Spy
+    private LoginExecutor loginExecutor = new LoginExecutor(new SimpleMeterRegistry(), 1, 10);
+
     @InjectMocks
     private UserService userService;
 
@@ -69,6 +91,38 @@ class UserServiceTest {
         testUserDTO = new UserDTO(userId, username, Set.of(Role.USER));
     }
 
+    @Test
+    void scroll_ByUsername_ShouldReturnCursorOfLastUser() {
+        // Arrange
+        CardUser other = new CardUser();
+        other.setId("user456");
+        other.setUsername("zuser");
+        when(userRepository.findAfter(UserSortKey.USERNAME, false, null, null, 2))
+                .thenReturn(List.of(testUser, other));
+
+        // Act
+        CursorPageDTO<UserDTO> result = userService.scroll("username", "asc", null, 1);
+
+        // Assert
+        assertEquals(List.of(testUserDTO), result.content());
+        assertEquals(CursorCodec.encode("username", false, username, userId), result.next());
+    }
+
+    @Test
+    void scroll_WithCursor_ShouldSeekAfterLastUser() {
+        // Arrange
+        String cursor = CursorCodec.encode("username", false, username, userId);
+        when(userRepository.findAfter(UserSortKey.USERNAME, false, username, userId, 11))
+                .thenReturn(List.of());
+
+        // Act
+        CursorPageDTO<UserDTO> result = userService.scroll("username", "asc", cursor, 10);
+
+        // Assert
+        assertTrue(result.content().isEmpty());
+        assertNull(result.next());
+    }
+
     @Test
     void getAll_ShouldReturnPageOfUsers() {
         // Arrange
@@ -135,6 +189,45 @@ class UserServiceTest {
         verify(jwtService).generateToken(username);
     }
 
+    @Test
+    void getToken_WithLoadedPrincipal_ShouldNotReloadUser() {
+        // Arrange
+        Authentication auth = mock(Authentication.class);
+        when(auth.isAuthenticated()).thenReturn(true);
+        when(auth.getPrincipal()).thenReturn(new EffectiveUserDetails(testUser));
+        when(authManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenReturn(auth);
+        when(jwtService.generateToken(testUser)).thenReturn(token);
+
+        // Act
+        String result = userService.getToken(username, password);
+
+        // Assert
+        assertEquals(token, result);
+        verify(jwtService).generateToken(testUser);
+        verify(jwtService, never()).generateToken(anyString());
+    }
+
+    @Test
+    void getTokenPair_WithValidCredentials_ShouldIssueAccessAndRefreshTokens() {
+        // Arrange
+        Authentication auth = mock(Authentication.class);
+        when(auth.isAuthenticated()).thenReturn(true);
+        when(auth.getPrincipal()).thenReturn(new EffectiveUserDetails(testUser));
+        when(authManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenReturn(auth);
+        when(jwtService.generateToken(testUser)).thenReturn(token);
+        when(refreshTokenService.issue(userId)).thenReturn("refresh-token");
+
+        // Act
+        TokenPairDTO result = userService.getTokenPair(username, password);
+
+        // Assert
+        assertEquals(token, result.accessToken());
+        assertEquals("refresh-token", result.refreshToken());
+        verify(userRepository, never()).findByUsername(anyString());
+    }
+
     @Test
     void getToken_WithInvalidCredentials_ShouldThrowUnauthorizedException() {
         // Arrange
@@ -200,6 +293,7 @@ class UserServiceTest {
             idGeneratorMock.verify(IdGenerator::generateId);
             verify(passwordEncoder).encode(password);
             verify(userRepository).save(any(CardUser.class));
+            verify(userDetailsCache).evict(username);
         }
     }
 
@@ -215,8 +309,12 @@ class UserServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(testUserDTO, result);
-        verify(userRepository).findById(userId);
-        verify(userRepository).deleteById(userId);
+        InOrder inOrder = inOrder(userRepository, tokenRevocationService, refreshTokenService, userDetailsCache);
+        inOrder.verify(userRepository).findById(userId);
+        inOrder.verify(tokenRevocationService).revokeUser(userId);
+        inOrder.verify(refreshTokenService).revokeAll(userId);
+        inOrder.verify(userRepository).deleteById(userId);
+        inOrder.verify(userDetailsCache).evict(username);
     }
 
     @Test
@@ -233,6 +331,7 @@ class UserServiceTest {
         assertEquals("No entity with id '" + userId + "'. Entity is not deleted", exception.getMessage());
         verify(userRepository).findById(userId);
         verify(userRepository, never()).deleteById(anyString());
+        verify(userDetailsCache, never()).evict(anyString());
     }
 
     @Test
@@ -267,4 +366,15 @@ class UserServiceTest {
             idGeneratorMock.verify(IdGenerator::generateId);
         }
     }
+
+    @Test
+    void logout_ShouldRevokeAccessAndRefreshTokens() {
+        // Act
+        userService.logout(token, "refresh-token");
+
+        // Assert
+        verify(jwtService).revokeToken(token);
+        verify(refreshTokenService).revoke("refresh-token");
+        verifyNoInteractions(tokenRevocationService);
+    }
 }
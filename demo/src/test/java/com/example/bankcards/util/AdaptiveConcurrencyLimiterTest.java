@@ -0,0 +1,73 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    void tryAcquire_AboveLimit_ShouldReject() {
+        // Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 0.2, 1.5);
+
+        // Act & Assert
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInflight());
+    }
+
+    @Test
+    void onSuccess_StableLatencyAtLimit_ShouldIncreaseLimit() {
+        // Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, 0.2, 1.5);
+
+        // Act
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess(10 * MILLIS, limiter.getLimit());
+        }
+
+        // Assert
+        assertTrue(limiter.getLimit() > 10);
+        assertEquals(0, limiter.getInflight());
+    }
+
+    @Test
+    void onSuccess_GrowingLatency_ShouldDecreaseLimit() {
+        // Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 1, 100, 0.5, 1.5);
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess(10 * MILLIS, 1);
+        }
+
+        // Act
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess(200 * MILLIS, limiter.getLimit());
+        }
+
+        // Assert
+        assertTrue(limiter.getLimit() < 50);
+    }
+
+    @Test
+    void onDropped_ShouldNotGoBelowMinLimit() {
+        // Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(5, 3, 10, 0.2, 1.5);
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire();
+            limiter.onDropped();
+        }
+
+        // Assert
+        assertEquals(3, limiter.getLimit());
+        assertEquals(0, limiter.getInflight());
+    }
+}
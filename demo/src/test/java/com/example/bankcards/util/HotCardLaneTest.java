@@ -0,0 +1,181 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.ServiceOverloadedException;
+import com.example.bankcards.repository.CreditRequest;
+import com.example.bankcards.repository.MoneyOperationResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotCardLaneTest {
+
+    private static final Long CARD_ID = 1L;
+    private static final String OWNER_ID = "user123";
+
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<List<CreditRequest>> batches = new CopyOnWriteArrayList<>();
+    private HotCardLane lane;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        lane.close();
+    }
+
+    @Test
+    void submit_WhileWriterIsBusy_ShouldApplyWaitingDepositsInOneBatch() throws Exception {
+        // Arrange
+        lane = start(10, blockingFirstBatch(requests -> Collections.nCopies(requests.size(), MoneyOperationResult.SUCCESS)));
+        CompletableFuture<MoneyOperationResult> first = lane.submit(deposit(1));
+        assertTrue(writing.await(1, TimeUnit.SECONDS));
+
+        // Act
+        CompletableFuture<MoneyOperationResult> second = lane.submit(deposit(2));
+        CompletableFuture<MoneyOperationResult> third = lane.submit(deposit(3));
+        release.countDown();
+
+        // Assert
+        assertEquals(MoneyOperationResult.SUCCESS, first.get(1, TimeUnit.SECONDS));
+        assertEquals(MoneyOperationResult.SUCCESS, second.get(1, TimeUnit.SECONDS));
+        assertEquals(MoneyOperationResult.SUCCESS, third.get(1, TimeUnit.SECONDS));
+        assertEquals(2, batches.size());
+        assertEquals(List.of(deposit(2), deposit(3)), batches.get(1));
+    }
+
+    @Test
+    void submit_ShouldCompleteEachDepositWithItsOwnResult() throws Exception {
+        // Arrange
+        lane = start(10, blockingFirstBatch(requests -> requests.stream()
+                .map(request -> request.amount().signum() > 0
+                        ? MoneyOperationResult.SUCCESS
+                        : MoneyOperationResult.NOT_OWNER)
+                .toList()));
+        lane.submit(deposit(1));
+        assertTrue(writing.await(1, TimeUnit.SECONDS));
+
+        // Act
+        CompletableFuture<MoneyOperationResult> accepted = lane.submit(deposit(2));
+        CompletableFuture<MoneyOperationResult> rejected = lane.submit(deposit(0));
+        release.countDown();
+
+        // Assert
+        assertEquals(MoneyOperationResult.SUCCESS, accepted.get(1, TimeUnit.SECONDS));
+        assertEquals(MoneyOperationResult.NOT_OWNER, rejected.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void submit_WhenQueueIsFull_ShouldRejectImmediately() throws Exception {
+        // Arrange
+        lane = start(1, blockingFirstBatch(requests -> Collections.nCopies(requests.size(), MoneyOperationResult.SUCCESS)));
+        lane.submit(deposit(1));
+        assertTrue(writing.await(1, TimeUnit.SECONDS));
+        lane.submit(deposit(2));
+
+        // Act & Assert
+        assertThrows(ServiceOverloadedException.class, () -> lane.submit(deposit(3)));
+    }
+
+    @Test
+    void submit_WhenBatchFails_ShouldFailEveryDepositOfBatch() {
+        // Arrange
+        lane = start(10, requests -> {
+            throw new IllegalStateException("Connection refused");
+        });
+
+        // Act
+        CompletableFuture<MoneyOperationResult> result = lane.submit(deposit(1));
+
+        // Assert
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> result.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+    }
+
+    @Test
+    void submit_WhenWriterDiesWithError_ShouldFailBatchAndStopAcceptingDeposits() {
+        // Arrange
+        lane = start(10, requests -> {
+            throw new OutOfMemoryError("Java heap space");
+        });
+
+        // Act
+        CompletableFuture<MoneyOperationResult> result = lane.submit(deposit(1));
+
+        // Assert
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> result.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(OutOfMemoryError.class, exception.getCause());
+        assertFalse(lane.isRunning());
+        assertThrows(ServiceOverloadedException.class, () -> lane.submit(deposit(2)));
+    }
+
+    @Test
+    void submit_WhenWriterReturnsWrongNumberOfResults_ShouldFailBatch() throws Exception {
+        // Arrange
+        lane = start(10, requests -> List.of());
+
+        // Act
+        CompletableFuture<MoneyOperationResult> result = lane.submit(deposit(1));
+
+        // Assert
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> result.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertTrue(lane.isRunning());
+    }
+
+    @Test
+    void close_ShouldCompleteQueuedDepositsAndRejectNewOnes() throws Exception {
+        // Arrange
+        lane = start(10, blockingFirstBatch(requests -> Collections.nCopies(requests.size(), MoneyOperationResult.SUCCESS)));
+        lane.submit(deposit(1));
+        assertTrue(writing.await(1, TimeUnit.SECONDS));
+        CompletableFuture<MoneyOperationResult> waiting = lane.submit(deposit(2));
+
+        // Act
+        release.countDown();
+        lane.close();
+
+        // Assert
+        assertTrue(waiting.isDone());
+        assertThrows(ServiceOverloadedException.class, () -> lane.submit(deposit(3)));
+    }
+
+    private HotCardLane start(int maxPending, Function<List<CreditRequest>, List<MoneyOperationResult>> writer) {
+        HotCardLane hotCardLane = new HotCardLane(CARD_ID, maxPending, 100, 0, writer,
+                new CustomizableThreadFactory("hot-card-test-"));
+        hotCardLane.start();
+        return hotCardLane;
+    }
+
+    // Первая пачка задерживается до release: следующие пополнения успевают накопиться в очереди
+    private Function<List<CreditRequest>, List<MoneyOperationResult>> blockingFirstBatch(
+            Function<List<CreditRequest>, List<MoneyOperationResult>> writer) {
+        return requests -> {
+            batches.add(requests);
+            if (batches.size() == 1) {
+                writing.countDown();
+                try {
+                    release.await(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return writer.apply(requests);
+        };
+    }
+
+    private static CreditRequest deposit(int amount) {
+        return CreditRequest.deposit(OWNER_ID, BigDecimal.valueOf(amount), null);
+    }
+}
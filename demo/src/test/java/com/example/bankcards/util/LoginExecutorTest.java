@@ -0,0 +1,118 @@
+package com.example.bankcards.util;
+
+import com.example.bankcards.exception.LoginExecutionException;
+import com.example.bankcards.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginExecutorTest {
+
+    private SimpleMeterRegistry registry;
+    private LoginExecutor loginExecutor;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        loginExecutor = new LoginExecutor(registry, 1, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loginExecutor.shutdown();
+    }
+
+    @Test
+    void execute_ShouldReturnTaskResultAndRecordTimings() {
+        // Act
+        String result = loginExecutor.execute(() -> "token");
+
+        // Assert
+        assertEquals("token", result);
+        assertEquals(1, registry.get("login.wait").timer().count());
+        assertEquals(1, registry.get("login.hash").timer().count());
+    }
+
+    @Test
+    void execute_ShouldRethrowTaskException() {
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> loginExecutor.execute(() -> {
+                    throw new IllegalArgumentException("Bad credentials");
+                }));
+
+        assertEquals("Bad credentials", exception.getMessage());
+    }
+
+    @Test
+    void execute_ShouldRethrowTaskError() {
+        // Act & Assert
+        OutOfMemoryError error = assertThrows(OutOfMemoryError.class,
+                () -> loginExecutor.execute(() -> {
+                    throw new OutOfMemoryError("Java heap space");
+                }));
+
+        assertEquals("Java heap space", error.getMessage());
+    }
+
+    @Test
+    void execute_WithCheckedTaskException_ShouldThrowLoginExecutionException() {
+        // Arrange
+        IOException failure = new IOException("Connection reset");
+
+        // Act
+        LoginExecutionException exception = assertThrows(LoginExecutionException.class,
+                () -> loginExecutor.execute(() -> sneakyThrow(failure)));
+
+        // Assert
+        assertSame(failure, exception.getCause());
+    }
+
+    @Test
+    void execute_WhenQueueIsFull_ShouldRejectImmediately() throws Exception {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        // Первая задача занимает единственный поток, вторая - единственное место в очереди
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> loginExecutor.execute(() -> {
+            started.countDown();
+            await(release);
+            return "first";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> loginExecutor.execute(() -> "second"));
+        while (registry.get("executor.queued").tag("name", "login").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        // Act & Assert
+        assertThrows(ServiceOverloadedException.class, () -> loginExecutor.execute(() -> "third"));
+        assertEquals(1, registry.get("login.rejected").counter().count());
+
+        release.countDown();
+        assertEquals("first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("second", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    // Supplier не объявляет checked-исключений, но байткод может их выбросить
+    @SuppressWarnings("unchecked")
+    private static <T, E extends Throwable> T sneakyThrow(Throwable throwable) throws E {
+        throw (E) throwable;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    @Test
+    void tryConsume_WithinCapacity_ShouldAllow() {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(3, 0.001);
+
+        // Act & Assert
+        assertEquals(0, bucket.tryConsume());
+        assertEquals(0, bucket.tryConsume());
+        assertEquals(0, bucket.tryConsume());
+    }
+
+    @Test
+    void tryConsume_WhenEmpty_ShouldReturnWaitTime() {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(1, 1);
+        bucket.tryConsume();
+
+        // Act
+        long waitNanos = bucket.tryConsume();
+
+        // Assert
+        assertTrue(waitNanos > 0);
+        assertTrue(waitNanos <= 1_000_000_000L);
+    }
+
+    @Test
+    void tryConsume_AfterRefill_ShouldAllowAgain() throws InterruptedException {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(1, 100);
+        bucket.tryConsume();
+
+        // Act
+        Thread.sleep(50);
+
+        // Assert
+        assertEquals(0, bucket.tryConsume());
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserDetailsCacheTest {
+
+    @Mock
+    private PgNotificationBus notificationBus;
+
+    @Mock
+    private EffectiveUserDetails userDetails;
+
+    private UserDetailsCache userDetailsCache;
+
+    private final String username = "testuser";
+
+    @BeforeEach
+    void setUp() {
+        userDetailsCache = new UserDetailsCache(notificationBus, 100, 60_000);
+        userDetailsCache.get(username, name -> userDetails);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void evict_WithoutTransaction_ShouldInvalidateImmediately() {
+        // Arrange
+        AtomicInteger loads = new AtomicInteger();
+
+        // Act
+        userDetailsCache.evict(username);
+        userDetailsCache.get(username, name -> {
+            loads.incrementAndGet();
+            return userDetails;
+        });
+
+        // Assert
+        assertEquals(1, loads.get());
+        verify(notificationBus).publish(UserDetailsCache.EVICT_CHANNEL, username);
+    }
+
+    @Test
+    void evict_InsideTransaction_ShouldInvalidateOnlyAfterCommit() {
+        // Arrange
+        AtomicInteger loads = new AtomicInteger();
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        userDetailsCache.evict(username);
+        userDetailsCache.get(username, name -> {
+            loads.incrementAndGet();
+            return userDetails;
+        });
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        userDetailsCache.get(username, name -> {
+            loads.incrementAndGet();
+            return userDetails;
+        });
+
+        // Assert
+        assertEquals(1, loads.get());
+        verify(notificationBus).publish(UserDetailsCache.EVICT_CHANNEL, username);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.encrypt.Encryptors;
+import org.springframework.security.crypto.encrypt.TextEncryptor;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionedTextEncryptorTest {
+
+    private static final String CARD_NUMBER = "4111111111111111";
+
+    private final TextEncryptor legacy = Encryptors.text("1234567890abcdef1234567890abcdef", "1234567890abcdef");
+    private final SecretKey key1 = new SecretKeySpec(new byte[32], "AES");
+    private final SecretKey key2 = new SecretKeySpec(filled(32, (byte) 7), "AES");
+
+    @Test
+    void encrypt_ShouldPrefixActiveVersionAndRoundTrip() {
+        // Arrange
+        VersionedTextEncryptor encryptor = new VersionedTextEncryptor(Map.of(1, key1), 1, legacy);
+
+        // Act
+        String encrypted = encryptor.encrypt(CARD_NUMBER);
+
+        // Assert
+        assertTrue(encrypted.startsWith("v1:"));
+        assertEquals(CARD_NUMBER, encryptor.decrypt(encrypted));
+    }
+
+    @Test
+    void encrypt_SameText_ShouldProduceDifferentCiphertexts() {
+        // Arrange
+        VersionedTextEncryptor encryptor = new VersionedTextEncryptor(Map.of(1, key1), 1, legacy);
+
+        // Act & Assert
+        assertNotEquals(encryptor.encrypt(CARD_NUMBER), encryptor.encrypt(CARD_NUMBER));
+    }
+
+    @Test
+    void decrypt_LegacyHex_ShouldUseLegacyEncryptor() {
+        // Arrange
+        VersionedTextEncryptor encryptor = new VersionedTextEncryptor(Map.of(1, key1), 1, legacy);
+        String legacyEncrypted = legacy.encrypt(CARD_NUMBER);
+
+        // Act & Assert
+        assertEquals(CARD_NUMBER, encryptor.decrypt(legacyEncrypted));
+    }
+
+    @Test
+    void decrypt_AfterKeyRotation_ShouldReadOldVersion() {
+        // Arrange
+        String encryptedWithV1 = new VersionedTextEncryptor(Map.of(1, key1), 1, legacy).encrypt(CARD_NUMBER);
+        VersionedTextEncryptor rotated = new VersionedTextEncryptor(Map.of(1, key1, 2, key2), 2, legacy);
+
+        // Act
+        String encryptedWithV2 = rotated.encrypt(CARD_NUMBER);
+
+        // Assert
+        assertTrue(encryptedWithV2.startsWith("v2:"));
+        assertEquals(CARD_NUMBER, rotated.decrypt(encryptedWithV1));
+        assertEquals(CARD_NUMBER, rotated.decrypt(encryptedWithV2));
+    }
+
+    @Test
+    void decrypt_TamperedCiphertext_ShouldThrow() {
+        // Arrange
+        VersionedTextEncryptor encryptor = new VersionedTextEncryptor(Map.of(1, key1), 1, legacy);
+        String encrypted = encryptor.encrypt(CARD_NUMBER);
+        char last = encrypted.charAt(encrypted.length() - 3);
+        String tampered = encrypted.substring(0, encrypted.length() - 3)
+                + (last == 'A' ? 'B' : 'A')
+                + encrypted.substring(encrypted.length() - 2);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> encryptor.decrypt(tampered));
+    }
+
+    @Test
+    void encryptToBytes_ShouldStartWithVersionByteAndRoundTrip() {
+        // Arrange
+        VersionedTextEncryptor encryptor = new VersionedTextEncryptor(Map.of(3, key1), 3, legacy);
+
+        // Act
+        byte[] encrypted = encryptor.encryptToBytes(CARD_NUMBER);
+
+        // Assert
+        assertEquals(3, encrypted[0]);
+        assertEquals(1 + 12 + CARD_NUMBER.length() + 16, encrypted.length);
+        assertEquals(CARD_NUMBER, encryptor.decryptBytes(encrypted));
+    }
+
+    @Test
+    void decryptBytes_LegacyPayload_ShouldUseLegacyEncryptor() {
+        // Arrange
+        VersionedTextEncryptor encryptor = new VersionedTextEncryptor(Map.of(1, key1), 1, legacy);
+        byte[] legacyPayload = HexFormat.of().parseHex(legacy.encrypt(CARD_NUMBER));
+        byte[] stored = new byte[legacyPayload.length + 1];
+        System.arraycopy(legacyPayload, 0, stored, 1, legacyPayload.length);
+
+        // Act & Assert
+        assertEquals(CARD_NUMBER, encryptor.decryptBytes(stored));
+    }
+
+    @Test
+    void decryptBytes_ConvertedFromText_ShouldMatchMigrationFormat() {
+        // Arrange
+        VersionedTextEncryptor encryptor = new VersionedTextEncryptor(Map.of(1, key1), 1, legacy);
+        String text = encryptor.encrypt(CARD_NUMBER);
+        byte[] payload = Base64.getDecoder().decode(text.substring("v1:".length()));
+        byte[] stored = new byte[payload.length + 1];
+        stored[0] = 1;
+        System.arraycopy(payload, 0, stored, 1, payload.length);
+
+        // Act & Assert
+        assertEquals(CARD_NUMBER, encryptor.decryptBytes(stored));
+    }
+
+    private static byte[] filled(int length, byte value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+}